@@ -161,9 +161,10 @@ fun GameResultScreen(
             approvalVotes[currentUsername] = approved
             
             try {
-                val voteMessage = "VOTE:${currentSelection}:${currentUsername}:${approved}"
-                Log.d("GameResultScreen", "Sending vote message: $voteMessage")
-                RoomWebSocketClient.sendRestaurantSuggestion(roomCode, voteMessage)
+                Log.d("GameResultScreen", "Sending vote: restaurant=$currentSelection, approved=$approved")
+                currentSelection?.let { restaurant ->
+                    RoomWebSocketClient.sendVote(roomCode, restaurant, currentUsername, approved)
+                }
                 
                 checkVotingResult()
             } catch (e: Exception) {
@@ -5,6 +5,7 @@ import com.example.finalproject.api.User
 import com.squareup.moshi.Moshi
 import com.squareup.moshi.kotlin.reflect.KotlinJsonAdapterFactory
 import okhttp3.*
+import org.json.JSONObject
 import java.util.concurrent.ConcurrentHashMap
 
 enum class RoomMessageType {
@@ -14,6 +15,7 @@ enum class RoomMessageType {
     ERROR,
     SUBSCRIBE,
     SELECTION,
+    SUGGESTION,
     VOTE
 }
 
@@ -30,7 +32,9 @@ data class RoomMessage(
     val selectionExplanation: String? = null,
     val votes: Map<String, Boolean>? = null,
     val voterUsername: String? = null,
-    val approved: Boolean? = null
+    val approved: Boolean? = null,
+    val sequence: Long? = null,
+    val epoch: Long? = null
 ) {
     companion object {
         private val moshi = Moshi.Builder()
@@ -54,6 +58,30 @@ data class RoomMessage(
     }
 }
 
+data class RoomReplay(
+    val roomCode: String? = null,
+    val latestSequence: Long = 0,
+    val epoch: Long = 0,
+    val snapshot: RoomMessage? = null,
+    val frames: List<RoomMessage>? = null,
+    val complete: Boolean = false
+) {
+    companion object {
+        private val moshi = Moshi.Builder()
+            .add(KotlinJsonAdapterFactory())
+            .build()
+        
+        fun fromJson(json: String): RoomReplay? {
+            return try {
+                moshi.adapter(RoomReplay::class.java).fromJson(json)
+            } catch (e: Exception) {
+                Log.e("RoomReplay", "Error parsing JSON: $e")
+                null
+            }
+        }
+    }
+}
+
 interface RoomWebSocketListener {
     fun onRoomJoined(roomCode: String)
     fun onParticipantUpdate(roomCode: String, count: Int, isReady: Boolean, participants: List<String>? = null)
@@ -61,6 +89,10 @@ interface RoomWebSocketListener {
     fun onDisconnected(roomCode: String)
     fun onRestaurantSuggestion(roomCode: String, userId: String, suggestion: String)
     fun onRestaurantSelected(roomCode: String, restaurant: String, explanation: String)
+    // A late AI recommendation that accompanies an earlier selection
+    fun onAiFollowUp(roomCode: String, restaurant: String, explanation: String) {}
+    // The server's answer to one of our own votes or ballots
+    fun onVoteAck(roomCode: String, restaurant: String?, accepted: Boolean, message: String?) {}
 }
 
 object RoomWebSocketClient {
@@ -78,6 +110,10 @@ object RoomWebSocketClient {
         
     private val roomConnections = ConcurrentHashMap<String, WebSocket>()
     private val roomListeners = ConcurrentHashMap<String, MutableList<RoomWebSocketListener>>()
+    // Last broadcast sequence seen per room, used to resync instead of rejoining after a reconnect
+    private val lastSequences = ConcurrentHashMap<String, Long>()
+    // Epoch of that sequence: the server restarts numbering in a new epoch and sends a snapshot on a mismatch
+    private val lastEpochs = ConcurrentHashMap<String, Long>()
     
     fun joinRoom(roomCode: String, user: User, listener: RoomWebSocketListener) {
         val cleanRoomCode = extractRoomCode(roomCode)
@@ -98,7 +134,7 @@ object RoomWebSocketClient {
         Log.d(TAG, "DEBUG: Added WebSocket to roomConnections for room '$cleanRoomCode'")
         Log.d(TAG, "DEBUG: roomConnections now contains ${roomConnections.size} entries with keys: ${roomConnections.keys.joinToString()}")
         
-        val connectFrame = buildStompConnectFrame()
+        val connectFrame = buildStompConnectFrame(user)
         Log.d(TAG, "Sending STOMP CONNECT frame: $connectFrame")
         webSocket.send(connectFrame)
     }
@@ -135,7 +171,7 @@ object RoomWebSocketClient {
         val webSocket = roomConnections[cleanRoomCode] ?: return
         
         if (user != null) {
-            val leaveFrame = buildStompLeaveFrame(cleanRoomCode, user.email)
+            val leaveFrame = buildStompLeaveFrame(cleanRoomCode)
             Log.d(TAG, "Sending STOMP leave frame: $leaveFrame")
             webSocket.send(leaveFrame)
         }
@@ -146,6 +182,8 @@ object RoomWebSocketClient {
         webSocket.close(1000, "Leaving room")
         Log.d(TAG, "DEBUG: Not removing WebSocket from roomConnections for room $cleanRoomCode on leave")
         roomListeners.remove(cleanRoomCode)
+        lastSequences.remove(cleanRoomCode)
+        lastEpochs.remove(cleanRoomCode)
     }
     
     fun addListener(roomCode: String, listener: RoomWebSocketListener) {
@@ -182,11 +220,20 @@ object RoomWebSocketClient {
                     
                     val subscribeFrame = buildStompSubscribeFrame(roomCode)
                     webSocket.send(subscribeFrame)
+                    webSocket.send(buildStompVoteAckSubscribeFrame(roomCode))
                     Log.d(TAG, "Sent STOMP SUBSCRIBE frame: $subscribeFrame")
                     
-                    val joinFrame = buildStompJoinFrame(roomCode, user.email)
-                    webSocket.send(joinFrame)
-                    Log.d(TAG, "Sent STOMP JOIN frame: $joinFrame")
+                    val lastSequence = lastSequences[roomCode]
+                    if (lastSequence != null) {
+                        webSocket.send(buildStompReplaySubscribeFrame(roomCode))
+                        val resyncFrame = buildStompResyncFrame(roomCode, lastSequence, lastEpochs[roomCode])
+                        webSocket.send(resyncFrame)
+                        Log.d(TAG, "Reconnected to room $roomCode, sent STOMP RESYNC frame: $resyncFrame")
+                    } else {
+                        val joinFrame = buildStompJoinFrame(roomCode)
+                        webSocket.send(joinFrame)
+                        Log.d(TAG, "Sent STOMP JOIN frame: $joinFrame")
+                    }
                     
                 } else if (text.startsWith("MESSAGE")) {
                     Log.d(TAG, "STOMP MESSAGE frame received.")
@@ -214,6 +261,10 @@ object RoomWebSocketClient {
                     
                     if (destination == "/topic/room/$roomCode") {
                         processRoomMessage(body, roomCode)
+                    } else if (destination == "/user/queue/room-replay") {
+                        processReplayMessage(webSocket, body, roomCode)
+                    } else if (destination == "/user/queue/vote-ack") {
+                        processVoteAck(body, roomCode)
                     } else {
                         Log.d(TAG, "Received message for unknown destination: $destination")
                     }
@@ -232,10 +283,11 @@ object RoomWebSocketClient {
                 val subscribeFrame = buildStompSubscribeFrame(roomCode)
                 Log.d(TAG, "Sending STOMP SUBSCRIBE frame: $subscribeFrame")
                 webSocket.send(subscribeFrame)
+                webSocket.send(buildStompVoteAckSubscribeFrame(roomCode))
                 
                 val currentUser = this.currentUser
                 if (currentUser != null) {
-                    val joinFrame = buildStompJoinFrame(roomCode, currentUser.email)
+                    val joinFrame = buildStompJoinFrame(roomCode)
                     Log.d(TAG, "Sending JOIN message for user: ${currentUser.email}")
                     Log.d(TAG, "JOIN frame: $joinFrame")
                     webSocket.send(joinFrame)
@@ -402,6 +454,15 @@ object RoomWebSocketClient {
                             Log.e(TAG, "Received SELECTION message with null restaurant")
                         }
                     }
+                    RoomMessageType.SUGGESTION -> {
+                        val restaurant = message.selectedRestaurant
+                        if (restaurant != null) {
+                            Log.d(TAG, "Received AI follow-up: restaurant=$restaurant")
+                            roomListeners[messageRoomCode]?.forEach { listener ->
+                                listener.onAiFollowUp(messageRoomCode, restaurant, message.selectionExplanation ?: "")
+                            }
+                        }
+                    }
                     RoomMessageType.VOTE -> {
                         val restaurant = message.selectedRestaurant
                         val votes = message.votes
@@ -505,11 +566,13 @@ object RoomWebSocketClient {
         roomListeners.clear()
     }
     
-    private fun buildStompConnectFrame(): String {
+    private fun buildStompConnectFrame(user: User): String {
         return "CONNECT\n" +
                "accept-version:1.2,1.1,1.0\n" +
                "host:10.0.2.2:8080\n" +
                "heart-beat:10000,10000\n" +
+               "user-id:${user.id}\n" +
+               "user-email:${user.email}\n" +
                "\n" +
                "\u0000"
     }
@@ -522,23 +585,48 @@ object RoomWebSocketClient {
                "\u0000"
     }
     
-    private fun buildStompJoinFrame(roomCode: String, userEmail: String): String {
+    private fun buildStompReplaySubscribeFrame(roomCode: String): String {
+        return "SUBSCRIBE\n" +
+               "id:replay-$roomCode\n" +
+               "destination:/user/queue/room-replay\n" +
+               "\n" +
+               "\u0000"
+    }
+    
+    private fun buildStompVoteAckSubscribeFrame(roomCode: String): String {
+        return "SUBSCRIBE\n" +
+               "id:vote-ack-$roomCode\n" +
+               "destination:/user/queue/vote-ack\n" +
+               "\n" +
+               "\u0000"
+    }
+    
+    private fun buildStompResyncFrame(roomCode: String, lastSequence: Long, epoch: Long?): String {
+        val requestJson = if (epoch != null) {
+            """{"lastSequence":$lastSequence,"epoch":$epoch}"""
+        } else {
+            """{"lastSequence":$lastSequence}"""
+        }
+        return "SEND\n" +
+               "destination:/app/room/$roomCode/resync\n" +
+               "content-type:application/json;charset=utf-8\n" +
+               "content-length:${requestJson.length}\n" +
+               "\n" +
+               requestJson +
+               "\u0000"
+    }
+    
+    private fun buildStompJoinFrame(roomCode: String): String {
         return "SEND\n" +
                "destination:/app/room/$roomCode/join\n" +
-               "content-type:text/plain;charset=utf-8\n" +
-               "content-length:${userEmail.length}\n" +
                "\n" +
-               "$userEmail" +
                "\u0000"
     }
     
-    private fun buildStompLeaveFrame(roomCode: String, userEmail: String): String {
+    private fun buildStompLeaveFrame(roomCode: String): String {
         return "SEND\n" +
                "destination:/app/room/$roomCode/leave\n" +
-               "content-type:text/plain;charset=utf-8\n" +
-               "content-length:${userEmail.length}\n" +
                "\n" +
-               "$userEmail" +
                "\u0000"
     }
     
@@ -669,6 +757,71 @@ object RoomWebSocketClient {
         Log.d(TAG, "Sending STOMP restaurant selection frame: $selectionFrame")
         webSocket.send(selectionFrame)
     }
+
+    fun sendVote(roomCode: String, restaurant: String, username: String, approved: Boolean) {
+        Log.d(TAG, "Sending vote to room $roomCode: restaurant=$restaurant, approved=$approved")
+        
+        val cleanRoomCode = extractRoomCode(roomCode)
+        val webSocket = roomConnections[cleanRoomCode] ?: run {
+            Log.e(TAG, "Cannot send vote - not connected to room $cleanRoomCode")
+            return
+        }
+        
+        val voteJson = JSONObject()
+            .put("restaurant", restaurant)
+            .put("username", username)
+            .put("approved", approved)
+            .put("clientVoteId", java.util.UUID.randomUUID().toString())
+            .toString()
+        val byteLength = voteJson.toByteArray(Charsets.UTF_8).size
+        
+        val voteFrame = "SEND\n" +
+                        "destination:/app/room/$cleanRoomCode/vote\n" +
+                        "content-type:application/json;charset=utf-8\n" +
+                        "content-length:$byteLength\n" +
+                        "\n" +
+                        voteJson +
+                        "\u0000"
+        
+        Log.d(TAG, "Sending STOMP vote frame: $voteFrame")
+        webSocket.send(voteFrame)
+    }
+    
+    private fun processReplayMessage(webSocket: WebSocket, body: String, roomCode: String) {
+        val replay = RoomReplay.fromJson(body)
+        if (replay == null || !replay.complete) {
+            Log.d(TAG, "Replay for room $roomCode unavailable, rejoining")
+            lastSequences.remove(roomCode)
+            lastEpochs.remove(roomCode)
+            webSocket.send(buildStompJoinFrame(roomCode))
+            return
+        }
+        
+        Log.d(TAG, "Replaying ${replay.frames?.size ?: 0} missed frames for room $roomCode (snapshot: ${replay.snapshot != null})")
+        replay.snapshot?.let { handleJsonMessage(roomCode, it) }
+        replay.frames?.forEach { handleJsonMessage(roomCode, it) }
+        lastSequences[roomCode] = replay.latestSequence
+        lastEpochs[roomCode] = replay.epoch
+    }
+    
+    private fun processVoteAck(body: String, roomCode: String) {
+        try {
+            val ack = JSONObject(body)
+            val accepted = ack.optBoolean("accepted", false)
+            val restaurant = if (ack.isNull("restaurant")) null else ack.optString("restaurant")
+            val message = if (ack.isNull("message")) null else ack.optString("message")
+            Log.d(TAG, "Vote ack for room $roomCode: accepted=$accepted, restaurant=$restaurant, message=$message")
+            roomListeners[roomCode]?.forEach { listener ->
+                listener.onVoteAck(roomCode, restaurant, accepted, message)
+                if (!accepted) {
+                    listener.onError(roomCode, message ?: "Vote was not recorded")
+                }
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Error processing vote ack: ${e.message}", e)
+        }
+    }
+    
     private fun processRoomMessage(body: String, roomCode: String) {
         Log.d(TAG, "Processing room message: $body")
         
@@ -677,6 +830,8 @@ object RoomWebSocketClient {
             
             if (message != null) {
                 Log.d(TAG, "Successfully parsed JSON message from server")
+                message.sequence?.let { lastSequences[roomCode] = it }
+                message.epoch?.let { lastEpochs[roomCode] = it }
                 handleJsonMessage(roomCode, message)
             } else {
                 try {
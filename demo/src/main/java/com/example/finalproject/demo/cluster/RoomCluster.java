@@ -0,0 +1,190 @@
+package com.example.finalproject.demo.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Static cluster membership with heartbeat-based liveness, and the resulting
+ * assignment of rooms to owner nodes.
+ * <p>
+ * Members are configured as {@code room.cluster.members=id@host:port,...}. Each node
+ * pings the others every {@code heartbeat-ms}; a member that has not answered for
+ * {@code failure-timeout-ms} drops out of the ring. Whenever the live set changes the
+ * ring is rebuilt and a {@link RoomOwnershipChangedEvent} is published so that room
+ * state can move to its new owner.
+ * <p>
+ * With {@code room.cluster.enabled=false} (the default) every room is local.
+ */
+@Component
+public class RoomCluster {
+    private static final Logger logger = LoggerFactory.getLogger(RoomCluster.class);
+
+    private final boolean enabled;
+    private final String localNodeId;
+    private final Map<String, InetSocketAddress> members = new LinkedHashMap<>();
+    private final Map<String, RoomRpcClient> clients = new LinkedHashMap<>();
+    private final Map<String, Long> lastSeen = new ConcurrentHashMap<>();
+    private final int virtualNodes;
+    private final long heartbeatMs;
+    private final long failureTimeoutMs;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private volatile ConsistentHashRing ring;
+    private volatile Set<String> liveNodes;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "room-cluster");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService rpcReaders = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "room-rpc-client");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RoomCluster(ObjectMapper objectMapper,
+                       ApplicationEventPublisher eventPublisher,
+                       @Value("${room.cluster.enabled:false}") boolean enabled,
+                       @Value("${room.cluster.node-id:local}") String localNodeId,
+                       @Value("${room.cluster.members:}") List<String> memberSpecs,
+                       @Value("${room.cluster.virtual-nodes:128}") int virtualNodes,
+                       @Value("${room.cluster.heartbeat-ms:1000}") long heartbeatMs,
+                       @Value("${room.cluster.failure-timeout-ms:5000}") long failureTimeoutMs,
+                       @Value("${room.cluster.rpc-timeout-ms:3000}") long rpcTimeoutMs) {
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.localNodeId = localNodeId;
+        this.virtualNodes = virtualNodes;
+        this.heartbeatMs = heartbeatMs;
+        this.failureTimeoutMs = failureTimeoutMs;
+
+        for (String spec : memberSpecs) {
+            if (spec.isBlank()) {
+                continue;
+            }
+            int at = spec.indexOf('@');
+            int colon = spec.lastIndexOf(':');
+            if (at <= 0 || colon <= at) {
+                throw new IllegalArgumentException("Cluster member must be id@host:port, got " + spec);
+            }
+            String id = spec.substring(0, at).trim();
+            members.put(id, new InetSocketAddress(
+                spec.substring(at + 1, colon).trim(), Integer.parseInt(spec.substring(colon + 1).trim())));
+            if (!id.equals(localNodeId)) {
+                clients.put(id, new RoomRpcClient(id, members.get(id), objectMapper, rpcReaders, rpcTimeoutMs));
+            }
+        }
+        if (enabled && !members.containsKey(localNodeId)) {
+            throw new IllegalStateException("room.cluster.node-id " + localNodeId + " is not listed in room.cluster.members");
+        }
+
+        this.liveNodes = Collections.singleton(localNodeId);
+        this.ring = new ConsistentHashRing(liveNodes, virtualNodes);
+    }
+
+    @PostConstruct
+    void start() {
+        if (enabled) {
+            scheduler.scheduleWithFixedDelay(this::heartbeat, 0, heartbeatMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+        clients.values().forEach(RoomRpcClient::disconnect);
+        rpcReaders.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String localNodeId() {
+        return localNodeId;
+    }
+
+    InetSocketAddress localAddress() {
+        return members.get(localNodeId);
+    }
+
+    public Set<String> liveNodes() {
+        return liveNodes;
+    }
+
+    public String ownerOf(String inviteCode) {
+        if (!enabled) {
+            return localNodeId;
+        }
+        String owner = ring.ownerOf(inviteCode);
+        return owner != null ? owner : localNodeId;
+    }
+
+    public boolean isLocal(String inviteCode) {
+        return localNodeId.equals(ownerOf(inviteCode));
+    }
+
+    RoomRpcClient client(String nodeId) {
+        return clients.get(nodeId);
+    }
+
+    /**
+     * Treats a node as failed right away, e.g. after a forwarded call could not reach
+     * it, instead of waiting for the heartbeat timeout.
+     */
+    void suspect(String nodeId) {
+        if (lastSeen.remove(nodeId) != null) {
+            scheduler.execute(this::updateLiveNodes);
+        }
+    }
+
+    private void heartbeat() {
+        for (RoomRpcClient client : clients.values()) {
+            client.call(RoomMutationRouter.PING, null, localNodeId).whenComplete((result, error) -> {
+                if (error == null) {
+                    lastSeen.put(client.nodeId(), System.currentTimeMillis());
+                }
+            });
+        }
+        updateLiveNodes();
+    }
+
+    private synchronized void updateLiveNodes() {
+        long now = System.currentTimeMillis();
+        Set<String> live = new TreeSet<>();
+        live.add(localNodeId);
+        lastSeen.forEach((nodeId, seen) -> {
+            if (now - seen <= failureTimeoutMs) {
+                live.add(nodeId);
+            }
+        });
+
+        if (live.equals(liveNodes)) {
+            return;
+        }
+        logger.info("Cluster membership changed: {} -> {}", liveNodes, live);
+        liveNodes = Collections.unmodifiableSet(live);
+        ring = new ConsistentHashRing(live, virtualNodes);
+        eventPublisher.publishEvent(new RoomOwnershipChangedEvent(this, liveNodes));
+    }
+}
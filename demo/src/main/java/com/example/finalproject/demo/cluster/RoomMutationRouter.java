@@ -0,0 +1,185 @@
+package com.example.finalproject.demo.cluster;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiFunction;
+
+/**
+ * Entry point for every operation that mutates a room's in-memory state. The
+ * operation runs on the room's owner node, on the room's stripe there, so each room
+ * has exactly one writer: calls for rooms owned elsewhere are forwarded over the
+ * room RPC channel, local ones are queued on the stripe.
+ * <p>
+ * Operations are registered by name with a JSON-mappable argument and result type,
+ * which is what lets them cross node boundaries.
+ */
+@Component
+public class RoomMutationRouter {
+    static final String PING = "ping";
+    static final String HANDOFF = "handoff";
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomMutationRouter.class);
+
+    private final RoomCluster cluster;
+    private final RoomStripes stripes;
+    private final ObjectMapper objectMapper;
+    private final Map<String, RoomStateHandoff> handoffs = new ConcurrentHashMap<>();
+    private final Map<String, Operation<?, ?>> operations = new ConcurrentHashMap<>();
+
+    public RoomMutationRouter(RoomCluster cluster, RoomStripes stripes, ObjectMapper objectMapper,
+                              List<RoomStateHandoff> handoffs) {
+        this.cluster = cluster;
+        this.stripes = stripes;
+        this.objectMapper = objectMapper;
+        for (RoomStateHandoff handoff : handoffs) {
+            this.handoffs.put(handoff.handoffName(), handoff);
+        }
+    }
+
+    public <A, T> void register(String operation, Class<A> argumentType, BiFunction<String, A, T> handler) {
+        if (operations.putIfAbsent(operation, new Operation<>(argumentType, handler)) != null) {
+            throw new IllegalStateException("Room operation already registered: " + operation);
+        }
+    }
+
+    /**
+     * Runs the operation against the room's authoritative state and waits for the
+     * result.
+     *
+     * @throws IllegalStateException if the owner node could not be reached or the
+     *                               operation failed there
+     */
+    public <T> T execute(String inviteCode, String operation, Object argument, Class<T> resultType) {
+        String owner = cluster.ownerOf(inviteCode);
+        try {
+            if (owner.equals(cluster.localNodeId())) {
+                return resultType.cast(executeLocal(operation, inviteCode, argument).get());
+            }
+
+            RoomRpcClient client = cluster.client(owner);
+            JsonNode result;
+            try {
+                result = client.call(operation, inviteCode, argument).get();
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof IllegalStateException)) {
+                    cluster.suspect(owner);
+                }
+                throw e;
+            }
+            return result == null || result.isNull() ? null : objectMapper.treeToValue(result, resultType);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Room operation " + operation + " failed on node " + owner
+                + ": " + e.getCause().getMessage(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for room operation " + operation, e);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable result for room operation " + operation, e);
+        }
+    }
+
+    /**
+     * Called by {@link RoomRpcServer} for an operation another node forwarded here.
+     * The sender's view of ownership is trusted so a call is never bounced between
+     * nodes while their rings disagree.
+     */
+    CompletableFuture<Object> executeForwarded(String operation, String inviteCode, JsonNode argument) {
+        if (PING.equals(operation)) {
+            return CompletableFuture.completedFuture(cluster.localNodeId());
+        }
+        if (HANDOFF.equals(operation)) {
+            return importHandoff(inviteCode, argument);
+        }
+        return executeLocal(operation, inviteCode, argument);
+    }
+
+    private CompletableFuture<Object> executeLocal(String operation, String inviteCode, Object argument) {
+        Operation<?, ?> registered = operations.get(operation);
+        if (registered == null || inviteCode == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Unknown room operation " + operation));
+        }
+        return stripes.submit(inviteCode, () -> registered.apply(inviteCode, argument, objectMapper));
+    }
+
+    /**
+     * Pushes the state of every room this node no longer owns to its new owner. If
+     * the new owner cannot take it, the state is put back here.
+     */
+    @EventListener
+    public void onOwnershipChanged(RoomOwnershipChangedEvent event) {
+        for (RoomStateHandoff handoff : handoffs.values()) {
+            for (String inviteCode : handoff.roomsWithState()) {
+                if (!cluster.isLocal(inviteCode)) {
+                    stripes.submit(inviteCode, () -> handOver(handoff, inviteCode));
+                }
+            }
+        }
+    }
+
+    private Void handOver(RoomStateHandoff handoff, String inviteCode) {
+        String owner = cluster.ownerOf(inviteCode);
+        RoomRpcClient client = cluster.client(owner);
+        Object state = handoff.exportState(inviteCode);
+        if (client == null || state == null) {
+            return null;
+        }
+
+        ObjectNode argument = objectMapper.createObjectNode();
+        argument.put("name", handoff.handoffName());
+        argument.set("state", objectMapper.valueToTree(state));
+        try {
+            client.call(HANDOFF, inviteCode, argument).join();
+            logger.info("Handed {} state of room {} to node {}", handoff.handoffName(), inviteCode, owner);
+        } catch (CompletionException e) {
+            logger.warn("Node {} did not take {} state of room {}, keeping it", owner, handoff.handoffName(), inviteCode, e);
+            handoff.importState(inviteCode, argument.get("state"));
+        }
+        return null;
+    }
+
+    private CompletableFuture<Object> importHandoff(String inviteCode, JsonNode argument) {
+        RoomStateHandoff handoff = handoffs.get(argument.path("name").asText());
+        if (handoff == null || inviteCode == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Unknown room state " + argument.path("name")));
+        }
+        return stripes.submit(inviteCode, () -> {
+            handoff.importState(inviteCode, argument.get("state"));
+            return Boolean.TRUE;
+        });
+    }
+
+    private static final class Operation<A, T> {
+        private final Class<A> argumentType;
+        private final BiFunction<String, A, T> handler;
+
+        private Operation(Class<A> argumentType, BiFunction<String, A, T> handler) {
+            this.argumentType = argumentType;
+            this.handler = handler;
+        }
+
+        private T apply(String inviteCode, Object argument, ObjectMapper objectMapper) throws JsonProcessingException {
+            A typed;
+            if (argument == null || argument instanceof JsonNode && ((JsonNode) argument).isNull()) {
+                typed = null;
+            } else if (argument instanceof JsonNode) {
+                typed = objectMapper.treeToValue((JsonNode) argument, argumentType);
+            } else {
+                typed = argumentType.cast(argument);
+            }
+            return handler.apply(inviteCode, typed);
+        }
+    }
+}
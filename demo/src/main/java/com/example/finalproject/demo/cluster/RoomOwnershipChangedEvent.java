@@ -0,0 +1,21 @@
+package com.example.finalproject.demo.cluster;
+
+import org.springframework.context.ApplicationEvent;
+
+import java.util.Set;
+
+/**
+ * Published when the set of live cluster nodes changes and rooms may have new owners.
+ */
+public class RoomOwnershipChangedEvent extends ApplicationEvent {
+    private final Set<String> liveNodes;
+
+    public RoomOwnershipChangedEvent(Object source, Set<String> liveNodes) {
+        super(source);
+        this.liveNodes = liveNodes;
+    }
+
+    public Set<String> getLiveNodes() {
+        return liveNodes;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.finalproject.demo.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection to one other node's {@link RoomRpcServer}. Requests are pipelined over a
+ * single socket and matched to responses by id; the socket is reopened lazily after
+ * a failure.
+ */
+class RoomRpcClient {
+    private static final Logger logger = LoggerFactory.getLogger(RoomRpcClient.class);
+
+    private final String nodeId;
+    private final InetSocketAddress address;
+    private final ObjectMapper objectMapper;
+    private final Executor readerExecutor;
+    private final long timeoutMs;
+    private final AtomicLong nextId = new AtomicLong();
+    private final Map<Long, CompletableFuture<JsonNode>> inFlight = new ConcurrentHashMap<>();
+
+    private Socket socket;
+    private Writer writer;
+
+    RoomRpcClient(String nodeId, InetSocketAddress address, ObjectMapper objectMapper,
+                  Executor readerExecutor, long timeoutMs) {
+        this.nodeId = nodeId;
+        this.address = address;
+        this.objectMapper = objectMapper;
+        this.readerExecutor = readerExecutor;
+        this.timeoutMs = timeoutMs;
+    }
+
+    String nodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Sends {@code operation} for {@code inviteCode} and completes with the remote
+     * result, or exceptionally on error or after the RPC timeout.
+     */
+    CompletableFuture<JsonNode> call(String operation, String inviteCode, Object argument) {
+        long id = nextId.incrementAndGet();
+        ObjectNode request = objectMapper.createObjectNode();
+        request.put("id", id);
+        request.put("op", operation);
+        if (inviteCode != null) {
+            request.put("room", inviteCode);
+        }
+        request.set("arg", objectMapper.valueToTree(argument));
+
+        CompletableFuture<JsonNode> response = new CompletableFuture<>();
+        inFlight.put(id, response);
+        try {
+            write(request.toString());
+        } catch (IOException e) {
+            inFlight.remove(id);
+            disconnect();
+            response.completeExceptionally(e);
+            return response;
+        }
+        return response.orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+            .whenComplete((result, error) -> inFlight.remove(id));
+    }
+
+    synchronized void disconnect() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.debug("Error closing RPC connection to {}", nodeId, e);
+            }
+        }
+        socket = null;
+        writer = null;
+    }
+
+    private synchronized void write(String line) throws IOException {
+        if (writer == null) {
+            open();
+        }
+        writer.write(line);
+        writer.write('\n');
+        writer.flush();
+    }
+
+    private void open() throws IOException {
+        Socket connected = new Socket();
+        connected.setTcpNoDelay(true);
+        connected.connect(address, (int) timeoutMs);
+        socket = connected;
+        writer = new BufferedWriter(new OutputStreamWriter(connected.getOutputStream(), StandardCharsets.UTF_8));
+        BufferedReader reader = new BufferedReader(new InputStreamReader(connected.getInputStream(), StandardCharsets.UTF_8));
+        readerExecutor.execute(() -> readResponses(connected, reader));
+    }
+
+    private void readResponses(Socket connected, BufferedReader reader) {
+        try (connected) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                JsonNode response = objectMapper.readTree(line);
+                CompletableFuture<JsonNode> pending = inFlight.remove(response.path("id").asLong());
+                if (pending == null) {
+                    continue;
+                }
+                if (response.path("ok").asBoolean()) {
+                    pending.complete(response.get("result"));
+                } else {
+                    pending.completeExceptionally(new IllegalStateException(
+                        "Node " + nodeId + " failed: " + response.path("error").asText()));
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("RPC connection to {} closed", nodeId, e);
+        }
+
+        synchronized (this) {
+            if (socket == connected) {
+                socket = null;
+                writer = null;
+            }
+        }
+        IOException closed = new IOException("Connection to " + nodeId + " closed");
+        inFlight.values().forEach(pending -> pending.completeExceptionally(closed));
+    }
+}
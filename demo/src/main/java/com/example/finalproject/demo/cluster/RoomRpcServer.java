@@ -0,0 +1,130 @@
+package com.example.finalproject.demo.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Accepts room operations forwarded by other nodes, one JSON object per line, and
+ * answers each with {@code {"id", "ok", "result" | "error"}}. Responses may come back
+ * out of order; the client matches them by id.
+ */
+@Component
+public class RoomRpcServer {
+    private static final Logger logger = LoggerFactory.getLogger(RoomRpcServer.class);
+
+    private final RoomCluster cluster;
+    private final RoomMutationRouter router;
+    private final ObjectMapper objectMapper;
+
+    private volatile boolean running;
+    private ServerSocket serverSocket;
+
+    private final ExecutorService threads = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "room-rpc");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RoomRpcServer(RoomCluster cluster, RoomMutationRouter router, ObjectMapper objectMapper) {
+        this.cluster = cluster;
+        this.router = router;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        if (!cluster.isEnabled()) {
+            return;
+        }
+        running = true;
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(cluster.localAddress());
+        threads.execute(this::acceptLoop);
+        logger.info("Room RPC listening on {} as node {}", cluster.localAddress(), cluster.localNodeId());
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                logger.debug("Error closing room RPC listener", e);
+            }
+        }
+        threads.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                threads.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (running) {
+                    logger.warn("Room RPC accept failed", e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while (running && (line = reader.readLine()) != null) {
+                JsonNode request = objectMapper.readTree(line);
+                long id = request.path("id").asLong();
+                router.executeForwarded(request.path("op").asText(), request.path("room").asText(null), request.get("arg"))
+                    .whenComplete((result, error) -> respond(writer, id, result, error));
+            }
+        } catch (IOException e) {
+            logger.debug("Room RPC connection from {} closed", socket.getRemoteSocketAddress(), e);
+        }
+    }
+
+    private void respond(Writer writer, long id, Object result, Throwable error) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("id", id);
+        response.put("ok", error == null);
+        if (error == null) {
+            response.set("result", objectMapper.valueToTree(result));
+        } else {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            response.put("error", String.valueOf(cause.getMessage()));
+        }
+
+        synchronized (writer) {
+            try {
+                writer.write(response.toString());
+                writer.write('\n');
+                writer.flush();
+            } catch (IOException e) {
+                logger.debug("Could not answer room RPC {}", id, e);
+            }
+        }
+    }
+}
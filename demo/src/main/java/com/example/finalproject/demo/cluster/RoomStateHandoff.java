@@ -0,0 +1,30 @@
+package com.example.finalproject.demo.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Set;
+
+/**
+ * In-memory per-room state that has to follow the room when ownership moves to
+ * another node. Export and import run on the room's stripe.
+ */
+public interface RoomStateHandoff {
+
+    /**
+     * Stable name used to match exported state with its importer on the new owner.
+     */
+    String handoffName();
+
+    /**
+     * Invite codes of rooms that currently have state on this node.
+     */
+    Set<String> roomsWithState();
+
+    /**
+     * Removes the room's state from this node and returns it in a JSON-serializable
+     * form, or null if there is none.
+     */
+    Object exportState(String inviteCode);
+
+    void importState(String inviteCode, JsonNode state);
+}
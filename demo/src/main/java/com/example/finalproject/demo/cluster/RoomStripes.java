@@ -0,0 +1,82 @@
+package com.example.finalproject.demo.cluster;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Fixed set of single-threaded executors. A room always maps to the same stripe, so
+ * all mutations of one room run one after another on one thread and its in-memory
+ * state needs no locks, while different rooms still proceed in parallel.
+ */
+@Component
+public class RoomStripes {
+
+    private static final ThreadLocal<Integer> CURRENT_STRIPE = new ThreadLocal<>();
+
+    private final ExecutorService[] stripes;
+
+    public RoomStripes(@Value("${room.cluster.stripes:0}") int configuredStripes) {
+        int count = configuredStripes > 0 ? configuredStripes : Runtime.getRuntime().availableProcessors() * 2;
+        this.stripes = new ExecutorService[count];
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            stripes[i] = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(() -> {
+                    CURRENT_STRIPE.set(index);
+                    r.run();
+                }, "room-stripe-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        for (ExecutorService stripe : stripes) {
+            stripe.shutdown();
+        }
+    }
+
+    /**
+     * Runs the task on the room's stripe. A task submitted from that stripe itself
+     * runs inline rather than queueing behind the caller.
+     */
+    public <T> CompletableFuture<T> submit(String inviteCode, Callable<T> task) {
+        int index = Math.floorMod(inviteCode.hashCode(), stripes.length);
+        if (Integer.valueOf(index).equals(CURRENT_STRIPE.get())) {
+            return call(task);
+        }
+        return CompletableFuture.supplyAsync(() -> call(task).join(), stripes[index]);
+    }
+
+    /**
+     * Runs {@code task} for each room on that room's stripe and waits for all of them,
+     * for readers such as snapshots that need a consistent view of a room's state.
+     */
+    public void forEachRoom(Collection<String> inviteCodes, Consumer<String> task) {
+        CompletableFuture<?>[] done = inviteCodes.stream()
+            .map(inviteCode -> submit(inviteCode, () -> {
+                task.accept(inviteCode);
+                return null;
+            }))
+            .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(done).join();
+    }
+
+    private static <T> CompletableFuture<T> call(Callable<T> task) {
+        try {
+            return CompletableFuture.completedFuture(task.call());
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.finalproject.demo.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds the executors behind the STOMP message channels and publishes their queue
+ * depth, active count and rejections as {@code websocket.executor.*} metrics tagged
+ * with the channel name.
+ */
+final class ChannelExecutors {
+    private static final Logger logger = LoggerFactory.getLogger(ChannelExecutors.class);
+
+    private ChannelExecutors() {
+    }
+
+    /**
+     * A bounded thread pool. When both the pool and its queue are full the rejection is
+     * counted and the task runs on the caller's thread, which pushes back on the sender
+     * instead of dropping the message.
+     * <p>
+     * Threads past {@code corePoolSize} are only started once the queue is full, so a
+     * pool for blocking work should have its core size equal to its max size. Core
+     * threads time out when idle either way.
+     */
+    static ThreadPoolTaskExecutor pool(String channel, int corePoolSize, int maxPoolSize, int queueCapacity,
+                                       MeterRegistry meterRegistry) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix(channel + "-");
+        executor.setCorePoolSize(corePoolSize);
+        executor.setMaxPoolSize(Math.max(corePoolSize, maxPoolSize));
+        executor.setQueueCapacity(queueCapacity);
+        executor.setAllowCoreThreadTimeOut(true);
+
+        Counter rejected = meterRegistry.counter("websocket.executor.rejected", "channel", channel);
+        ThreadPoolExecutor.CallerRunsPolicy callerRuns = new ThreadPoolExecutor.CallerRunsPolicy();
+        executor.setRejectedExecutionHandler((task, pool) -> {
+            rejected.increment();
+            callerRuns.rejectedExecution(task, pool);
+        });
+
+        Gauge.builder("websocket.executor.queued", executor, ThreadPoolTaskExecutor::getQueueSize)
+            .tag("channel", channel).register(meterRegistry);
+        Gauge.builder("websocket.executor.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+            .tag("channel", channel).register(meterRegistry);
+        Gauge.builder("websocket.executor.pool.size", executor, ThreadPoolTaskExecutor::getPoolSize)
+            .tag("channel", channel).register(meterRegistry);
+        return executor;
+    }
+
+    /**
+     * One virtual thread per message, so handlers blocking on JDBC or HTTP do not
+     * hold a pool thread. Requires JDK 21; on older runtimes this falls back to a
+     * pool sized for blocking work.
+     *
+     * @param concurrencyLimit maximum messages in flight, or -1 for no limit
+     */
+    static Executor virtual(String channel, int concurrencyLimit, MeterRegistry meterRegistry) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(channel + "-vt-");
+        try {
+            executor.setVirtualThreads(true);
+        } catch (UnsupportedOperationException e) {
+            logger.warn("Virtual threads are not available on Java {}, using a thread pool for the {} channel",
+                Runtime.version().feature(), channel);
+            int threads = concurrencyLimit > 0 ? concurrencyLimit : 200;
+            return pool(channel, threads, threads, threads * 10, meterRegistry);
+        }
+        if (concurrencyLimit > 0) {
+            executor.setConcurrencyLimit(concurrencyLimit);
+        }
+
+        AtomicInteger active = new AtomicInteger();
+        Gauge.builder("websocket.executor.active", active, AtomicInteger::get)
+            .tag("channel", channel).register(meterRegistry);
+        Gauge.builder("websocket.executor.queued", () -> 0).tag("channel", channel).register(meterRegistry);
+        meterRegistry.counter("websocket.executor.rejected", "channel", channel);
+
+        return task -> executor.execute(() -> {
+            active.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+    }
+}
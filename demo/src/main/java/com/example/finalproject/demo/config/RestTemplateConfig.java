@@ -1,14 +1,26 @@
 package com.example.finalproject.demo.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
 public class RestTemplateConfig {
 
+    // Without these a hung upstream holds the calling thread forever
+    @Value("${chatgpt.http.connect-timeout-ms:2000}")
+    private int connectTimeoutMs;
+
+    @Value("${chatgpt.http.read-timeout-ms:10000}")
+    private int readTimeoutMs;
+
     @Bean
     public RestTemplate restTemplate() {
-        return new RestTemplate();
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeoutMs);
+        requestFactory.setReadTimeout(readTimeoutMs);
+        return new RestTemplate(requestFactory);
     }
-} 
\ No newline at end of file
+}
@@ -1,10 +1,16 @@
 package com.example.finalproject.demo.config;
 
+import com.example.finalproject.demo.websocket.SlowConsumerGuard;
+import com.example.finalproject.demo.websocket.StompIdentityInterceptor;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.context.event.EventListener;
@@ -18,16 +24,71 @@ import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     
     private static final Logger logger = LoggerFactory.getLogger(WebSocketConfig.class);
 
+    private static final int CPUS = Runtime.getRuntime().availableProcessors();
+
+    private final StompIdentityInterceptor stompIdentityInterceptor;
+    private final SlowConsumerGuard slowConsumerGuard;
+    private final MeterRegistry meterRegistry;
+
+    // Inbound handlers block on JDBC and the AI upstream, so the pool is sized for waiting, not CPU
+    @Value("${websocket.executor.inbound.mode:pool}")
+    private String inboundMode;
+
+    @Value("${websocket.executor.inbound.core-size:0}")
+    private int inboundCoreSize;
+
+    @Value("${websocket.executor.inbound.max-size:200}")
+    private int inboundMaxSize;
+
+    @Value("${websocket.executor.inbound.queue-capacity:1000}")
+    private int inboundQueueCapacity;
+
+    @Value("${websocket.executor.inbound.max-concurrency:-1}")
+    private int inboundMaxConcurrency;
+
+    @Value("${websocket.executor.outbound.core-size:0}")
+    private int outboundCoreSize;
+
+    @Value("${websocket.executor.outbound.max-size:64}")
+    private int outboundMaxSize;
+
+    @Value("${websocket.executor.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    @Value("${websocket.transport.send-time-limit-ms:10000}")
+    private int sendTimeLimitMs;
+
+    @Value("${websocket.transport.send-buffer-size-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    @Value("${websocket.transport.message-size-limit:65536}")
+    private int messageSizeLimit;
+
+    @Value("${websocket.executor.broker.core-size:0}")
+    private int brokerCoreSize;
+
+    @Value("${websocket.executor.broker.max-size:32}")
+    private int brokerMaxSize;
+
+    @Value("${websocket.executor.broker.queue-capacity:10000}")
+    private int brokerQueueCapacity;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         logger.info("Configuring message broker");
-        registry.enableSimpleBroker("/topic");
+        registry.enableSimpleBroker("/topic", "/queue");
         registry.setApplicationDestinationPrefixes("/app");
-        logger.info("Message broker configured with broker prefix: /topic, application prefix: /app");
+        registry.setUserDestinationPrefix("/user");
+        // Keep per-session order (and so replay sequence order) with a multi-threaded outbound channel
+        registry.setPreservePublishOrder(true);
+        registry.configureBrokerChannel().taskExecutor(ChannelExecutors.pool("broker",
+            orDefault(brokerCoreSize, CPUS), brokerMaxSize, brokerQueueCapacity, meterRegistry));
+        logger.info("Message broker configured with broker prefixes: /topic, /queue, application prefix: /app");
     }
 
     @Override
@@ -39,13 +100,25 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*");
+
+        // Frames from one session are handled in order even though the inbound channel is concurrent
+        registry.setPreserveReceiveOrder(true);
                 
         logger.info("STOMP endpoints registered: /ws with and without SockJS support");
     }
     
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(new ChannelInterceptor() {
+        if ("virtual".equalsIgnoreCase(inboundMode)) {
+            registration.executor(ChannelExecutors.virtual("inbound", inboundMaxConcurrency, meterRegistry));
+        } else {
+            // A pool only grows past its core size once the queue is full, so blocking handlers
+            // get every thread up to max-size before anything queues; idle ones time out
+            registration.taskExecutor(ChannelExecutors.pool("inbound",
+                orDefault(inboundCoreSize, inboundMaxSize), inboundMaxSize, inboundQueueCapacity, meterRegistry));
+        }
+
+        registration.interceptors(stompIdentityInterceptor, new ChannelInterceptor() {
             @Override
             public org.springframework.messaging.Message<?> preSend(org.springframework.messaging.Message<?> message, org.springframework.messaging.MessageChannel channel) {
                 StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
@@ -68,6 +141,26 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         });
     }
     
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor(ChannelExecutors.pool("outbound",
+            orDefault(outboundCoreSize, CPUS * 2), outboundMaxSize, outboundQueueCapacity, meterRegistry));
+        registration.interceptors(slowConsumerGuard);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        // A session that cannot drain within these limits is closed by Spring rather than buffering without bound
+        registration.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeLimit)
+                .setMessageSizeLimit(messageSizeLimit)
+                .addDecoratorFactory(slowConsumerGuard::decorate);
+    }
+
+    private static int orDefault(int configured, int fallback) {
+        return configured > 0 ? configured : fallback;
+    }
+    
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectedEvent event) {
         logger.info("Received a new web socket connection: {}", event.getMessage());
@@ -75,6 +168,7 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     
     @EventListener
     public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
+        // Presence bookkeeping for the dropped session happens in RoomPresenceRegistry
         logger.info("Session disconnected: {}", event.getSessionId());
     }
 } 
\ No newline at end of file
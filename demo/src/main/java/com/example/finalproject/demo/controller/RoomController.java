@@ -1,5 +1,6 @@
 package com.example.finalproject.demo.controller;
 
+import com.example.finalproject.demo.cluster.RoomMutationRouter;
 import com.example.finalproject.demo.model.Room;
 import com.example.finalproject.demo.model.User;
 import com.example.finalproject.demo.service.RoomService;
@@ -7,6 +8,8 @@ import com.example.finalproject.demo.service.UserService;
 import com.example.finalproject.demo.dto.RoomResponse;
 import com.example.finalproject.demo.dto.JoinRoomResponse;
 import com.example.finalproject.demo.service.RestaurantVotingService;
+import com.example.finalproject.demo.websocket.RoomBroadcaster;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,8 +35,29 @@ public class RoomController {
     private final UserService userService;
     private final SimpMessagingTemplate messagingTemplate;
     private final RestaurantVotingService restaurantVotingService;
+    private final RoomBroadcaster roomBroadcaster;
+    private final RoomMutationRouter mutationRouter;
     
     private static final Logger logger = LoggerFactory.getLogger(RoomController.class);
+
+    static final String OP_TALLY_VOTE = "tally-vote";
+    static final String OP_BEST_RESTAURANT = "best-restaurant";
+
+    /**
+     * Vote tallies are held by the room's owner node, so tally reads and writes are
+     * routed there.
+     */
+    @PostConstruct
+    void registerRoomOperations() {
+        mutationRouter.register(OP_TALLY_VOTE, String.class, (inviteCode, restaurantName) ->
+            roomService.getRoomByInviteCode(inviteCode)
+                .map(room -> roomService.voteForRestaurant(room.getId(), restaurantName))
+                .orElse(false));
+        mutationRouter.register(OP_BEST_RESTAURANT, Void.class, (inviteCode, ignored) ->
+            roomService.getRoomByInviteCode(inviteCode)
+                .flatMap(room -> roomService.getBestRestaurant(room.getId()))
+                .orElse(null));
+    }
     
     private static String getCurrentUserEmail() {
         return com.example.finalproject.demo.controller.AuthController.getLastLoggedInUserEmail();
@@ -196,7 +220,10 @@ public class RoomController {
             @PathVariable Long roomId,
             @RequestParam String restaurantName) {
         
-        boolean voted = roomService.voteForRestaurant(roomId, restaurantName);
+        boolean voted = roomService.findById(roomId)
+            .map(room -> Boolean.TRUE.equals(
+                mutationRouter.execute(room.getInviteCode(), OP_TALLY_VOTE, restaurantName, Boolean.class)))
+            .orElse(false);
         
         if (voted) {
             Map<String, Object> response = new HashMap<>();
@@ -213,7 +240,8 @@ public class RoomController {
     
     @GetMapping("/{roomId}/bestRestaurant")
     public ResponseEntity<?> getBestRestaurant(@PathVariable Long roomId) {
-        Optional<String> bestRestaurantOpt = roomService.getBestRestaurant(roomId);
+        Optional<String> bestRestaurantOpt = roomService.findById(roomId)
+            .map(room -> mutationRouter.execute(room.getInviteCode(), OP_BEST_RESTAURANT, null, String.class));
         
         if (bestRestaurantOpt.isPresent()) {
             Map<String, Object> response = new HashMap<>();
@@ -353,7 +381,7 @@ public class RoomController {
             voteMessage.setSelectedRestaurant(restaurant);
             voteMessage.setVotes(new HashMap<>());
             
-            messagingTemplate.convertAndSend("/topic/room/" + inviteCode, voteMessage);
+            roomBroadcaster.broadcast(inviteCode, voteMessage);
             
             Map<String, Object> response = new HashMap<>();
             response.put("status", "success");
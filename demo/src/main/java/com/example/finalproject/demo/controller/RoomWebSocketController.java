@@ -1,26 +1,50 @@
 package com.example.finalproject.demo.controller;
 
+import com.example.finalproject.demo.cluster.RoomCluster;
+import com.example.finalproject.demo.cluster.RoomMutationRouter;
 import com.example.finalproject.demo.dto.RoomMessage;
+import com.example.finalproject.demo.eventlog.RoomEvent;
+import com.example.finalproject.demo.eventlog.RoomEventLog;
 import com.example.finalproject.demo.dto.RoomUpdateMessage;
 import com.example.finalproject.demo.dto.AiSuggestionRequest;
+import com.example.finalproject.demo.dto.BallotRequest;
 import com.example.finalproject.demo.dto.RestaurantSelectionRequest;
+import com.example.finalproject.demo.dto.ResyncRequest;
+import com.example.finalproject.demo.dto.RoomReplayResponse;
+import com.example.finalproject.demo.dto.VoteAck;
+import com.example.finalproject.demo.dto.VoteRequest;
 import com.example.finalproject.demo.model.Room;
 import com.example.finalproject.demo.model.User;
+import com.example.finalproject.demo.service.GroupDecisionService;
+import com.example.finalproject.demo.service.LateAiRecommendationEvent;
+import com.example.finalproject.demo.service.RoomSelectionContext;
 import com.example.finalproject.demo.service.RoomService;
-import com.example.finalproject.demo.service.UserService;
+import com.example.finalproject.demo.service.SelectionResult;
 import com.example.finalproject.demo.service.RestaurantSelectionService;
 import com.example.finalproject.demo.service.RestaurantVotingService;
+import com.example.finalproject.demo.service.VoteDeadlineScheduler;
+import com.example.finalproject.demo.websocket.RoomBroadcaster;
+import com.example.finalproject.demo.websocket.RoomPresenceChangedEvent;
+import com.example.finalproject.demo.websocket.RoomPresenceRegistry;
+import com.example.finalproject.demo.websocket.RoomPrincipal;
+import com.example.finalproject.demo.websocket.RoomReplayBuffer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.handler.annotation.SendTo;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.SendToUser;
 import org.springframework.stereotype.Controller;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.security.Principal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -31,227 +55,194 @@ import java.util.stream.Collectors;
 public class RoomWebSocketController {
 
     private final RoomService roomService;
-    private final SimpMessagingTemplate messagingTemplate;
-    private final UserService userService;
+    private final RoomBroadcaster roomBroadcaster;
+    private final RoomReplayBuffer replayBuffer;
     private final RestaurantSelectionService restaurantSelectionService;
     private final RestaurantVotingService restaurantVotingService;
+    private final RoomPresenceRegistry presenceRegistry;
+    private final MeterRegistry meterRegistry;
+    private final RoomMutationRouter mutationRouter;
+    private final RoomCluster roomCluster;
+    private final RoomEventLog eventLog;
+    private final VoteDeadlineScheduler voteDeadlines;
+    private final GroupDecisionService groupDecisionService;
     private static final Logger logger = LoggerFactory.getLogger(RoomWebSocketController.class);
 
+    static final String OP_VOTE = "vote";
+    static final String OP_RESOLVE_OPEN_ROUNDS = "resolve-open-rounds";
+    static final String OP_SELECT = "select";
+    static final String OP_EXPIRE_ROUND = "expire-round";
+    static final String OP_BALLOT = "ballot";
+
+    /**
+     * Vote state lives on the room's owner node; these are the operations other
+     * nodes forward to it.
+     */
+    @PostConstruct
+    void registerRoomOperations() {
+        mutationRouter.register(OP_VOTE, VoteRequest.class, (inviteCode, vote) -> processVote(inviteCode,
+            vote.getRestaurant(), vote.getSuggestionIndex(), vote.getUsername(), vote.isApproved(), vote.getClientVoteId()));
+        mutationRouter.register(OP_RESOLVE_OPEN_ROUNDS, Integer.class, this::resolveOpenRounds);
+        mutationRouter.register(OP_SELECT, RestaurantSelectionService.SelectionStrategy.class, this::selectAndBroadcast);
+        mutationRouter.register(OP_EXPIRE_ROUND, String.class, this::resolveExpiredRound);
+        mutationRouter.register(OP_BALLOT, BallotRequest.class, this::processBallot);
+        voteDeadlines.onExpiry((inviteCode, restaurant) ->
+            mutationRouter.execute(inviteCode, OP_EXPIRE_ROUND, restaurant, Boolean.class));
+    }
+
+    /**
+     * Adds the session's user (bound at CONNECT by {@code StompIdentityInterceptor})
+     * to the room and broadcasts the updated participant list. Anonymous sessions
+     * just receive the current room state.
+     */
     @Transactional
     @MessageMapping("/room/{inviteCode}/join")
-    public void handleJoinRoom(@DestinationVariable String inviteCode, @Payload Object userIdPayload) {
-        System.out.println("============== WEBSOCKET: JOIN ROOM START ==============");
-        System.out.println("Received join request: inviteCode=" + inviteCode + ", userIdPayload=" + userIdPayload + " (type: " + (userIdPayload != null ? userIdPayload.getClass().getName() : "null") + ")");
-        
-        Long parsedUserId;
-        try {
-            if (userIdPayload == null) {
-                parsedUserId = 0L;
-            } else if (userIdPayload instanceof Number) {
-                parsedUserId = ((Number) userIdPayload).longValue();
-            } else if (userIdPayload instanceof String) {
-                String cleaned = ((String) userIdPayload).replaceAll("[^0-9]", "");
-                if (!cleaned.isEmpty()) {
-                    parsedUserId = Long.parseLong(cleaned);
-                } else {
-                    parsedUserId = 0L;
-                }
-            } else if (userIdPayload instanceof byte[]) {
-                String str = new String((byte[]) userIdPayload);
-                System.out.println("Converted byte array to string: " + str);
-                str = str.replaceAll("[^0-9]", "");
-                if (!str.isEmpty()) {
-                    parsedUserId = Long.parseLong(str);
-                } else {
-                    parsedUserId = 0L;
-                }
-            } else {
-                String str = userIdPayload.toString().replaceAll("[^0-9]", "");
-                if (!str.isEmpty()) {
-                    parsedUserId = Long.parseLong(str);
-                } else {
-                    parsedUserId = 0L;
-                }
-            }
-        } catch (Exception e) {
-            System.out.println("Error parsing userId from payload: " + e.getMessage());
-            parsedUserId = 0L;
-        }
-        
-        final Long userId = parsedUserId;
-        
-        System.out.println("Parsed userId: " + userId);
-        logger.info("Received join room request for inviteCode: {} from user: {}", inviteCode, userId);
-        
+    public void handleJoinRoom(@DestinationVariable String inviteCode, Principal principal) {
+        RoomPrincipal roomUser = principal instanceof RoomPrincipal ? (RoomPrincipal) principal : null;
+        logger.info("Received join room request for inviteCode: {} from user: {}", inviteCode, roomUser);
+
         Optional<Room> roomOpt = roomService.getRoomByInviteCode(inviteCode);
-        System.out.println("Room found: " + roomOpt.isPresent());
-        
-        if (roomOpt.isPresent()) {
-            Room room = roomOpt.get();
-            
-            if (userId > 0) {
-                boolean userAdded = false;
-                try {
-                    Optional<User> joiningUser = userService.findById(userId);
-                    if (joiningUser.isPresent()) {
-                        User user = joiningUser.get();
-                        boolean userExists = room.getUsers().stream()
-                            .anyMatch(u -> u.getId().equals(userId));
-                        
-                        if (!userExists) {
-                            room.getUsers().add(user);
-                            roomService.saveRoom(room);
-                            System.out.println("Added user " + user.getUsername() + " to room");
-                            userAdded = true;
-                        } else {
-                            System.out.println("User already in room");
-                        }
-                    } else {
-                        System.out.println("User with ID " + userId + " not found");
-                    }
-                } catch (Exception e) {
-                    System.out.println("Error adding user to room: " + e.getMessage());
-                }
-                
-                if (userAdded) {
-                    roomOpt = roomService.getRoomByInviteCode(inviteCode);
-                    if (roomOpt.isPresent()) {
-                        room = roomOpt.get();
-                    }
-                }
+        if (roomOpt.isEmpty()) {
+            sendRoomNotFound(inviteCode);
+            return;
+        }
+
+        Room room = roomOpt.get();
+        if (roomUser != null) {
+            Long userId = roomUser.getUserId();
+            boolean userExists = room.getUsers().stream()
+                .anyMatch(u -> u.getId().equals(userId));
+
+            if (!userExists) {
+                room.getUsers().add(roomUser.getUser());
+                roomService.saveRoom(room);
+                eventLog.append(RoomEvent.join(inviteCode, roomUser.getName()));
+                logger.info("Added user {} to room {}", roomUser.getName(), inviteCode);
             }
-            
-            int participantCount = room.getUsers().size();
-            System.out.println("Room ID: " + room.getId() + ", Participant count: " + participantCount);
-            
-            List<String> participants = room.getUsers().stream()
-                .map(User::getUsername)
-                .collect(Collectors.toList());
-            System.out.println("Participants: " + participants);
-            
-            System.out.println("Restaurant suggestions: " + room.getRestaurantSuggestions());
-            
-            RoomMessage message = RoomMessage.createUpdateMessage(
-                participantCount,
-                false,
-                participants,
-                room.getRestaurantSuggestions()
-            );
-            System.out.println("Created message: " + message);
-            
-            String messageJson = message.toJson();
-            System.out.println("Message JSON: " + messageJson);
-            
-            String destination = "/topic/room/" + inviteCode;
-            System.out.println("Sending to destination: " + destination);
-            messagingTemplate.convertAndSend(destination, message);
-            
-            logger.info("Sent join update for room: {}, participant count: {}", inviteCode, participantCount);
-            System.out.println("Message sent successfully");
-        } else {
-            System.out.println("Room not found with invite code: " + inviteCode);
-            logger.warn("Room not found with inviteCode: {}", inviteCode);
-            
-            RoomMessage errorMessage = RoomMessage.createErrorMessage("Room not found with invite code: " + inviteCode);
-            System.out.println("Created error message: " + errorMessage);
-            
-            String destination = "/topic/room/" + inviteCode;
-            System.out.println("Sending error to destination: " + destination);
-            messagingTemplate.convertAndSend(destination, errorMessage);
-            System.out.println("Error message sent");
         }
-        System.out.println("============== WEBSOCKET: JOIN ROOM END ==============");
+
+        int participantCount = broadcastRoomState(inviteCode, room);
+        logger.info("Sent join update for room: {}, participant count: {}", inviteCode, participantCount);
     }
     
     @Transactional
     @MessageMapping("/room/{inviteCode}/leave")
-    public void handleLeaveRoom(@DestinationVariable String inviteCode, @Payload Object userIdPayload) {
-        System.out.println("============== WEBSOCKET: LEAVE ROOM START ==============");
-        System.out.println("Received leave request: inviteCode=" + inviteCode + ", userIdPayload=" + userIdPayload + " (type: " + (userIdPayload != null ? userIdPayload.getClass().getName() : "null") + ")");
-        
-        Long parsedUserId;
+    public void handleLeaveRoom(@DestinationVariable String inviteCode, Principal principal) {
+        logger.info("Received leave room request for inviteCode: {} from user: {}", inviteCode, principal);
+
+        if (principal instanceof RoomPrincipal) {
+            Long userId = ((RoomPrincipal) principal).getUserId();
+            presenceRegistry.leave(inviteCode, userId);
+            roomService.removeUserFromRoom(inviteCode, userId);
+        }
+
+        Optional<Room> roomOpt = roomService.getRoomByInviteCode(inviteCode);
+        if (roomOpt.isEmpty()) {
+            sendRoomNotFound(inviteCode);
+            return;
+        }
+
+        int participantCount = broadcastRoomState(inviteCode, roomOpt.get());
+        logger.info("Sent leave update for room: {}, participant count: {}", inviteCode, participantCount);
+    }
+
+    /**
+     * A participant dropped off without coming back; open rounds in that room may
+     * now have every remaining participant's vote.
+     */
+    @EventListener
+    public void onPresenceChanged(RoomPresenceChangedEvent event) {
+        if (event.getLiveParticipantCount() <= 0) {
+            return;
+        }
+        // Presence is per node, so with several nodes the owner recounts from the room itself
+        Integer liveCount = roomCluster.isEnabled() ? null : event.getLiveParticipantCount();
         try {
-            if (userIdPayload == null) {
-                parsedUserId = 0L;
-            } else if (userIdPayload instanceof Number) {
-                parsedUserId = ((Number) userIdPayload).longValue();
-            } else if (userIdPayload instanceof String) {
-                String cleaned = ((String) userIdPayload).replaceAll("[^0-9]", "");
-                if (!cleaned.isEmpty()) {
-                    parsedUserId = Long.parseLong(cleaned);
-                } else {
-                    parsedUserId = 0L;
-                }
-            } else if (userIdPayload instanceof byte[]) {
-                String str = new String((byte[]) userIdPayload);
-                System.out.println("Converted byte array to string: " + str);
-                str = str.replaceAll("[^0-9]", "");
-                if (!str.isEmpty()) {
-                    parsedUserId = Long.parseLong(str);
-                } else {
-                    parsedUserId = 0L;
-                }
-            } else {
-                String str = userIdPayload.toString().replaceAll("[^0-9]", "");
-                if (!str.isEmpty()) {
-                    parsedUserId = Long.parseLong(str);
-                } else {
-                    parsedUserId = 0L;
-                }
-            }
-        } catch (Exception e) {
-            System.out.println("Error parsing userId from payload: " + e.getMessage());
-            parsedUserId = 0L;
+            mutationRouter.execute(event.getInviteCode(), OP_RESOLVE_OPEN_ROUNDS, liveCount, Boolean.class);
+        } catch (IllegalStateException e) {
+            logger.warn("Could not resolve open rounds in room {}: {}", event.getInviteCode(), e.getMessage());
         }
-        
-        final Long userId = parsedUserId;
-        
-        System.out.println("Parsed userId: " + userId);
-        logger.info("Received leave room request for inviteCode: {} from user: {}", inviteCode, userId);
-        
+    }
+
+    /**
+     * The AI answered after the room already got a local pick; pass its suggestion
+     * along without overriding the selection.
+     */
+    @EventListener
+    public void onLateAiRecommendation(LateAiRecommendationEvent event) {
+        SelectionResult recommendation = event.getRecommendation();
+        roomBroadcaster.broadcast(event.getInviteCode(), RoomMessage.createAiFollowUpMessage(
+            recommendation.getRestaurant(), recommendation.getExplanation(), event.getInviteCode()));
+        logger.info("Sent late AI recommendation for room {}: {}", event.getInviteCode(), recommendation.getRestaurant());
+    }
+
+    private Boolean resolveOpenRounds(String inviteCode, Integer liveCount) {
+        Integer participantCount = liveCount;
+        if (participantCount == null) {
+            participantCount = roomService.loadSelectionContext(inviteCode)
+                .map(context -> context.getParticipants().size())
+                .orElse(0);
+        }
+        if (participantCount <= 0) {
+            return Boolean.FALSE;
+        }
+        for (String restaurant : restaurantVotingService.getOpenRounds(inviteCode)) {
+            resolveRoundIfComplete(inviteCode, restaurant, participantCount);
+        }
+        return Boolean.TRUE;
+    }
+
+    /**
+     * Catch-up for a client that reconnected after missing broadcasts. Served from the
+     * room's replay buffer; only a client that fell past the buffer's last snapshot
+     * costs a database read.
+     */
+    @Transactional(readOnly = true)
+    @MessageMapping("/room/{inviteCode}/resync")
+    @SendToUser(destinations = "/queue/room-replay", broadcast = false)
+    public RoomReplayResponse handleResync(@DestinationVariable String inviteCode, @Payload ResyncRequest request) {
+        RoomReplayResponse replay = replayBuffer.replaySince(inviteCode, request.getLastSequence(), request.getEpoch());
+        if (replay.isComplete()) {
+            return replay;
+        }
+
+        logger.info("Client in room {} is behind the replay buffer (last seen {}), sending a fresh snapshot",
+            inviteCode, request.getLastSequence());
         Optional<Room> roomOpt = roomService.getRoomByInviteCode(inviteCode);
-        System.out.println("Room found: " + roomOpt.isPresent());
-        
-        if (roomOpt.isPresent()) {
-            Room room = roomOpt.get();
-            int participantCount = room.getUsers().size();
-            System.out.println("Room ID: " + room.getId() + ", Participant count: " + participantCount);
-            
-            List<String> participants = room.getUsers().stream()
-                .map(User::getUsername)
-                .collect(Collectors.toList());
-            System.out.println("Participants: " + participants);
-            
-            RoomMessage message = RoomMessage.createUpdateMessage(
-                participantCount,
-                false,
-                participants,
-                room.getRestaurantSuggestions()
-            );
-            System.out.println("Created message: " + message);
-            
-            String messageJson = message.toJson();
-            System.out.println("Message JSON: " + messageJson);
-            
-            String destination = "/topic/room/" + inviteCode;
-            System.out.println("Sending to destination: " + destination);
-            messagingTemplate.convertAndSend(destination, message);
-            
-            logger.info("Sent leave update for room: {}, participant count: {}", inviteCode, participantCount);
-            System.out.println("Message sent successfully");
-        } else {
-            System.out.println("Room not found with invite code: " + inviteCode);
-            logger.warn("Room not found with inviteCode: {}", inviteCode);
-            
-            RoomMessage errorMessage = RoomMessage.createErrorMessage("Room not found with invite code: " + inviteCode);
-            System.out.println("Created error message: " + errorMessage);
-            
-            String destination = "/topic/room/" + inviteCode;
-            System.out.println("Sending error to destination: " + destination);
-            messagingTemplate.convertAndSend(destination, errorMessage);
-            System.out.println("Error message sent");
+        if (roomOpt.isEmpty()) {
+            return replay;
         }
-        System.out.println("============== WEBSOCKET: LEAVE ROOM END ==============");
+
+        Room room = roomOpt.get();
+        List<String> participants = room.getUsers().stream()
+            .map(User::getUsername)
+            .collect(Collectors.toList());
+        RoomMessage snapshot = RoomMessage.createUpdateMessage(
+            participants.size(), false, participants, new ArrayList<>(room.getRestaurantSuggestions()));
+        snapshot.setSequence(replay.getLatestSequence());
+        snapshot.setEpoch(replay.getEpoch());
+        return new RoomReplayResponse(inviteCode, replay.getLatestSequence(), replay.getEpoch(), snapshot, List.of(), true);
+    }
+
+    private int broadcastRoomState(String inviteCode, Room room) {
+        List<String> participants = room.getUsers().stream()
+            .map(User::getUsername)
+            .collect(Collectors.toList());
+
+        RoomMessage message = RoomMessage.createUpdateMessage(
+            participants.size(),
+            false,
+            participants,
+            room.getRestaurantSuggestions()
+        );
+        roomBroadcaster.broadcast(inviteCode, message);
+        return participants.size();
+    }
+
+    private void sendRoomNotFound(String inviteCode) {
+        logger.warn("Room not found with inviteCode: {}", inviteCode);
+        RoomMessage errorMessage = RoomMessage.createErrorMessage("Room not found with invite code: " + inviteCode);
+        roomBroadcaster.broadcast(inviteCode, errorMessage);
     }
 
     @Transactional
@@ -306,7 +297,7 @@ public class RoomWebSocketController {
                     
                     String destination = "/topic/room/" + inviteCode;
                     System.out.println("Sending to destination: " + destination);
-                    messagingTemplate.convertAndSend(destination, message);
+                    roomBroadcaster.broadcast(inviteCode, message);
                     
                     logger.info("Sent suggestion update for room: {}, suggestions: {}", 
                         inviteCode, updatedRoom.getRestaurantSuggestions());
@@ -323,7 +314,7 @@ public class RoomWebSocketController {
                 
                 String destination = "/topic/room/" + inviteCode;
                 System.out.println("Sending error to destination: " + destination);
-                messagingTemplate.convertAndSend(destination, errorMessage);
+                roomBroadcaster.broadcast(inviteCode, errorMessage);
                 System.out.println("Error message sent");
             }
         } catch (Exception e) {
@@ -332,86 +323,206 @@ public class RoomWebSocketController {
             e.printStackTrace();
             
             RoomMessage errorMessage = RoomMessage.createErrorMessage("Error processing suggestion: " + e.getMessage());
-            String destination = "/topic/room/" + inviteCode;
-            messagingTemplate.convertAndSend(destination, errorMessage);
+            roomBroadcaster.broadcast(inviteCode, errorMessage);
         }
         System.out.println("============== WEBSOCKET: SUGGEST RESTAURANT END ==============");
     }
 
+    /**
+     * Legacy "VOTE:restaurant:user:approved" strings sent to the suggest destination.
+     * Parsed from the right so restaurant names containing ':' survive; new clients
+     * should publish a {@link VoteRequest} to /app/room/{inviteCode}/vote instead.
+     */
     private void handleVoteMessage(String inviteCode, String voteMessage) {
-        System.out.println("============== WEBSOCKET: HANDLE VOTE START ==============");
-        System.out.println("Processing vote message: " + voteMessage);
-        
+        logger.debug("Processing legacy vote message for room {}: {}", inviteCode, voteMessage);
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        int approvedSeparator = voteMessage.lastIndexOf(':');
+        int userSeparator = approvedSeparator > 5 ? voteMessage.lastIndexOf(':', approvedSeparator - 1) : -1;
+        if (userSeparator <= 5) {
+            logger.warn("Invalid vote message format: {}", voteMessage);
+            roomBroadcaster.broadcast(inviteCode,
+                RoomMessage.createErrorMessage("Invalid vote message format"));
+            recordVoteOutcome(sample, "legacy", "rejected");
+            return;
+        }
+
+        String restaurant = voteMessage.substring(5, userSeparator);
+        String username = voteMessage.substring(userSeparator + 1, approvedSeparator);
+        boolean approved = Boolean.parseBoolean(voteMessage.substring(approvedSeparator + 1));
+
+        VoteAck ack = routeVote(inviteCode, new VoteRequest(restaurant, null, username, approved, null));
+        if (!ack.isAccepted()) {
+            roomBroadcaster.broadcast(inviteCode,
+                RoomMessage.createErrorMessage(ack.getMessage()));
+        }
+        recordVoteOutcome(sample, "legacy", ack.isAccepted() ? "accepted" : "rejected");
+    }
+
+    /**
+     * Dedicated vote destination with a typed payload. The voter is the session's
+     * bound user when there is one. The result is acknowledged to the sending session
+     * only; room-wide effects go out on /topic/room/{inviteCode}.
+     */
+    @MessageMapping("/room/{inviteCode}/vote")
+    @SendToUser(destinations = "/queue/vote-ack", broadcast = false)
+    public VoteAck handleVote(@DestinationVariable String inviteCode, @Payload VoteRequest vote, Principal principal) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String voter = principal instanceof RoomPrincipal ? principal.getName() : vote.getUsername();
+        VoteAck ack = routeVote(inviteCode, new VoteRequest(vote.getRestaurant(), vote.getSuggestionIndex(),
+            voter, vote.isApproved(), vote.getClientVoteId()));
+        recordVoteOutcome(sample, "typed", ack.isAccepted() ? "accepted" : "rejected");
+        return ack;
+    }
+
+    private VoteAck routeVote(String inviteCode, VoteRequest vote) {
         try {
-            String[] parts = voteMessage.split(":");
-            if (parts.length < 4) {
-                System.out.println("Invalid vote message format: " + voteMessage);
-                logger.warn("Invalid vote message format: {}", voteMessage);
-                
-                RoomMessage errorMessage = RoomMessage.createErrorMessage("Invalid vote message format");
-                messagingTemplate.convertAndSend("/topic/room/" + inviteCode, errorMessage);
-                return;
-            }
-            
-            String restaurant = parts[1];
-            String username = parts[2];
-            boolean approved = Boolean.parseBoolean(parts[3]);
-            
-            System.out.println("Parsed vote: restaurant='" + restaurant + "', username='" + username + "', approved=" + approved);
-            
-            Optional<Room> roomOpt = roomService.getRoomByInviteCode(inviteCode);
-            if (roomOpt.isEmpty()) {
-                System.out.println("Room not found with invite code: " + inviteCode);
-                logger.warn("Room not found with inviteCode: {}", inviteCode);
-                
-                RoomMessage errorMessage = RoomMessage.createErrorMessage("Room not found with invite code: " + inviteCode);
-                messagingTemplate.convertAndSend("/topic/room/" + inviteCode, errorMessage);
-                return;
-            }
-            
-            Room room = roomOpt.get();
-            int participantCount = room.getUsers().size();
-            
-            Map<String, Boolean> votes = restaurantVotingService.recordVote(inviteCode, restaurant, username, approved);
-            
-            RoomMessage voteUpdateMessage = RoomMessage.createVoteUpdateMessage(inviteCode, restaurant, votes);
-            messagingTemplate.convertAndSend("/topic/room/" + inviteCode, voteUpdateMessage);
-            
-            boolean allVoted = restaurantVotingService.allParticipantsVoted(inviteCode, restaurant, participantCount);
-            if (allVoted) {
-                boolean allApproved = restaurantVotingService.allVotesApproved(inviteCode, restaurant);
-                
-                System.out.println("All participants voted. All approved: " + allApproved);
-                
-                if (allApproved) {
-                    RoomMessage selectionMessage = RoomMessage.createSelectionMessage(
-                        restaurant, 
-                        "Selected by unanimous approval", 
-                        inviteCode
-                    );
-                    messagingTemplate.convertAndSend("/topic/room/" + inviteCode, selectionMessage);
-                    
-                    restaurantVotingService.clearVotes(inviteCode, restaurant);
-                } else {
-                    RoomMessage rejectionMessage = RoomMessage.createErrorMessage(
-                        "Restaurant '" + restaurant + "' was not unanimously approved"
-                    );
-                    messagingTemplate.convertAndSend("/topic/room/" + inviteCode, rejectionMessage);
-                    
-                    restaurantVotingService.clearVotes(inviteCode, restaurant);
-                }
+            return mutationRouter.execute(inviteCode, OP_VOTE, vote, VoteAck.class);
+        } catch (IllegalStateException e) {
+            logger.error("Could not route vote for room {}", inviteCode, e);
+            return VoteAck.rejected(vote.getClientVoteId(), vote.getRestaurant(), "Room is temporarily unavailable, please retry");
+        }
+    }
+
+    private VoteAck processVote(String inviteCode, String restaurant, Integer suggestionIndex,
+                                String username, boolean approved, String clientVoteId) {
+        if (username == null || username.isBlank()) {
+            return VoteAck.rejected(clientVoteId, restaurant, "Missing voter");
+        }
+
+        // The stripe has no open session, so the room is read as plain values
+        Optional<RoomSelectionContext> roomOpt = roomService.loadSelectionContext(inviteCode);
+        if (roomOpt.isEmpty()) {
+            logger.warn("Room not found with inviteCode: {}", inviteCode);
+            return VoteAck.rejected(clientVoteId, restaurant, "Room not found with invite code: " + inviteCode);
+        }
+
+        RoomSelectionContext room = roomOpt.get();
+        if (restaurant == null && suggestionIndex != null) {
+            List<String> suggestions = room.getSuggestions();
+            if (suggestionIndex >= 0 && suggestionIndex < suggestions.size()) {
+                restaurant = suggestions.get(suggestionIndex);
             }
-            
+        }
+        if (restaurant == null || restaurant.isBlank()) {
+            return VoteAck.rejected(clientVoteId, null, "Unknown restaurant");
+        }
+
+        try {
+            int participantCount = roomCluster.isEnabled()
+                ? room.getParticipants().size()
+                : presenceRegistry.liveParticipantCount(inviteCode).orElseGet(() -> room.getParticipants().size());
+
+            int votesReceived = restaurantVotingService.recordVote(inviteCode, restaurant, username, approved);
+
+            RoomMessage voteUpdateMessage = RoomMessage.createVoteUpdateMessage(
+                inviteCode, restaurant, restaurantVotingService.getVotes(inviteCode, restaurant));
+            roomBroadcaster.broadcast(inviteCode, voteUpdateMessage);
+
+            voteDeadlines.open(inviteCode, restaurant);
+            resolveRoundIfComplete(inviteCode, restaurant, participantCount);
+
+            return VoteAck.accepted(clientVoteId, restaurant, votesReceived, participantCount);
         } catch (Exception e) {
-            System.out.println("Error processing vote message: " + e.getMessage());
-            e.printStackTrace();
             logger.error("Error processing vote message", e);
-            
-            RoomMessage errorMessage = RoomMessage.createErrorMessage("Error processing vote: " + e.getMessage());
-            messagingTemplate.convertAndSend("/topic/room/" + inviteCode, errorMessage);
+            return VoteAck.rejected(clientVoteId, restaurant, "Error processing vote: " + e.getMessage());
         }
-        
-        System.out.println("============== WEBSOCKET: HANDLE VOTE END ==============");
+    }
+
+    /**
+     * Full ballot for the APPROVAL, RANKED_CHOICE and SCORE strategies. Ballots are
+     * tallied as they arrive and stay private until a selection is made with one of
+     * those strategies; the sender only gets an acknowledgement with the ballot count.
+     */
+    @MessageMapping("/room/{inviteCode}/ballot")
+    @SendToUser(destinations = "/queue/vote-ack", broadcast = false)
+    public VoteAck handleBallot(@DestinationVariable String inviteCode, @Payload BallotRequest ballot, Principal principal) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String voter = principal instanceof RoomPrincipal ? principal.getName() : ballot.getUsername();
+        VoteAck ack;
+        try {
+            ack = mutationRouter.execute(inviteCode, OP_BALLOT, new BallotRequest(voter, ballot.getApprovals(),
+                ballot.getRanking(), ballot.getScores(), ballot.getClientVoteId()), VoteAck.class);
+        } catch (IllegalStateException e) {
+            logger.error("Could not route ballot for room {}", inviteCode, e);
+            ack = VoteAck.rejected(ballot.getClientVoteId(), null, "Room is temporarily unavailable, please retry");
+        }
+        recordVoteOutcome(sample, "ballot", ack.isAccepted() ? "accepted" : "rejected");
+        return ack;
+    }
+
+    private VoteAck processBallot(String inviteCode, BallotRequest ballot) {
+        String username = ballot.getUsername();
+        if (username == null || username.isBlank()) {
+            return VoteAck.rejected(ballot.getClientVoteId(), null, "Missing voter");
+        }
+
+        // The stripe has no open session, so the room is read as plain values
+        Optional<RoomSelectionContext> roomOpt = roomService.loadSelectionContext(inviteCode);
+        if (roomOpt.isEmpty()) {
+            logger.warn("Room not found with inviteCode: {}", inviteCode);
+            return VoteAck.rejected(ballot.getClientVoteId(), null, "Room not found with invite code: " + inviteCode);
+        }
+
+        RoomSelectionContext room = roomOpt.get();
+        int participantCount = roomCluster.isEnabled()
+            ? room.getParticipants().size()
+            : presenceRegistry.liveParticipantCount(inviteCode).orElseGet(() -> room.getParticipants().size());
+        int ballots = groupDecisionService.submit(inviteCode, username, ballot, room.getSuggestions());
+        return VoteAck.accepted(ballot.getClientVoteId(), null, ballots, participantCount);
+    }
+
+    private void resolveRoundIfComplete(String inviteCode, String restaurant, int participantCount) {
+        if (!restaurantVotingService.allParticipantsVoted(inviteCode, restaurant, participantCount)) {
+            return;
+        }
+
+        boolean allApproved = restaurantVotingService.allVotesApproved(inviteCode, restaurant);
+        logger.info("All participants voted on {} in room {}. All approved: {}", restaurant, inviteCode, allApproved);
+        resolveRound(inviteCode, restaurant, allApproved, "Selected by unanimous approval", "complete");
+    }
+
+    /**
+     * The round's deadline passed before everyone voted: decide on the votes received.
+     */
+    private Boolean resolveExpiredRound(String inviteCode, String restaurant) {
+        Map<String, Boolean> votes = restaurantVotingService.getVotes(inviteCode, restaurant);
+        if (votes.isEmpty()) {
+            return Boolean.FALSE; // already resolved or cleared
+        }
+
+        boolean allApproved = restaurantVotingService.allVotesApproved(inviteCode, restaurant);
+        logger.info("Vote deadline passed for {} in room {} with {} votes. All approved: {}",
+            restaurant, inviteCode, votes.size(), allApproved);
+        resolveRound(inviteCode, restaurant, allApproved,
+            "Selected by all " + votes.size() + " votes received before the deadline", "deadline");
+        return Boolean.TRUE;
+    }
+
+    private void resolveRound(String inviteCode, String restaurant, boolean allApproved,
+                              String explanation, String trigger) {
+        voteDeadlines.cancel(inviteCode, restaurant);
+        if (allApproved) {
+            RoomMessage selectionMessage = RoomMessage.createSelectionMessage(
+                restaurant,
+                explanation,
+                inviteCode
+            );
+            eventLog.append(RoomEvent.selection(inviteCode, restaurant));
+            roomBroadcaster.broadcast(inviteCode, selectionMessage);
+        } else {
+            RoomMessage rejectionMessage = RoomMessage.createErrorMessage(
+                "Restaurant '" + restaurant + "' was not unanimously approved"
+            );
+            roomBroadcaster.broadcast(inviteCode, rejectionMessage);
+        }
+        restaurantVotingService.clearVotes(inviteCode, restaurant);
+        meterRegistry.counter("room.vote.rounds",
+            "result", allApproved ? "selected" : "rejected", "trigger", trigger).increment();
+    }
+
+    private void recordVoteOutcome(Timer.Sample sample, String path, String outcome) {
+        sample.stop(meterRegistry.timer("room.vote.latency", "path", path, "outcome", outcome));
     }
 
     @Transactional
@@ -457,7 +568,7 @@ public class RoomWebSocketController {
                 
                 String destination = "/topic/room/" + inviteCode;
                 System.out.println("Sending to destination: " + destination);
-                messagingTemplate.convertAndSend(destination, message);
+                roomBroadcaster.broadcast(inviteCode, message);
                 
                 logger.info("Sent AI suggestion update for room: {}, suggestions: {}", 
                     inviteCode, updatedRoom.getRestaurantSuggestions());
@@ -474,74 +585,72 @@ public class RoomWebSocketController {
             
             String destination = "/topic/room/" + inviteCode;
             System.out.println("Sending error to destination: " + destination);
-            messagingTemplate.convertAndSend(destination, errorMessage);
+            roomBroadcaster.broadcast(inviteCode, errorMessage);
             System.out.println("Error message sent");
         }
         System.out.println("============== WEBSOCKET: AI SUGGEST RESTAURANT END ==============");
     }
 
-    @Transactional
+    /**
+     * Routed to the room's owner without reading the room here: selectAndBroadcast
+     * loads it once and reports a missing room itself. No transaction is held while
+     * the selection (possibly waiting on the AI) runs.
+     */
     @MessageMapping("/room/{inviteCode}/select-restaurant")
     public void handleRestaurantSelection(@DestinationVariable String inviteCode, 
                                          @Payload RestaurantSelectionRequest request) {
-        System.out.println("============== WEBSOCKET: SELECT RESTAURANT START ==============");
-        System.out.println("Received restaurant selection request: inviteCode=" + inviteCode + 
-                         ", strategy=" + request.getStrategy());
         logger.info("Received restaurant selection request for room: {}, strategy: {}", 
                    inviteCode, request.getStrategy());
-        
-        Optional<Room> roomOpt = roomService.getRoomByInviteCode(inviteCode);
-        System.out.println("Room found: " + roomOpt.isPresent());
-        
-        if (roomOpt.isPresent()) {
-            Room room = roomOpt.get();
-            System.out.println("Room ID: " + room.getId());
-            
-            Map<String, String> result = restaurantSelectionService.selectRestaurant(
-                room.getId(), request.getStrategy());
-            
-            if (result.isEmpty()) {
-                RoomMessage errorMessage = RoomMessage.createErrorMessage(
-                    "Could not select a restaurant. Make sure there are suggestions available.");
-                String destination = "/topic/room/" + inviteCode;
-                messagingTemplate.convertAndSend(destination, errorMessage);
-                
-                logger.warn("Could not select restaurant for room: {}", inviteCode);
-                System.out.println("Selection failed - no result returned");
-            } else {
-                String selectedRestaurant = result.get("restaurant");
-                String explanation = result.get("explanation");
-                
-                System.out.println("Selected restaurant: " + selectedRestaurant);
-                System.out.println("Selection explanation: " + explanation);
-                
-                RoomMessage selectionMessage = RoomMessage.createSelectionMessage(
-                    selectedRestaurant, explanation, inviteCode);
-                
-                String messageJson = selectionMessage.toJson();
-                System.out.println("Selection Message JSON: " + messageJson);
-                
-                String destination = "/topic/room/" + inviteCode;
-                System.out.println("Sending to destination: " + destination);
-                messagingTemplate.convertAndSend(destination, selectionMessage);
-                
-                logger.info("Sent restaurant selection for room: {}, selected: {}", 
-                    inviteCode, selectedRestaurant);
-                System.out.println("Selection message sent successfully");
+        try {
+            mutationRouter.execute(inviteCode, OP_SELECT, request.getStrategy(), Boolean.class);
+        } catch (IllegalStateException e) {
+            logger.error("Could not route restaurant selection for room {}", inviteCode, e);
+            roomBroadcaster.broadcast(inviteCode,
+                RoomMessage.createErrorMessage("Room is temporarily unavailable, please retry"));
+        }
+    }
+
+    /**
+     * Runs on the room's owner: the vote-based strategies read its vote tallies. The
+     * pick is broadcast when it completes, so an AI selection does not hold the room's
+     * stripe while it waits for an answer.
+     */
+    private Boolean selectAndBroadcast(String inviteCode, RestaurantSelectionService.SelectionStrategy strategy) {
+        Optional<RoomSelectionContext> context = roomService.loadSelectionContext(inviteCode);
+        if (context.isEmpty()) {
+            sendRoomNotFound(inviteCode);
+            return Boolean.FALSE;
+        }
+
+        restaurantSelectionService.selectRestaurantAsync(context.get(), strategy).whenComplete((result, error) -> {
+            if (error != null) {
+                logger.error("Restaurant selection failed for room {}", inviteCode, error);
+                result = Map.of();
             }
+            broadcastSelection(inviteCode, result);
+        });
+        return Boolean.TRUE;
+    }
+
+    private void broadcastSelection(String inviteCode, Map<String, String> result) {
+        if (result.isEmpty()) {
+            RoomMessage errorMessage = RoomMessage.createErrorMessage(
+                "Could not select a restaurant. Make sure there are suggestions available.");
+            roomBroadcaster.broadcast(inviteCode, errorMessage);
+            
+            logger.warn("Could not select restaurant for room: {}", inviteCode);
         } else {
-            System.out.println("Room not found with invite code: " + inviteCode);
-            logger.warn("Room not found with inviteCode: {}", inviteCode);
+            String selectedRestaurant = result.get("restaurant");
+            String explanation = result.get("explanation");
+            logger.debug("Selected {} for room {}: {}", selectedRestaurant, inviteCode, explanation);
             
-            RoomMessage errorMessage = RoomMessage.createErrorMessage(
-                "Room not found with invite code: " + inviteCode);
-            System.out.println("Created error message: " + errorMessage);
+            RoomMessage selectionMessage = RoomMessage.createSelectionMessage(
+                selectedRestaurant, explanation, inviteCode);
+            eventLog.append(RoomEvent.selection(inviteCode, selectedRestaurant));
+            roomBroadcaster.broadcast(inviteCode, selectionMessage);
             
-            String destination = "/topic/room/" + inviteCode;
-            System.out.println("Sending error to destination: " + destination);
-            messagingTemplate.convertAndSend(destination, errorMessage);
-            System.out.println("Error message sent");
+            logger.info("Sent restaurant selection for room: {}, selected: {}", 
+                inviteCode, selectedRestaurant);
         }
-        System.out.println("============== WEBSOCKET: SELECT RESTAURANT END ==============");
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,23 @@
+package com.example.finalproject.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A participant's full ballot for the group-decision modes. Any part may be left out;
+ * a new ballot from the same participant replaces the previous one.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BallotRequest {
+    private String username;
+    private List<String> approvals;       // APPROVAL: every acceptable restaurant
+    private List<String> ranking;         // RANKED_CHOICE: most preferred first
+    private Map<String, Integer> scores;  // SCORE: restaurant -> 0..max score
+    private String clientVoteId;
+}
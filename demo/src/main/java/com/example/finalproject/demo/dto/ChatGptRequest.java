@@ -1,5 +1,6 @@
 package com.example.finalproject.demo.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -10,4 +11,12 @@ import lombok.NoArgsConstructor;
 public class ChatGptRequest {
     private String prompt;
     private String type = "restaurant_suggestion";
+    // Room the call is made for, set by the server; AI usage is reported per room
+    @JsonIgnore
+    private Long roomId;
+
+    public ChatGptRequest(String prompt, String type) {
+        this.prompt = prompt;
+        this.type = type;
+    }
 } 
\ No newline at end of file
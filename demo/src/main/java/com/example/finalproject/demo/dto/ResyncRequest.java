@@ -0,0 +1,13 @@
+package com.example.finalproject.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResyncRequest {
+    private long lastSequence;
+    private Long epoch; // epoch of the last frame seen; null from clients that predate epochs
+}
@@ -8,6 +8,7 @@ import lombok.NoArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
@@ -32,6 +33,8 @@ public class RoomMessage {
     private String voterUsername;
     private Boolean approved;
     private Map<String, Boolean> votes;
+    private Long sequence; // per-room broadcast sequence, assigned by RoomBroadcaster
+    private Long epoch; // replay ring the sequence belongs to; a new epoch restarts the numbering
     
     public static RoomMessage createUpdateMessage(int participantCount, boolean isReady, 
                                                 List<String> participants,
@@ -41,7 +44,19 @@ public class RoomMessage {
         message.setParticipantCount(participantCount);
         message.setIsReady(isReady);
         message.setParticipants(participants);
-        message.setRestaurantSuggestions(restaurantSuggestions);
+        // Copied here, inside the caller's transaction: the frame is serialized later on
+        // the outbox thread, and an entity's lazy collection cannot be read there
+        message.setRestaurantSuggestions(restaurantSuggestions != null ? new ArrayList<>(restaurantSuggestions) : null);
+        return message;
+    }
+    
+    public static RoomMessage createPresenceMessage(String roomCode, List<String> participants) {
+        RoomMessage message = new RoomMessage();
+        message.setType(RoomMessageType.UPDATE);
+        message.setRoomCode(roomCode);
+        message.setParticipantCount(participants.size());
+        message.setIsReady(false);
+        message.setParticipants(participants);
         return message;
     }
     
@@ -61,6 +76,20 @@ public class RoomMessage {
         return message;
     }
     
+    /**
+     * An AI recommendation that arrived after the room's selection had already gone
+     * out; it accompanies the selection rather than replacing it.
+     */
+    public static RoomMessage createAiFollowUpMessage(String restaurant, String explanation, String roomCode) {
+        RoomMessage message = new RoomMessage();
+        message.setType(RoomMessageType.SUGGESTION);
+        message.setMessage("AI also suggests " + restaurant);
+        message.setSelectedRestaurant(restaurant);
+        message.setSelectionExplanation(explanation);
+        message.setRoomCode(roomCode);
+        return message;
+    }
+    
     public static RoomMessage createVoteMessage(String roomCode, String username, String restaurant, boolean approved) {
         RoomMessage message = new RoomMessage();
         message.setType(RoomMessageType.VOTE);
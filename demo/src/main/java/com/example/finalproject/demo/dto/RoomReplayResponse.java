@@ -0,0 +1,19 @@
+package com.example.finalproject.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoomReplayResponse {
+    private String roomCode;
+    private long latestSequence;
+    private long epoch;
+    private RoomMessage snapshot; // full room state to apply before frames, or null
+    private List<RoomMessage> frames; // missed frames in sequence order
+    private boolean complete; // false when the buffer could not bring the client up to date
+}
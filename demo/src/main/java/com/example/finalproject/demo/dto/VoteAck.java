@@ -0,0 +1,25 @@
+package com.example.finalproject.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VoteAck {
+    private String clientVoteId;
+    private boolean accepted;
+    private String restaurant;
+    private int votesReceived;
+    private int participantCount;
+    private String message;
+
+    public static VoteAck accepted(String clientVoteId, String restaurant, int votesReceived, int participantCount) {
+        return new VoteAck(clientVoteId, true, restaurant, votesReceived, participantCount, "Vote recorded");
+    }
+
+    public static VoteAck rejected(String clientVoteId, String restaurant, String reason) {
+        return new VoteAck(clientVoteId, false, restaurant, 0, 0, reason);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.finalproject.demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VoteRequest {
+    private String restaurant;
+    private Integer suggestionIndex; // alternative to restaurant: position in the room's suggestion list
+    private String username;
+    private boolean approved;
+    private String clientVoteId;
+}
@@ -0,0 +1,33 @@
+package com.example.finalproject.demo.eventlog;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * In-memory room state that is rebuilt after a restart from the latest snapshot plus
+ * the {@link RoomEventLog} tail.
+ * <p>
+ * Implementations must apply a mutation to memory before appending its event, so that
+ * a snapshot taken at log position P contains every event written before P.
+ */
+public interface RecoverableRoomState {
+
+    /**
+     * Key of this state inside a snapshot file.
+     */
+    String stateName();
+
+    /**
+     * JSON-serializable copy of the whole state, taken on the snapshot thread while
+     * mutations continue. State that only the room's stripe may touch must be copied
+     * on that stripe; replay from the snapshot position fixes up any overlap.
+     */
+    Object snapshot();
+
+    void restore(JsonNode snapshot);
+
+    /**
+     * Applies a logged event without logging it again. Events of other types are
+     * ignored.
+     */
+    void replay(RoomEvent event);
+}
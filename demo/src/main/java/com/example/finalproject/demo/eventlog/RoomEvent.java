@@ -0,0 +1,125 @@
+package com.example.finalproject.demo.eventlog;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One room mutation as written to the {@link RoomEventLog}. Events carry resulting
+ * values rather than deltas (a tally event holds the new count, not "+1"), so
+ * replaying an event that a snapshot already contains is harmless.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RoomEvent {
+
+    public enum Type {
+        JOIN,
+        LEAVE,
+        SUGGESTION,
+        VOTE,
+        TALLY,
+        CLEAR_TALLIES,
+        CLEAR_ROUND,
+        CLEAR_ROOM,
+        SELECTION,
+        BALLOT,
+        CLEAR_BALLOTS
+    }
+
+    private Type type;
+    private String room;
+    private Long roomId;
+    private String user;
+    private String restaurant;
+    private Boolean approved;
+    private Integer count;
+    private List<String> approvals;
+    private List<String> ranking;
+    private Map<String, Integer> scores;
+    private long time;
+
+    private static RoomEvent of(Type type, String room) {
+        RoomEvent event = new RoomEvent();
+        event.setType(type);
+        event.setRoom(room);
+        event.setTime(System.currentTimeMillis());
+        return event;
+    }
+
+    public static RoomEvent join(String room, String user) {
+        RoomEvent event = of(Type.JOIN, room);
+        event.setUser(user);
+        return event;
+    }
+
+    public static RoomEvent leave(String room, String user) {
+        RoomEvent event = of(Type.LEAVE, room);
+        event.setUser(user);
+        return event;
+    }
+
+    public static RoomEvent suggestion(String room, String restaurant) {
+        RoomEvent event = of(Type.SUGGESTION, room);
+        event.setRestaurant(restaurant);
+        return event;
+    }
+
+    public static RoomEvent vote(String room, String restaurant, String user, boolean approved) {
+        RoomEvent event = of(Type.VOTE, room);
+        event.setRestaurant(restaurant);
+        event.setUser(user);
+        event.setApproved(approved);
+        return event;
+    }
+
+    public static RoomEvent tally(String room, Long roomId, String restaurant, int count) {
+        RoomEvent event = of(Type.TALLY, room);
+        event.setRoomId(roomId);
+        event.setRestaurant(restaurant);
+        event.setCount(count);
+        return event;
+    }
+
+    public static RoomEvent clearRound(String room, String restaurant) {
+        RoomEvent event = of(Type.CLEAR_ROUND, room);
+        event.setRestaurant(restaurant);
+        return event;
+    }
+
+    public static RoomEvent clearRoom(String room) {
+        return of(Type.CLEAR_ROOM, room);
+    }
+
+    public static RoomEvent clearTallies(String room, Long roomId) {
+        RoomEvent event = of(Type.CLEAR_TALLIES, room);
+        event.setRoomId(roomId);
+        return event;
+    }
+
+    public static RoomEvent selection(String room, String restaurant) {
+        RoomEvent event = of(Type.SELECTION, room);
+        event.setRestaurant(restaurant);
+        return event;
+    }
+
+    public static RoomEvent ballot(String room, String user, List<String> approvals, List<String> ranking,
+                                   Map<String, Integer> scores) {
+        RoomEvent event = of(Type.BALLOT, room);
+        event.setUser(user);
+        event.setApprovals(approvals);
+        event.setRanking(ranking);
+        event.setScores(scores);
+        return event;
+    }
+
+    public static RoomEvent clearBallots(String room) {
+        return of(Type.CLEAR_BALLOTS, room);
+    }
+}
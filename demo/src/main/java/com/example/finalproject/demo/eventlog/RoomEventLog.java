@@ -0,0 +1,371 @@
+package com.example.finalproject.demo.eventlog;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of room mutations, split into fixed-size memory-mapped segment
+ * files named after the global position of their first byte.
+ * <p>
+ * Each record is {@code [length][crc32][json]}. A single writer thread drains every
+ * append queued since its last pass, copies them into the mapped segment and forces
+ * the written range to disk once for the whole batch (group commit), so many
+ * concurrent votes share one fsync. {@link #append} hands back a future for the
+ * commit instead of waiting, so mutations never stall on the disk; set
+ * {@code room.eventlog.await-commit=true} to make appending threads wait for it.
+ * <p>
+ * The log is off unless {@code room.eventlog.dir} names a data directory.
+ * <p>
+ * On open, the last segment is scanned and the first zero length or bad checksum
+ * marks the end of the log, which drops a record torn by a crash.
+ */
+@Component
+public class RoomEventLog {
+    private static final Logger logger = LoggerFactory.getLogger(RoomEventLog.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final int HEADER_BYTES = 8;
+
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxBatch;
+    private final boolean awaitCommit;
+    private final long commitTimeoutMs;
+    private final Counter appends;
+    private final Counter failures;
+    private final DistributionSummary batchSize;
+    private final Timer commitTimer;
+
+    private final BlockingQueue<PendingAppend> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private volatile boolean running;
+    private volatile long committedPosition;
+    // Replaced only by the writer thread, read by the snapshot thread
+    private volatile Segment current;
+
+    public RoomEventLog(ObjectMapper objectMapper,
+                        MeterRegistry meterRegistry,
+                        @Value("${room.eventlog.dir:}") String directory,
+                        @Value("${room.eventlog.segment-size:16777216}") int segmentSize,
+                        @Value("${room.eventlog.max-batch:512}") int maxBatch,
+                        @Value("${room.eventlog.await-commit:false}") boolean awaitCommit,
+                        @Value("${room.eventlog.commit-timeout-ms:1000}") long commitTimeoutMs) {
+        this.objectMapper = objectMapper;
+        this.enabled = !directory.isBlank();
+        this.directory = enabled ? Paths.get(directory) : null;
+        this.segmentSize = segmentSize;
+        this.maxBatch = maxBatch;
+        this.awaitCommit = awaitCommit;
+        this.commitTimeoutMs = commitTimeoutMs;
+        this.appends = meterRegistry.counter("room.eventlog.appends");
+        this.failures = meterRegistry.counter("room.eventlog.failures");
+        this.batchSize = DistributionSummary.builder("room.eventlog.batch.size")
+            .description("Events made durable by one group commit")
+            .register(meterRegistry);
+        this.commitTimer = Timer.builder("room.eventlog.commit")
+            .description("Time to write and force one batch")
+            .register(meterRegistry);
+        this.writer = new Thread(this::writeLoop, "room-eventlog");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Files.createDirectories(directory);
+        List<Path> segments = segmentFiles();
+        if (segments.isEmpty()) {
+            current = Segment.create(directory, 0, segmentSize);
+        } else {
+            Path last = segments.get(segments.size() - 1);
+            current = Segment.open(last, baseOf(last), segmentSize);
+            current.writePos = scan(current.buffer, 0, null);
+        }
+        committedPosition = current.base + current.writePos;
+        running = true;
+        writer.start();
+        logger.info("Room event log open in {} at position {}", directory.toAbsolutePath(), committedPosition);
+    }
+
+    @PreDestroy
+    void close() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        writer.interrupt();
+        writer.join(commitTimeoutMs);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Position just past the last record that has been forced to disk.
+     */
+    public long committedPosition() {
+        return committedPosition;
+    }
+
+    /**
+     * Queues the event and returns a future completed once it is on disk; only with
+     * {@code await-commit} on does the caller wait for it here. A failure to log is
+     * counted and reported but never fails the mutation itself.
+     */
+    public CompletableFuture<Void> append(RoomEvent event) {
+        if (!running) {
+            return CompletableFuture.completedFuture(null);
+        }
+        PendingAppend pending;
+        try {
+            pending = new PendingAppend(objectMapper.writeValueAsBytes(event));
+        } catch (IOException e) {
+            failures.increment();
+            logger.error("Could not serialize room event {}", event, e);
+            return CompletableFuture.failedFuture(e);
+        }
+        queue.add(pending);
+        if (!awaitCommit) {
+            return pending.committed;
+        }
+        try {
+            pending.committed.get(commitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            logger.warn("Room event {} not committed within {} ms", event.getType(), commitTimeoutMs);
+        } catch (Exception e) {
+            logger.error("Room event {} could not be committed", event.getType(), e);
+        }
+        return pending.committed;
+    }
+
+    /**
+     * Feeds every intact event from {@code position} onwards to {@code consumer} and
+     * returns how many there were.
+     */
+    public long readFrom(long position, Consumer<RoomEvent> consumer) throws IOException {
+        long count = 0;
+        for (Path file : segmentFiles()) {
+            long base = baseOf(file);
+            if (base + segmentSize <= position) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int start = (int) Math.max(0, position - base);
+                long[] read = {0};
+                scan(buffer, start, payload -> {
+                    try {
+                        consumer.accept(objectMapper.readValue(payload, RoomEvent.class));
+                        read[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                count += read[0];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Deletes segments that end at or before {@code position}; called once a snapshot
+     * covering them is safely on disk.
+     */
+    public void deleteSegmentsBefore(long position) throws IOException {
+        Segment active = current;
+        for (Path file : segmentFiles()) {
+            long base = baseOf(file);
+            if (base + segmentSize <= position && (active == null || base < active.base)) {
+                Files.deleteIfExists(file);
+                logger.debug("Deleted room event segment {}", file.getFileName());
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingAppend> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingAppend first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                commit(batch);
+            } catch (InterruptedException e) {
+                // closing: loop once more to drain what is already queued
+            } catch (Exception e) {
+                failures.increment(batch.size());
+                logger.error("Room event log write failed", e);
+                batch.forEach(pending -> pending.committed.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<PendingAppend> batch) throws IOException {
+        long started = System.nanoTime();
+        int flushFrom = current.writePos;
+        for (PendingAppend pending : batch) {
+            int recordSize = HEADER_BYTES + pending.payload.length;
+            if (recordSize > segmentSize) {
+                pending.committed.completeExceptionally(
+                    new IOException("Room event of " + recordSize + " bytes exceeds segment size"));
+                continue;
+            }
+            if (current.writePos + recordSize > segmentSize) {
+                current.force(flushFrom);
+                current = Segment.create(directory, current.base + segmentSize, segmentSize);
+                flushFrom = 0;
+            }
+            current.write(pending.payload);
+        }
+        current.force(flushFrom);
+        committedPosition = current.base + current.writePos;
+
+        for (PendingAppend pending : batch) {
+            pending.committed.complete(null);
+        }
+        appends.increment(batch.size());
+        batchSize.record(batch.size());
+        commitTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Walks records from {@code start} and returns the offset just past the last intact
+     * one, handing each payload to {@code consumer} if given.
+     */
+    private static int scan(MappedByteBuffer buffer, int start, Consumer<byte[]> consumer) {
+        int pos = start;
+        CRC32 crc = new CRC32();
+        while (pos + HEADER_BYTES <= buffer.limit()) {
+            int length = buffer.getInt(pos);
+            if (length <= 0 || pos + HEADER_BYTES + length > buffer.limit()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            buffer.get(pos + HEADER_BYTES, payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != buffer.getInt(pos + 4)) {
+                logger.warn("Room event log checksum mismatch at offset {}, treating it as the end", pos);
+                break;
+            }
+            if (consumer != null) {
+                consumer.accept(payload);
+            }
+            pos += HEADER_BYTES + length;
+        }
+        return pos;
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(f -> f.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                    && f.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    private static long baseOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static final class PendingAppend {
+        private final byte[] payload;
+        private final CompletableFuture<Void> committed = new CompletableFuture<>();
+
+        private PendingAppend(byte[] payload) {
+            this.payload = payload;
+        }
+    }
+
+    private static final class Segment {
+        private final long base;
+        private final MappedByteBuffer buffer;
+        private final CRC32 crc = new CRC32();
+        private int writePos;
+
+        private Segment(long base, MappedByteBuffer buffer) {
+            this.base = base;
+            this.buffer = buffer;
+        }
+
+        private static Segment create(Path directory, long base, int size) throws IOException {
+            Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, base, SEGMENT_SUFFIX));
+            return open(file, base, size);
+        }
+
+        private static Segment open(Path file, long base, int size) throws IOException {
+            try (FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // The mapping stays valid after the channel is closed
+                return new Segment(base, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            }
+        }
+
+        private void write(byte[] payload) {
+            crc.reset();
+            crc.update(payload);
+            buffer.put(writePos + HEADER_BYTES, payload);
+            buffer.putInt(writePos + 4, (int) crc.getValue());
+            buffer.putInt(writePos, payload.length);
+            writePos += HEADER_BYTES + payload.length;
+        }
+
+        private void force(int from) {
+            if (writePos > from) {
+                buffer.force(from, writePos - from);
+            }
+        }
+    }
+}
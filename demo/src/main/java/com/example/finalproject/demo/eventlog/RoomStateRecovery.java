@@ -0,0 +1,162 @@
+package com.example.finalproject.demo.eventlog;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Rebuilds in-memory room state at startup and keeps the event log short.
+ * <p>
+ * Startup loads the newest {@code snapshot-<position>.json} and replays the log from
+ * that position. Every {@code room.eventlog.snapshot-interval-ms} a new snapshot is
+ * written (temp file, then atomic rename); older snapshots and the segments they
+ * covered are then deleted.
+ */
+@Component
+public class RoomStateRecovery {
+    private static final Logger logger = LoggerFactory.getLogger(RoomStateRecovery.class);
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".json";
+
+    private final RoomEventLog eventLog;
+    private final List<RecoverableRoomState> states;
+    private final ObjectMapper objectMapper;
+    private final long snapshotIntervalMs;
+    private long lastSnapshotPosition = -1;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "room-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RoomStateRecovery(RoomEventLog eventLog,
+                             List<RecoverableRoomState> states,
+                             ObjectMapper objectMapper,
+                             @Value("${room.eventlog.snapshot-interval-ms:60000}") long snapshotIntervalMs) {
+        this.eventLog = eventLog;
+        this.states = states;
+        this.objectMapper = objectMapper;
+        this.snapshotIntervalMs = snapshotIntervalMs;
+    }
+
+    @PostConstruct
+    void recover() throws IOException {
+        if (!eventLog.isEnabled()) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        long position = 0;
+
+        Path snapshotFile = latestSnapshot();
+        if (snapshotFile != null) {
+            JsonNode snapshot = objectMapper.readTree(snapshotFile.toFile());
+            position = snapshot.path("position").asLong();
+            JsonNode stateNodes = snapshot.path("states");
+            for (RecoverableRoomState state : states) {
+                JsonNode node = stateNodes.get(state.stateName());
+                if (node != null && !node.isNull()) {
+                    state.restore(node);
+                }
+            }
+            lastSnapshotPosition = position;
+        }
+
+        long replayed = eventLog.readFrom(position, event -> {
+            for (RecoverableRoomState state : states) {
+                state.replay(event);
+            }
+        });
+        logger.info("Recovered room state from {} plus {} logged events in {} ms",
+            snapshotFile != null ? snapshotFile.getFileName() : "an empty snapshot", replayed,
+            System.currentTimeMillis() - started);
+
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalMs, snapshotIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdown();
+        if (eventLog.isEnabled()) {
+            snapshotQuietly();
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            logger.error("Room state snapshot failed", e);
+        }
+    }
+
+    /**
+     * Writes a snapshot labelled with the log position read before any state is
+     * copied. Mutations are applied before they are logged, so everything before that
+     * position is already in the copied state.
+     */
+    synchronized void snapshot() throws IOException {
+        long position = eventLog.committedPosition();
+        if (position == lastSnapshotPosition) {
+            return;
+        }
+
+        ObjectNode snapshot = objectMapper.createObjectNode();
+        snapshot.put("position", position);
+        ObjectNode stateNodes = snapshot.putObject("states");
+        for (RecoverableRoomState state : states) {
+            stateNodes.set(state.stateName(), objectMapper.valueToTree(state.snapshot()));
+        }
+
+        Path directory = eventLog.directory();
+        Path target = directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, position, SNAPSHOT_SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        objectMapper.writeValue(temp.toFile(), snapshot);
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        lastSnapshotPosition = position;
+
+        for (Path older : snapshotFiles()) {
+            if (!older.equals(target)) {
+                Files.deleteIfExists(older);
+            }
+        }
+        eventLog.deleteSegmentsBefore(position);
+        logger.debug("Wrote room state snapshot at position {}", position);
+    }
+
+    private Path latestSnapshot() throws IOException {
+        List<Path> snapshots = snapshotFiles();
+        return snapshots.isEmpty() ? null : snapshots.get(snapshots.size() - 1);
+    }
+
+    private List<Path> snapshotFiles() throws IOException {
+        if (!Files.isDirectory(eventLog.directory())) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(eventLog.directory())) {
+            return files
+                .filter(f -> f.getFileName().toString().startsWith(SNAPSHOT_PREFIX)
+                    && f.getFileName().toString().endsWith(SNAPSHOT_SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.example.finalproject.demo.repository;
 
 import com.example.finalproject.demo.model.Room;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +16,8 @@ public interface RoomRepository extends JpaRepository<Room, Long> {
 
     // Find a room by its invite code
     Optional<Room> findByInviteCode(String inviteCode);
-} 
\ No newline at end of file
+
+    // Suggestions from the rooms a user took part in, most recent rooms first
+    @Query("select s from Room r join r.users u join r.restaurantSuggestions s where u.id = :userId order by r.id desc")
+    List<String> findRecentSuggestionsByUser(@Param("userId") Long userId, Pageable page);
+}
@@ -0,0 +1,187 @@
+package com.example.finalproject.demo.service;
+
+import com.example.finalproject.demo.dto.ChatGptRequest;
+import com.example.finalproject.demo.dto.ChatGptResponse;
+import com.example.finalproject.demo.service.RestaurantSelectionService.SelectionStrategy;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Asks the AI to pick among the suggestions, but never waits longer than
+ * {@code chatgpt.selection.deadline-ms} for it. When the deadline passes (or the AI
+ * fails, or every AI thread is already busy) the room gets an immediate weighted
+ * pick instead, and an answer that still arrives within
+ * {@code chatgpt.selection.follow-up-window-ms} is published as a
+ * {@link LateAiRecommendationEvent} so it can go out as a follow-up.
+ */
+@Component
+public class AiRestaurantSelector implements RestaurantSelector {
+    private static final Logger logger = LoggerFactory.getLogger(AiRestaurantSelector.class);
+
+    private final ChatGptService chatGptService;
+    private final RoomService roomService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final long deadlineMs;
+    private final long followUpWindowMs;
+    private final ThreadPoolExecutor aiExecutor;
+
+    public AiRestaurantSelector(ChatGptService chatGptService,
+                                RoomService roomService,
+                                ApplicationEventPublisher eventPublisher,
+                                MeterRegistry meterRegistry,
+                                @Value("${chatgpt.selection.deadline-ms:1500}") long deadlineMs,
+                                @Value("${chatgpt.selection.follow-up-window-ms:30000}") long followUpWindowMs,
+                                @Value("${chatgpt.selection.max-in-flight:8}") int maxInFlight) {
+        this.chatGptService = chatGptService;
+        this.roomService = roomService;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.deadlineMs = deadlineMs;
+        this.followUpWindowMs = followUpWindowMs;
+        // No queue: a call that cannot start right away would only eat into its own deadline
+        this.aiExecutor = new ThreadPoolExecutor(0, maxInFlight, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "ai-select");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("room.selection.ai.in-flight", aiExecutor, ThreadPoolExecutor::getActiveCount)
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        aiExecutor.shutdownNow();
+    }
+
+    @Override
+    public Set<SelectionStrategy> strategies() {
+        return EnumSet.of(SelectionStrategy.AI_RECOMMEND);
+    }
+
+    @Override
+    public Optional<SelectionResult> select(RoomSelectionContext context, SelectionStrategy strategy) {
+        return selectAsync(context, strategy).join();
+    }
+
+    /**
+     * Completes with the AI's answer or, once the deadline passes, with a local pick;
+     * no thread waits for the AI in the meantime.
+     */
+    @Override
+    public CompletableFuture<Optional<SelectionResult>> selectAsync(RoomSelectionContext context,
+                                                                    SelectionStrategy strategy) {
+        long started = System.nanoTime();
+        CompletableFuture<Optional<SelectionResult>> recommendation;
+        try {
+            recommendation = CompletableFuture.supplyAsync(() -> recommend(context), aiExecutor);
+        } catch (RejectedExecutionException e) {
+            logger.warn("All AI selection threads are busy, picking locally for room {}", context.getInviteCode());
+            return CompletableFuture.completedFuture(Optional.of(localPick(context, "busy")));
+        }
+
+        // Whichever of the answer and the deadline comes first decides the pick
+        AtomicBoolean decided = new AtomicBoolean();
+        CompletableFuture<Optional<SelectionResult>> pick = new CompletableFuture<>();
+        recommendation.whenComplete((result, error) -> {
+            if (!decided.compareAndSet(false, true)) {
+                if (result != null) {
+                    result.ifPresent(answer -> followUp(context.getInviteCode(), answer, started));
+                }
+                return;
+            }
+            if (error != null) {
+                logger.error("Error in AI restaurant selection", error);
+                pick.complete(Optional.of(localPick(context, "failed")));
+            } else if (result.isPresent()) {
+                count("answered");
+                pick.complete(result);
+            } else {
+                pick.complete(Optional.of(localPick(context, "failed")));
+            }
+        });
+        CompletableFuture.delayedExecutor(deadlineMs, TimeUnit.MILLISECONDS).execute(() -> {
+            if (decided.compareAndSet(false, true)) {
+                logger.info("AI recommendation for room {} missed its {} ms deadline", context.getInviteCode(), deadlineMs);
+                pick.complete(Optional.of(localPick(context, "timed-out")));
+            }
+        });
+        return pick;
+    }
+
+    private SelectionResult localPick(RoomSelectionContext context, String outcome) {
+        count(outcome);
+        String restaurant = roomService.pickWeightedRestaurant(context, ThreadLocalRandom.current());
+        return new SelectionResult(restaurant, "AI recommendation unavailable, selected with weighted randomization based on votes");
+    }
+
+    private void followUp(String inviteCode, SelectionResult answer, long started) {
+        if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) > followUpWindowMs) {
+            count("late-dropped");
+            return;
+        }
+        count("late-follow-up");
+        eventPublisher.publishEvent(new LateAiRecommendationEvent(this, inviteCode, answer));
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("room.selection.ai", "outcome", outcome).increment();
+    }
+
+    private Optional<SelectionResult> recommend(RoomSelectionContext context) {
+        List<String> suggestions = context.getSuggestions();
+        String prompt = String.format(
+            "Based on these restaurant suggestions: %s, which one would you recommend and why?",
+            String.join(", ", suggestions)
+        );
+
+        try {
+            ChatGptResponse response = chatGptService.getRestaurantSuggestions(
+                new ChatGptRequest(prompt, "restaurant_selection", context.getRoomId()));
+
+            if (response.getError() != null) {
+                logger.error("Error getting AI recommendation: {}", response.getError());
+                return Optional.empty();
+            }
+
+            List<String> recommendations = response.getSuggestions();
+            if (recommendations == null || recommendations.isEmpty()) {
+                return Optional.empty();
+            }
+
+            // An answer that names none of the suggestions is no recommendation at all
+            Optional<RestaurantNameMatcher.Match> match = roomService.nameMatcher(context.getRoomId(), suggestions)
+                .match(recommendations.get(0));
+            if (match.isEmpty()) {
+                logger.info("AI recommendation \"{}\" matches none of the suggestions", recommendations.get(0));
+                return Optional.empty();
+            }
+            String matchedRestaurant = match.get().getRestaurant();
+            String explanation = recommendations.size() > 1
+                ? "AI recommended: " + recommendations.get(1)
+                : "AI recommended based on all suggestions";
+            return Optional.of(new SelectionResult(matchedRestaurant, explanation));
+        } catch (Exception e) {
+            logger.error("Error in AI restaurant selection", e);
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.finalproject.demo.service;
+
+import com.example.finalproject.demo.dto.ChatGptRequest;
+import com.example.finalproject.demo.dto.ChatGptResponse;
+import com.example.finalproject.demo.model.User;
+import com.example.finalproject.demo.repository.RoomRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Speculatively asks the AI for suggestions as soon as a room is created, so that
+ * the room's first AI suggestion request is answered from memory instead of waiting
+ * for a model round trip. The prompt is built from the time of day and the
+ * suggestions in the creator's most recent rooms.
+ * <p>
+ * Prefetches run one at a time on a low-priority thread, at most
+ * {@code room.ai.prefetch.per-minute} of them per minute; beyond that, rooms are
+ * simply not prefetched. A result is used once and forgotten after
+ * {@code room.ai.prefetch.ttl-ms}. Off unless {@code room.ai.prefetch.enabled=true}.
+ * <p>
+ * The speculative prompt knows nothing about what the room will ask for, so a
+ * prefetch only answers a request whose prompt asks for nothing in particular
+ * ("suggest some places for dinner"); a specific prompt leaves it for a later request.
+ */
+@Service
+public class AiSuggestionPrefetcher {
+    private static final Logger logger = LoggerFactory.getLogger(AiSuggestionPrefetcher.class);
+
+    private static final int HISTORY_SIZE = 10;
+    // Words that say nothing about which restaurants the room wants
+    private static final Set<String> GENERIC_WORDS = Set.of(
+        "a", "an", "any", "anything", "are", "can", "could", "dinner", "breakfast", "brunch", "eat", "food",
+        "for", "give", "go", "good", "great", "i", "idea", "ideas", "in", "lunch", "me", "meal", "near",
+        "nearby", "now", "of", "option", "options", "place", "places", "please", "recommend", "recommendation",
+        "recommendations", "restaurant", "restaurants", "should", "show", "some", "something", "spot", "spots",
+        "suggest", "suggestion", "suggestions", "to", "today", "tonight", "us", "we", "what", "where", "you");
+
+    private final ChatGptService chatGptService;
+    private final RoomRepository roomRepository;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int perMinute;
+    private final long ttlMs;
+    private final long waitMs;
+    private final ThreadPoolExecutor executor;
+    private final Map<Long, Prefetch> prefetches = new ConcurrentHashMap<>();
+
+    private long budgetMinute;
+    private int budgetUsed;
+
+    private static final class Prefetch {
+        private final CompletableFuture<List<String>> suggestions = new CompletableFuture<>();
+        private final long createdAt = System.currentTimeMillis();
+    }
+
+    public AiSuggestionPrefetcher(ChatGptService chatGptService,
+                                  RoomRepository roomRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${room.ai.prefetch.enabled:false}") boolean enabled,
+                                  @Value("${room.ai.prefetch.per-minute:20}") int perMinute,
+                                  @Value("${room.ai.prefetch.ttl-ms:600000}") long ttlMs,
+                                  @Value("${room.ai.prefetch.wait-ms:1500}") long waitMs,
+                                  @Value("${room.ai.prefetch.queue-capacity:32}") int queueCapacity) {
+        this.chatGptService = chatGptService;
+        this.roomRepository = roomRepository;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.perMinute = perMinute;
+        this.ttlMs = ttlMs;
+        this.waitMs = waitMs;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>(queueCapacity), r -> {
+            Thread thread = new Thread(r, "ai-prefetch");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Schedules a speculative suggestion request for a new room, if enabled and within budget.
+     */
+    public void prefetch(Long roomId, User creator) {
+        if (!enabled) {
+            return;
+        }
+        evictExpired();
+        if (!takeBudget()) {
+            count("over-budget");
+            return;
+        }
+
+        Prefetch prefetch = new Prefetch();
+        prefetches.put(roomId, prefetch);
+        try {
+            executor.execute(() -> run(roomId, creator, prefetch));
+            count("scheduled");
+        } catch (RejectedExecutionException e) {
+            prefetches.remove(roomId, prefetch);
+            count("rejected");
+        }
+    }
+
+    /**
+     * The room's prefetched suggestions, if {@code prompt} is generic enough for them
+     * to answer it. A prefetch that is still running is waited for up to
+     * {@code room.ai.prefetch.wait-ms}, which beats starting the same call again. Once
+     * taken the prefetch is used up, since later requests should reflect the room as
+     * it is by then.
+     */
+    public Optional<List<String>> take(Long roomId, String prompt) {
+        if (!isGeneric(prompt)) {
+            return Optional.empty();
+        }
+        Prefetch prefetch = prefetches.remove(roomId);
+        if (prefetch == null) {
+            return Optional.empty();
+        }
+        if (System.currentTimeMillis() - prefetch.createdAt > ttlMs) {
+            count("miss");
+            return Optional.empty();
+        }
+        List<String> suggestions;
+        try {
+            suggestions = prefetch.suggestions.get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            count("still-running");
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (ExecutionException e) {
+            suggestions = null;
+        }
+        if (suggestions == null || suggestions.isEmpty()) {
+            count("miss");
+            return Optional.empty();
+        }
+        count("hit");
+        return Optional.of(suggestions);
+    }
+
+    /**
+     * True when the prompt names no cuisine, place or restaurant, only that the room
+     * wants suggestions.
+     */
+    static boolean isGeneric(String prompt) {
+        if (prompt == null) {
+            return true;
+        }
+        String normalized = RestaurantNameMatcher.normalize(prompt);
+        if (normalized.isEmpty()) {
+            return true;
+        }
+        for (String word : normalized.split(" ")) {
+            if (!GENERIC_WORDS.contains(word)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void run(Long roomId, User creator, Prefetch prefetch) {
+        try {
+            String prompt = speculativePrompt(creator);
+            ChatGptResponse response = chatGptService.getRestaurantSuggestions(
+                new ChatGptRequest(prompt, "restaurant_suggestion", roomId));
+            if (response.getError() != null || response.getSuggestions() == null) {
+                prefetch.suggestions.complete(List.of());
+                return;
+            }
+            prefetch.suggestions.complete(List.copyOf(response.getSuggestions()));
+            logger.debug("Prefetched {} AI suggestions for room {}", response.getSuggestions().size(), roomId);
+        } catch (RuntimeException e) {
+            logger.warn("AI prefetch for room {} failed: {}", roomId, e.getMessage());
+            prefetch.suggestions.complete(List.of());
+        }
+    }
+
+    private String speculativePrompt(User creator) {
+        StringBuilder prompt = new StringBuilder("Good places for ").append(mealOf(LocalTime.now()));
+        if (creator != null && creator.getId() != null) {
+            Set<String> history = new LinkedHashSet<>(roomRepository.findRecentSuggestionsByUser(
+                creator.getId(), PageRequest.of(0, HISTORY_SIZE * 2)));
+            if (!history.isEmpty()) {
+                prompt.append(" for someone who recently considered ")
+                    .append(String.join(", ", history.stream().limit(HISTORY_SIZE).toList()));
+            }
+        }
+        return prompt.toString();
+    }
+
+    static String mealOf(LocalTime time) {
+        int hour = time.getHour();
+        if (hour >= 5 && hour < 11) {
+            return "breakfast";
+        } else if (hour >= 11 && hour < 15) {
+            return "lunch";
+        } else if (hour >= 15 && hour < 17) {
+            return "an afternoon coffee or snack";
+        } else if (hour >= 17 && hour < 22) {
+            return "dinner";
+        }
+        return "a late-night bite";
+    }
+
+    private synchronized boolean takeBudget() {
+        long minute = System.currentTimeMillis() / 60_000;
+        if (minute != budgetMinute) {
+            budgetMinute = minute;
+            budgetUsed = 0;
+        }
+        if (budgetUsed >= perMinute) {
+            return false;
+        }
+        budgetUsed++;
+        return true;
+    }
+
+    private void evictExpired() {
+        long now = System.currentTimeMillis();
+        prefetches.values().removeIf(prefetch -> now - prefetch.createdAt > ttlMs);
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("room.ai.prefetch", "outcome", outcome).increment();
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.finalproject.demo.service;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Weighted sampling over a fixed set of items with Vose's alias method. Building the
+ * table is O(n); every draw afterwards is O(1) and allocation-free (one uniform
+ * column pick and one biased coin). Instances are immutable, so a table can be
+ * shared between threads and replaced wholesale when the weights change.
+ */
+public final class AliasSampler<T> {
+
+    private final List<T> items;
+    private final double[] probability;
+    private final int[] alias;
+
+    /**
+     * @param items   the outcomes, in the same order as {@code weights}
+     * @param weights non-negative weights; if they are all zero every item is equally likely
+     */
+    public AliasSampler(List<T> items, long[] weights) {
+        int n = items.size();
+        if (n == 0 || weights.length != n) {
+            throw new IllegalArgumentException("Need one weight per item, got " + weights.length + " for " + n);
+        }
+        this.items = List.copyOf(items);
+        this.probability = new double[n];
+        this.alias = new int[n];
+
+        double total = 0;
+        for (long weight : weights) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight " + weight);
+            }
+            total += weight;
+        }
+
+        // Scale so the average column holds exactly 1, then pair each underfull
+        // column with an overfull one that tops it up
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = total > 0 ? weights[i] * n / total : 1.0;
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // Whatever is left is full up to rounding error
+        while (largeCount > 0) {
+            probability[large[--largeCount]] = 1.0;
+        }
+        while (smallCount > 0) {
+            probability[small[--smallCount]] = 1.0;
+        }
+    }
+
+    public T next(Random random) {
+        int column = random.nextInt(probability.length);
+        return items.get(random.nextDouble() < probability[column] ? column : alias[column]);
+    }
+
+    public int size() {
+        return items.size();
+    }
+}
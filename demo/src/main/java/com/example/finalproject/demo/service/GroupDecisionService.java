@@ -0,0 +1,343 @@
+package com.example.finalproject.demo.service;
+
+import com.example.finalproject.demo.cluster.RoomStateHandoff;
+import com.example.finalproject.demo.cluster.RoomStripes;
+import com.example.finalproject.demo.dto.BallotRequest;
+import com.example.finalproject.demo.eventlog.RecoverableRoomState;
+import com.example.finalproject.demo.eventlog.RoomEvent;
+import com.example.finalproject.demo.eventlog.RoomEventLog;
+import com.example.finalproject.demo.service.RestaurantSelectionService.SelectionStrategy;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Ballots and running tallies for the APPROVAL, RANKED_CHOICE and SCORE strategies.
+ * <p>
+ * Each accepted ballot adjusts the room's tallies in O(log n) per candidate it
+ * touches; replacing a ballot first withdraws the old one. Approval and score
+ * decisions are then just the current leader. Instant runoff keeps the ranked
+ * ballots bucketed by their current first choice, so an elimination only revisits
+ * the ballots of the eliminated candidate instead of recounting everything.
+ * <p>
+ * Like the approval votes, a room's ballots are only touched from its stripe.
+ */
+@Service
+@RequiredArgsConstructor
+public class GroupDecisionService implements RestaurantSelector, RoomStateHandoff, RecoverableRoomState {
+    private static final Logger logger = LoggerFactory.getLogger(GroupDecisionService.class);
+
+    private final RoomEventLog eventLog;
+    private final ObjectMapper objectMapper;
+    private final RoomStripes stripes;
+    private final Map<String, RoomBallots> rooms = new ConcurrentHashMap<>();
+
+    @Value("${room.vote.score-max:5}")
+    private int scoreMax = 5;
+
+    @Override
+    public Set<SelectionStrategy> strategies() {
+        return EnumSet.of(SelectionStrategy.APPROVAL, SelectionStrategy.RANKED_CHOICE, SelectionStrategy.SCORE);
+    }
+
+    /**
+     * Decides from the room's ballots, then discards them: the next decision starts from scratch.
+     */
+    @Override
+    public Optional<SelectionResult> select(RoomSelectionContext context, SelectionStrategy strategy) {
+        Optional<SelectionResult> decision = decide(context.getInviteCode(), strategy);
+        clear(context.getInviteCode());
+        return Optional.of(decision.orElseGet(() -> new SelectionResult(
+            context.randomSuggestion(ThreadLocalRandom.current()),
+            "No ballots were cast, randomly selected from all suggestions")));
+    }
+
+    /**
+     * Records (or replaces) the participant's ballot, keeping only restaurants that are
+     * among {@code candidates}, and returns the number of ballots in the room.
+     */
+    public int submit(String roomCode, String username, BallotRequest ballot, Collection<String> candidates) {
+        Set<String> allowed = new HashSet<>(candidates);
+        List<String> approvals = distinctAllowed(ballot.getApprovals(), allowed);
+        List<String> ranking = distinctAllowed(ballot.getRanking(), allowed);
+        Map<String, Integer> scores = new LinkedHashMap<>();
+        if (ballot.getScores() != null) {
+            ballot.getScores().forEach((restaurant, score) -> {
+                if (restaurant != null && allowed.contains(restaurant) && score != null) {
+                    scores.put(restaurant, Math.max(0, Math.min(scoreMax, score)));
+                }
+            });
+        }
+
+        int count = apply(roomCode, username, approvals, ranking, scores);
+        eventLog.append(RoomEvent.ballot(roomCode, username, approvals, ranking, scores));
+        return count;
+    }
+
+    public int ballotCount(String roomCode) {
+        RoomBallots room = rooms.get(roomCode);
+        return room != null ? room.ballots.size() : 0;
+    }
+
+    public Optional<SelectionResult> decide(String roomCode, SelectionStrategy strategy) {
+        RoomBallots room = rooms.get(roomCode);
+        if (room == null || room.ballots.isEmpty()) {
+            return Optional.empty();
+        }
+        switch (strategy) {
+            case APPROVAL:
+                return leader(room.approvals, "Approved by %d of " + room.ballots.size() + " participants");
+            case SCORE:
+                return leader(room.scores, "Highest total score (%d points from " + room.ballots.size() + " ballots)");
+            case RANKED_CHOICE:
+                return room.instantRunoff();
+            default:
+                return Optional.empty();
+        }
+    }
+
+    public void clear(String roomCode) {
+        if (rooms.remove(roomCode) != null) {
+            eventLog.append(RoomEvent.clearBallots(roomCode));
+        }
+    }
+
+    private int apply(String roomCode, String username, List<String> approvals, List<String> ranking,
+                      Map<String, Integer> scores) {
+        RoomBallots room = rooms.computeIfAbsent(roomCode, k -> new RoomBallots());
+        room.put(username, new Ballot(approvals, ranking, scores));
+        return room.ballots.size();
+    }
+
+    private static Optional<SelectionResult> leader(IncrementalTally tally, String explanation) {
+        String leader = tally.leader();
+        if (leader == null || tally.total(leader) <= 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new SelectionResult(leader, String.format(explanation, tally.total(leader))));
+    }
+
+    private static List<String> distinctAllowed(List<String> restaurants, Set<String> allowed) {
+        List<String> result = new ArrayList<>();
+        if (restaurants != null) {
+            Set<String> seen = new HashSet<>();
+            for (String restaurant : restaurants) {
+                if (restaurant != null && allowed.contains(restaurant) && seen.add(restaurant)) {
+                    result.add(restaurant);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String handoffName() {
+        return "ballots";
+    }
+
+    @Override
+    public Set<String> roomsWithState() {
+        return new HashSet<>(rooms.keySet());
+    }
+
+    @Override
+    public Object exportState(String roomCode) {
+        RoomBallots exported = rooms.remove(roomCode);
+        if (exported == null) {
+            return null;
+        }
+        eventLog.append(RoomEvent.clearBallots(roomCode));
+        return exported.ballots;
+    }
+
+    @Override
+    public void importState(String roomCode, JsonNode state) {
+        putBallots(roomCode, state, true);
+        logger.info("Took over ballots for room {}", roomCode);
+    }
+
+    @Override
+    public String stateName() {
+        return handoffName();
+    }
+
+    @Override
+    public Object snapshot() {
+        Map<String, Map<String, Ballot>> snapshot = new ConcurrentHashMap<>();
+        stripes.forEachRoom(roomsWithState(), roomCode -> {
+            RoomBallots room = rooms.get(roomCode);
+            if (room != null) {
+                snapshot.put(roomCode, new HashMap<>(room.ballots));
+            }
+        });
+        return snapshot;
+    }
+
+    @Override
+    public void restore(JsonNode snapshot) {
+        snapshot.fields().forEachRemaining(room -> putBallots(room.getKey(), room.getValue(), false));
+    }
+
+    @Override
+    public void replay(RoomEvent event) {
+        if (event.getType() == RoomEvent.Type.BALLOT) {
+            apply(event.getRoom(), event.getUser(), nonNull(event.getApprovals()), nonNull(event.getRanking()),
+                event.getScores() != null ? event.getScores() : Map.of());
+        } else if (event.getType() == RoomEvent.Type.CLEAR_BALLOTS) {
+            rooms.remove(event.getRoom());
+        }
+    }
+
+    private void putBallots(String roomCode, JsonNode state, boolean log) {
+        state.fields().forEachRemaining(entry -> {
+            try {
+                Ballot ballot = objectMapper.treeToValue(entry.getValue(), Ballot.class);
+                apply(roomCode, entry.getKey(), ballot.approvals, ballot.ranking, ballot.scores);
+                if (log) {
+                    eventLog.append(RoomEvent.ballot(roomCode, entry.getKey(), ballot.approvals, ballot.ranking, ballot.scores));
+                }
+            } catch (JsonProcessingException e) {
+                logger.warn("Skipping unreadable ballot of {} in room {}", entry.getKey(), roomCode, e);
+            }
+        });
+    }
+
+    private static <T> List<T> nonNull(List<T> list) {
+        return list != null ? list : List.of();
+    }
+
+    /**
+     * One participant's ballot. Public fields so it serializes as-is into snapshots.
+     */
+    public static final class Ballot {
+        public List<String> approvals = List.of();
+        public List<String> ranking = List.of();
+        public Map<String, Integer> scores = Map.of();
+
+        public Ballot() {
+        }
+
+        Ballot(List<String> approvals, List<String> ranking, Map<String, Integer> scores) {
+            this.approvals = approvals;
+            this.ranking = ranking;
+            this.scores = scores;
+        }
+    }
+
+    private static final class RoomBallots {
+        private final Map<String, Ballot> ballots = new HashMap<>();
+        private final IncrementalTally approvals = new IncrementalTally();
+        private final IncrementalTally scores = new IncrementalTally();
+        // First-choice tally and, per candidate, the voters whose first choice it is
+        private final IncrementalTally firstChoices = new IncrementalTally();
+        private final Map<String, Set<String>> firstChoiceBuckets = new HashMap<>();
+
+        private void put(String username, Ballot ballot) {
+            Ballot previous = ballots.put(username, ballot);
+            if (previous != null) {
+                count(username, previous, -1);
+            }
+            count(username, ballot, 1);
+        }
+
+        private void count(String username, Ballot ballot, int sign) {
+            for (String restaurant : ballot.approvals) {
+                approvals.add(restaurant, sign);
+            }
+            ballot.scores.forEach((restaurant, score) -> scores.add(restaurant, (long) sign * score));
+            if (!ballot.ranking.isEmpty()) {
+                String first = ballot.ranking.get(0);
+                firstChoices.add(first, sign);
+                Set<String> bucket = firstChoiceBuckets.computeIfAbsent(first, k -> new HashSet<>());
+                if (sign > 0) {
+                    bucket.add(username);
+                } else {
+                    bucket.remove(username);
+                    // A withdrawn first choice must not linger in the runoff at zero
+                    if (bucket.isEmpty()) {
+                        firstChoiceBuckets.remove(first);
+                        firstChoices.remove(first);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Runs the runoff on copies of the first-choice tally and buckets: while no
+         * candidate has a majority of the ballots still in play, the last-placed one
+         * is eliminated and only its ballots move to their next surviving choice.
+         * Candidates nobody ranks first start at zero, so they go before any of them
+         * can win on transferred ballots alone.
+         */
+        private Optional<SelectionResult> instantRunoff() {
+            IncrementalTally tally = new IncrementalTally(firstChoices);
+            for (Ballot ballot : ballots.values()) {
+                for (String candidate : ballot.ranking) {
+                    if (tally.total(candidate) == 0) {
+                        tally.add(candidate, 0);
+                    }
+                }
+            }
+            Map<String, List<String>> buckets = new HashMap<>();
+            firstChoiceBuckets.forEach((candidate, voters) -> buckets.put(candidate, new ArrayList<>(voters)));
+            Map<String, Integer> position = new HashMap<>();
+            Set<String> eliminated = new HashSet<>();
+            long active = 0;
+            for (Set<String> voters : firstChoiceBuckets.values()) {
+                active += voters.size();
+            }
+
+            int rounds = 1;
+            while (!tally.isEmpty()) {
+                String leader = tally.leader();
+                if (tally.total(leader) * 2 > active || tally.size() == 1) {
+                    if (tally.total(leader) <= 0) {
+                        return Optional.empty();
+                    }
+                    return Optional.of(new SelectionResult(leader, String.format(
+                        "Won the ranked-choice runoff with %d of %d ballots after %d round(s)",
+                        tally.total(leader), active, rounds)));
+                }
+
+                String loser = tally.last();
+                tally.remove(loser);
+                eliminated.add(loser);
+                rounds++;
+                for (String voter : buckets.getOrDefault(loser, List.of())) {
+                    List<String> ranking = ballots.get(voter).ranking;
+                    int next = position.getOrDefault(voter, 0) + 1;
+                    while (next < ranking.size() && eliminated.contains(ranking.get(next))) {
+                        next++;
+                    }
+                    if (next < ranking.size()) {
+                        position.put(voter, next);
+                        tally.add(ranking.get(next), 1);
+                        buckets.computeIfAbsent(ranking.get(next), k -> new ArrayList<>()).add(voter);
+                    } else {
+                        active--; // ballot exhausted
+                    }
+                }
+                buckets.remove(loser);
+            }
+            return Optional.empty();
+        }
+    }
+}
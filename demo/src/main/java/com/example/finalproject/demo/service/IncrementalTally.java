@@ -0,0 +1,67 @@
+package com.example.finalproject.demo.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Running totals per candidate kept in rank order, so that adjusting one total is
+ * O(log n) and the leader (or the last place) is available without a recount.
+ * Ties are broken by candidate name to keep outcomes deterministic.
+ */
+final class IncrementalTally {
+
+    private final Map<String, Long> totals = new HashMap<>();
+    private final TreeSet<String> ranked = new TreeSet<>((a, b) -> {
+        int byTotal = Long.compare(totals.get(b), totals.get(a));
+        return byTotal != 0 ? byTotal : a.compareTo(b);
+    });
+
+    IncrementalTally() {
+    }
+
+    IncrementalTally(IncrementalTally other) {
+        totals.putAll(other.totals);
+        ranked.addAll(other.ranked);
+    }
+
+    void add(String candidate, long delta) {
+        Long current = totals.get(candidate);
+        if (current != null) {
+            ranked.remove(candidate);
+        }
+        long updated = (current != null ? current : 0) + delta;
+        totals.put(candidate, updated);
+        ranked.add(candidate);
+    }
+
+    /**
+     * Takes the candidate out of the running entirely (instant-runoff elimination).
+     */
+    void remove(String candidate) {
+        if (totals.containsKey(candidate)) {
+            ranked.remove(candidate);
+            totals.remove(candidate);
+        }
+    }
+
+    long total(String candidate) {
+        return totals.getOrDefault(candidate, 0L);
+    }
+
+    String leader() {
+        return ranked.isEmpty() ? null : ranked.first();
+    }
+
+    String last() {
+        return ranked.isEmpty() ? null : ranked.last();
+    }
+
+    int size() {
+        return ranked.size();
+    }
+
+    boolean isEmpty() {
+        return ranked.isEmpty();
+    }
+}
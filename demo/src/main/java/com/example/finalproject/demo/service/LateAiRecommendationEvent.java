@@ -0,0 +1,26 @@
+package com.example.finalproject.demo.service;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when an AI_RECOMMEND answer arrives after its deadline, once the room
+ * has already been given a local pick.
+ */
+public class LateAiRecommendationEvent extends ApplicationEvent {
+    private final String inviteCode;
+    private final SelectionResult recommendation;
+
+    public LateAiRecommendationEvent(Object source, String inviteCode, SelectionResult recommendation) {
+        super(source);
+        this.inviteCode = inviteCode;
+        this.recommendation = recommendation;
+    }
+
+    public String getInviteCode() {
+        return inviteCode;
+    }
+
+    public SelectionResult getRecommendation() {
+        return recommendation;
+    }
+}
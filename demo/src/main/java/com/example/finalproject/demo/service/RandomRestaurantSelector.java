@@ -0,0 +1,24 @@
+package com.example.finalproject.demo.service;
+
+import com.example.finalproject.demo.service.RestaurantSelectionService.SelectionStrategy;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Component
+public class RandomRestaurantSelector implements RestaurantSelector {
+
+    @Override
+    public Set<SelectionStrategy> strategies() {
+        return EnumSet.of(SelectionStrategy.RANDOM);
+    }
+
+    @Override
+    public Optional<SelectionResult> select(RoomSelectionContext context, SelectionStrategy strategy) {
+        return Optional.of(new SelectionResult(context.randomSuggestion(ThreadLocalRandom.current()),
+            "Randomly selected from all suggestions"));
+    }
+}
@@ -0,0 +1,324 @@
+package com.example.finalproject.demo.service;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Finds which of a room's suggestions a piece of free text (an AI answer) refers to.
+ * <p>
+ * Names are normalized once, when the matcher is built: accents, case, punctuation
+ * and the word "the" are dropped. Exact mentions are then found with a single
+ * Aho-Corasick pass over the text, so the cost does not grow with the number of
+ * suggestions. Small typos ("Suhsi Bar") are caught by a bounded edit distance over
+ * word windows of the text. That pass also runs after an exact hit, because a longer
+ * name with a typo can outweigh a short exact one, but it only compares names longer
+ * than the hit that share enough character trigrams with the text to be within the
+ * edit bound. Immutable and thread-safe.
+ */
+public final class RestaurantNameMatcher {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final List<String> restaurants;
+    private final List<String> normalized;
+    private final double minConfidence;
+
+    // Aho-Corasick automaton over " name " so that hits fall on word boundaries
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private final List<Integer> failure = new ArrayList<>();
+    // Longest pattern ending at each state, following failure links; -1 if none
+    private final List<Integer> output = new ArrayList<>();
+
+    // Near-miss shortlist: a window within edit distance k of a name still contains all
+    // but at most 3k of the name's distinct trigrams
+    private final Map<String, List<Integer>> namesByTrigram = new HashMap<>();
+    private final int[] bounds;
+    private final int[] requiredTrigrams;
+    // Names too short for the trigram filter to rule anything out
+    private final List<Integer> alwaysCompared = new ArrayList<>();
+
+    /**
+     * A suggestion the text refers to. Confidence is 1 for an exact mention and
+     * {@code 1 - distance / length} for a near miss.
+     */
+    public static final class Match {
+        private final String restaurant;
+        private final double confidence;
+        // Roughly how many characters of the normalized name the text really contains
+        private final double evidence;
+
+        Match(String restaurant, double confidence, int normalizedLength) {
+            this.restaurant = restaurant;
+            this.confidence = confidence;
+            this.evidence = confidence * normalizedLength;
+        }
+
+        public String getRestaurant() {
+            return restaurant;
+        }
+
+        public double getConfidence() {
+            return confidence;
+        }
+    }
+
+    /**
+     * @param minConfidence near misses below this confidence are not reported
+     */
+    public RestaurantNameMatcher(List<String> restaurants, double minConfidence) {
+        this.restaurants = List.copyOf(restaurants);
+        this.minConfidence = minConfidence;
+        this.normalized = new ArrayList<>(restaurants.size());
+        for (String restaurant : this.restaurants) {
+            normalized.add(normalize(restaurant));
+        }
+        this.bounds = new int[normalized.size()];
+        this.requiredTrigrams = new int[normalized.size()];
+        buildAutomaton();
+        buildShortlist();
+    }
+
+    public int size() {
+        return restaurants.size();
+    }
+
+    /**
+     * The suggestion {@code text} refers to, or empty when it names none of them
+     * closely enough.
+     */
+    public Optional<Match> match(String text) {
+        if (text == null || restaurants.isEmpty()) {
+            return Optional.empty();
+        }
+        String subject = normalize(text);
+        if (subject.isEmpty()) {
+            return Optional.empty();
+        }
+        int exact = longestMention(subject);
+        Match best = exact >= 0 ? new Match(restaurants.get(exact), 1.0, normalized.get(exact).length()) : null;
+        // A longer name with a typo ("Suhsi Bar") can still outweigh a short exact hit ("Bar")
+        int exactLength = exact >= 0 ? normalized.get(exact).length() : 0;
+        Match near = nearestMention(subject, exactLength);
+        if (near != null && (best == null || near.evidence > exactLength)) {
+            best = near;
+        }
+        return Optional.ofNullable(best);
+    }
+
+
+    static String normalize(String text) {
+        String decomposed = COMBINING_MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        String[] words = NON_ALPHANUMERIC.split(decomposed.toLowerCase());
+        StringBuilder result = new StringBuilder(decomposed.length());
+        for (String word : words) {
+            if (word.isEmpty() || word.equals("the")) {
+                continue;
+            }
+            if (result.length() > 0) {
+                result.append(' ');
+            }
+            result.append(word);
+        }
+        return result.toString();
+    }
+
+    private void buildAutomaton() {
+        newState();
+        for (int i = 0; i < normalized.size(); i++) {
+            String name = normalized.get(i);
+            if (name.isEmpty()) {
+                continue;
+            }
+            String pattern = ' ' + name + ' ';
+            int state = 0;
+            for (int c = 0; c < pattern.length(); c++) {
+                Integer next = transitions.get(state).get(pattern.charAt(c));
+                if (next == null) {
+                    next = newState();
+                    transitions.get(state).put(pattern.charAt(c), next);
+                }
+                state = next;
+            }
+            // Same normalized name twice: keep the first suggestion
+            if (output.get(state) < 0) {
+                output.set(state, i);
+            }
+        }
+
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : transitions.get(0).values()) {
+            failure.set(child, 0);
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Character, Integer> edge : transitions.get(state).entrySet()) {
+                int child = edge.getValue();
+                int fallback = failure.get(state);
+                while (fallback > 0 && !transitions.get(fallback).containsKey(edge.getKey())) {
+                    fallback = failure.get(fallback);
+                }
+                Integer target = transitions.get(fallback).get(edge.getKey());
+                failure.set(child, target != null && target != child ? target : 0);
+                // A state's own pattern is always longer than anything reachable by its failure link
+                if (output.get(child) < 0) {
+                    output.set(child, output.get(failure.get(child)));
+                }
+                queue.add(child);
+            }
+        }
+    }
+
+    private void buildShortlist() {
+        for (int i = 0; i < normalized.size(); i++) {
+            String name = normalized.get(i);
+            bounds[i] = (int) Math.floor(name.length() * (1 - minConfidence));
+            if (bounds[i] <= 0) {
+                continue;
+            }
+            Set<String> grams = trigrams(name);
+            requiredTrigrams[i] = grams.size() - 3 * bounds[i];
+            if (requiredTrigrams[i] <= 0) {
+                alwaysCompared.add(i);
+                continue;
+            }
+            for (String gram : grams) {
+                namesByTrigram.computeIfAbsent(gram, k -> new ArrayList<>()).add(i);
+            }
+        }
+    }
+
+    private static Set<String> trigrams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            grams.add(text.substring(i, i + 3));
+        }
+        return grams;
+    }
+
+    private int newState() {
+        transitions.add(new HashMap<>());
+        failure.add(0);
+        output.add(-1);
+        return transitions.size() - 1;
+    }
+
+    // Single pass; among all mentions the longest (most specific) name wins, then the earliest
+    private int longestMention(String subject) {
+        String text = ' ' + subject + ' ';
+        int state = 0;
+        int best = -1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            Integer next;
+            while ((next = transitions.get(state).get(c)) == null && state > 0) {
+                state = failure.get(state);
+            }
+            state = next != null ? next : 0;
+            int hit = output.get(state);
+            if (hit >= 0 && (best < 0 || normalized.get(hit).length() > normalized.get(best).length())) {
+                best = hit;
+            }
+        }
+        return best;
+    }
+
+    // Only shortlisted names longer than minLength are considered; the most evidence wins
+    private Match nearestMention(String subject, int minLength) {
+        String[] words = subject.split(" ");
+        Match best = null;
+        for (int i : shortlist(subject)) {
+            String name = normalized.get(i);
+            if (name.length() <= minLength) {
+                continue;
+            }
+            int nameWords = name.split(" ").length;
+            int bound = bounds[i];
+            // Windows one word shorter or longer than the name catch split or merged words
+            for (int span = Math.max(1, nameWords - 1); span <= nameWords + 1; span++) {
+                for (int start = 0; start + span <= words.length; start++) {
+                    String window = String.join(" ", Arrays.copyOfRange(words, start, start + span));
+                    int distance = boundedDistance(name, window, bound);
+                    if (distance <= bound) {
+                        double confidence = 1.0 - (double) distance / name.length();
+                        if (best == null || confidence * name.length() > best.evidence) {
+                            best = new Match(restaurants.get(i), confidence, name.length());
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    // Names that share enough trigrams with the text to be within their edit bound, in
+    // suggestion order
+    private List<Integer> shortlist(String subject) {
+        int[] shared = new int[normalized.size()];
+        List<Integer> candidates = new ArrayList<>(alwaysCompared);
+        for (String gram : trigrams(subject)) {
+            List<Integer> names = namesByTrigram.get(gram);
+            if (names == null) {
+                continue;
+            }
+            for (int i : names) {
+                if (++shared[i] == requiredTrigrams[i]) {
+                    candidates.add(i);
+                }
+            }
+        }
+        candidates.sort(null);
+        return candidates;
+    }
+
+    /**
+     * Levenshtein distance, or {@code bound + 1} as soon as it is known to exceed
+     * {@code bound}. Only the diagonal band of width {@code 2 * bound + 1} is filled.
+     */
+    static int boundedDistance(String a, String b, int bound) {
+        if (Math.abs(a.length() - b.length()) > bound) {
+            return bound + 1;
+        }
+        int infinity = bound + 1;
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j <= bound ? j : infinity;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int from = Math.max(1, i - bound);
+            int to = Math.min(b.length(), i + bound);
+            current[0] = i <= bound ? i : infinity;
+            if (from > 1) {
+                current[from - 1] = infinity;
+            }
+            int rowMin = current[0];
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(previous[j - 1] + cost, Math.min(previous[j] + 1, current[j - 1] + 1));
+                current[j] = Math.min(value, infinity);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < b.length()) {
+                current[to + 1] = infinity;
+            }
+            if (rowMin > bound) {
+                return infinity;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.finalproject.demo.service;
+
+import com.example.finalproject.demo.service.RestaurantSelectionService.SelectionStrategy;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One or more selection strategies. Implementations are Spring beans picked up by
+ * {@link RestaurantSelectionService}; each strategy must be claimed by exactly one.
+ * <p>
+ * A selector works only from the {@link RoomSelectionContext} it is handed (plus any
+ * in-memory state of its own) and returns empty when it has nothing to go on, in
+ * which case the room gets a random pick instead.
+ */
+public interface RestaurantSelector {
+
+    Set<SelectionStrategy> strategies();
+
+    Optional<SelectionResult> select(RoomSelectionContext context, SelectionStrategy strategy);
+
+    /**
+     * The same pick without blocking the caller. Selectors that wait on something
+     * slower than the room's own state override this; the rest answer right away.
+     */
+    default CompletableFuture<Optional<SelectionResult>> selectAsync(RoomSelectionContext context,
+                                                                     SelectionStrategy strategy) {
+        return CompletableFuture.completedFuture(select(context, strategy));
+    }
+}
@@ -1,75 +1,281 @@
 package com.example.finalproject.demo.service;
 
+import com.example.finalproject.demo.cluster.RoomStateHandoff;
+import com.example.finalproject.demo.cluster.RoomStripes;
+import com.example.finalproject.demo.eventlog.RecoverableRoomState;
+import com.example.finalproject.demo.eventlog.RoomEvent;
+import com.example.finalproject.demo.eventlog.RoomEventLog;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Approval votes per room and restaurant round.
+ * <p>
+ * Each voter gets a fixed slot in the room on first vote, and a round is two bitsets
+ * over those slots (voted, approved) plus their popcounts. Recording a vote and the
+ * completion and unanimity checks allocate nothing; {@link #getVotes} builds a map
+ * only for callers that need names, such as the VOTE broadcast.
+ * <p>
+ * A room's state is written only from its stripe (see {@code RoomMutationRouter}), so
+ * the per-room structures are not synchronized.
+ */
 @Service
-public class RestaurantVotingService {
+@RequiredArgsConstructor
+public class RestaurantVotingService implements RoomStateHandoff, RecoverableRoomState {
     private static final Logger logger = LoggerFactory.getLogger(RestaurantVotingService.class);
     
-    private final Map<String, Map<String, Map<String, Boolean>>> roomVotes = new ConcurrentHashMap<>();
+    private final Map<String, RoomBallots> roomVotes = new ConcurrentHashMap<>();
+    private final RoomEventLog eventLog;
+    private final RoomStripes stripes;
     
-    public Map<String, Boolean> recordVote(String roomCode, String restaurant, String username, boolean approved) {
-        logger.info("Recording vote for room {}: user {} voted {} for {}", 
+    /**
+     * Records the vote and returns how many participants have voted in the round.
+     */
+    public int recordVote(String roomCode, String restaurant, String username, boolean approved) {
+        logger.debug("Recording vote for room {}: user {} voted {} for {}",
                     roomCode, username, approved ? "YES" : "NO", restaurant);
         
-        Map<String, Map<String, Boolean>> restaurantVotes = roomVotes.computeIfAbsent(
-            roomCode, k -> new ConcurrentHashMap<>()
-        );
-        
-        Map<String, Boolean> votes = restaurantVotes.computeIfAbsent(
-            restaurant, k -> new ConcurrentHashMap<>()
-        );
-        
-        votes.put(username, approved);
-        
-        logger.info("Current votes for {}: {}", restaurant, votes);
-        return new HashMap<>(votes);
+        int votes = put(roomCode, restaurant, username, approved);
+        eventLog.append(RoomEvent.vote(roomCode, restaurant, username, approved));
+        return votes;
     }
     
     public Map<String, Boolean> getVotes(String roomCode, String restaurant) {
-        Map<String, Map<String, Boolean>> restaurantVotes = roomVotes.get(roomCode);
-        if (restaurantVotes == null) {
+        RoomBallots room = roomVotes.get(roomCode);
+        Ballot ballot = room != null ? room.rounds.get(restaurant) : null;
+        if (ballot == null) {
             return new HashMap<>();
         }
-        
-        Map<String, Boolean> votes = restaurantVotes.get(restaurant);
-        if (votes == null) {
-            return new HashMap<>();
+        return room.toMap(ballot);
+    }
+    
+    /**
+     * Restaurants in the room that currently have an unresolved vote round
+     */
+    public Set<String> getOpenRounds(String roomCode) {
+        RoomBallots room = roomVotes.get(roomCode);
+        if (room == null) {
+            return Collections.emptySet();
         }
-        
-        return new HashMap<>(votes);
+        return new HashSet<>(room.rounds.keySet());
     }
     
     public boolean allParticipantsVoted(String roomCode, String restaurant, int participantCount) {
-        Map<String, Boolean> votes = getVotes(roomCode, restaurant);
-        return votes.size() >= participantCount;
+        Ballot ballot = ballot(roomCode, restaurant);
+        return (ballot != null ? ballot.votedCount : 0) >= participantCount;
     }
     
     public boolean allVotesApproved(String roomCode, String restaurant) {
-        Map<String, Boolean> votes = getVotes(roomCode, restaurant);
-        if (votes.isEmpty()) {
-            return false;
-        }
-        
-        return votes.values().stream().allMatch(approved -> approved);
+        Ballot ballot = ballot(roomCode, restaurant);
+        return ballot != null && ballot.votedCount > 0 && ballot.approvedCount == ballot.votedCount;
     }
     
     public void clearVotes(String roomCode) {
         roomVotes.remove(roomCode);
+        eventLog.append(RoomEvent.clearRoom(roomCode));
         logger.info("Cleared all votes for room {}", roomCode);
     }
     
     public void clearVotes(String roomCode, String restaurant) {
-        Map<String, Map<String, Boolean>> restaurantVotes = roomVotes.get(roomCode);
-        if (restaurantVotes != null) {
-            restaurantVotes.remove(restaurant);
+        RoomBallots room = roomVotes.get(roomCode);
+        if (room != null) {
+            room.rounds.remove(restaurant);
+            eventLog.append(RoomEvent.clearRound(roomCode, restaurant));
             logger.info("Cleared votes for {} in room {}", restaurant, roomCode);
         }
     }
-}
\ No newline at end of file
+
+    private Ballot ballot(String roomCode, String restaurant) {
+        RoomBallots room = roomVotes.get(roomCode);
+        return room != null ? room.rounds.get(restaurant) : null;
+    }
+
+    private int put(String roomCode, String restaurant, String username, boolean approved) {
+        RoomBallots room = roomVotes.computeIfAbsent(roomCode, k -> new RoomBallots());
+        Ballot ballot = room.rounds.computeIfAbsent(restaurant, k -> new Ballot());
+        ballot.set(room.slotOf(username), approved);
+        return ballot.votedCount;
+    }
+
+    @Override
+    public String handoffName() {
+        return "approval-votes";
+    }
+
+    @Override
+    public Set<String> roomsWithState() {
+        return new HashSet<>(roomVotes.keySet());
+    }
+
+    @Override
+    public Object exportState(String roomCode) {
+        RoomBallots exported = roomVotes.remove(roomCode);
+        if (exported == null) {
+            return null;
+        }
+        eventLog.append(RoomEvent.clearRoom(roomCode));
+        return exported.toMaps();
+    }
+
+    @Override
+    public void importState(String roomCode, JsonNode state) {
+        putVotes(roomCode, state, true);
+        logger.info("Took over votes for room {}", roomCode);
+    }
+
+    @Override
+    public String stateName() {
+        return handoffName();
+    }
+
+    @Override
+    public Object snapshot() {
+        Map<String, Map<String, Map<String, Boolean>>> snapshot = new ConcurrentHashMap<>();
+        stripes.forEachRoom(roomsWithState(), roomCode -> {
+            RoomBallots room = roomVotes.get(roomCode);
+            if (room != null) {
+                snapshot.put(roomCode, room.toMaps());
+            }
+        });
+        return snapshot;
+    }
+
+    @Override
+    public void restore(JsonNode snapshot) {
+        snapshot.fields().forEachRemaining(room -> putVotes(room.getKey(), room.getValue(), false));
+    }
+
+    @Override
+    public void replay(RoomEvent event) {
+        switch (event.getType()) {
+            case VOTE:
+                put(event.getRoom(), event.getRestaurant(), event.getUser(), Boolean.TRUE.equals(event.getApproved()));
+                break;
+            case CLEAR_ROUND:
+                RoomBallots room = roomVotes.get(event.getRoom());
+                if (room != null) {
+                    room.rounds.remove(event.getRestaurant());
+                }
+                break;
+            case CLEAR_ROOM:
+                roomVotes.remove(event.getRoom());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void putVotes(String roomCode, JsonNode state, boolean log) {
+        state.fields().forEachRemaining(restaurant ->
+            restaurant.getValue().fields().forEachRemaining(vote -> {
+                boolean approved = vote.getValue().asBoolean();
+                put(roomCode, restaurant.getKey(), vote.getKey(), approved);
+                if (log) {
+                    eventLog.append(RoomEvent.vote(roomCode, restaurant.getKey(), vote.getKey(), approved));
+                }
+            }));
+    }
+
+    /**
+     * Voter slots of one room and its open rounds.
+     */
+    private static final class RoomBallots {
+        private final Map<String, Integer> slots = new HashMap<>();
+        private final List<String> voters = new ArrayList<>();
+        private final Map<String, Ballot> rounds = new ConcurrentHashMap<>();
+
+        private int slotOf(String username) {
+            Integer slot = slots.get(username);
+            if (slot == null) {
+                slot = voters.size();
+                voters.add(username);
+                slots.put(username, slot);
+            }
+            return slot;
+        }
+
+        private Map<String, Boolean> toMap(Ballot ballot) {
+            Map<String, Boolean> votes = new HashMap<>();
+            for (int slot = ballot.nextVoted(0); slot >= 0; slot = ballot.nextVoted(slot + 1)) {
+                votes.put(voters.get(slot), ballot.isApproved(slot));
+            }
+            return votes;
+        }
+
+        private Map<String, Map<String, Boolean>> toMaps() {
+            Map<String, Map<String, Boolean>> maps = new HashMap<>();
+            rounds.forEach((restaurant, ballot) -> maps.put(restaurant, toMap(ballot)));
+            return maps;
+        }
+    }
+
+    /**
+     * One round: which slots have voted and which of those approved, with running
+     * popcounts so completion and unanimity are integer comparisons.
+     */
+    private static final class Ballot {
+        private long[] voted = new long[1];
+        private long[] approved = new long[1];
+        private int votedCount;
+        private int approvedCount;
+
+        private void set(int slot, boolean approve) {
+            int word = slot >>> 6;
+            if (word >= voted.length) {
+                int length = Math.max(word + 1, voted.length * 2);
+                voted = Arrays.copyOf(voted, length);
+                approved = Arrays.copyOf(approved, length);
+            }
+            long bit = 1L << slot;
+
+            if ((voted[word] & bit) == 0) {
+                voted[word] |= bit;
+                votedCount++;
+            } else if ((approved[word] & bit) != 0) {
+                approvedCount--; // changing an earlier approval
+            }
+
+            if (approve) {
+                approved[word] |= bit;
+                approvedCount++;
+            } else {
+                approved[word] &= ~bit;
+            }
+        }
+
+        private boolean isApproved(int slot) {
+            int word = slot >>> 6;
+            return word < approved.length && (approved[word] & (1L << slot)) != 0;
+        }
+
+        private int nextVoted(int from) {
+            int word = from >>> 6;
+            if (word >= voted.length) {
+                return -1;
+            }
+            long bits = voted[word] & (-1L << from);
+            while (true) {
+                if (bits != 0) {
+                    return (word << 6) + Long.numberOfTrailingZeros(bits);
+                }
+                if (++word >= voted.length) {
+                    return -1;
+                }
+                bits = voted[word];
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.finalproject.demo.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Everything a selection strategy may look at, captured once per selection so that no
+ * strategy has to go back to the database: the room's suggestions, its vote tallies
+ * and its participants. Immutable; the collections are copies.
+ */
+public final class RoomSelectionContext {
+    private final Long roomId;
+    private final String inviteCode;
+    private final List<String> suggestions;
+    private final Map<String, Integer> tallies;
+    private final List<String> participants;
+    private final String leader;
+
+    RoomSelectionContext(Long roomId, String inviteCode, List<String> suggestions,
+                         Map<String, Integer> tallies, List<String> participants) {
+        this.roomId = roomId;
+        this.inviteCode = inviteCode;
+        this.suggestions = List.copyOf(suggestions);
+        this.tallies = Map.copyOf(tallies);
+        this.participants = List.copyOf(participants);
+        this.leader = mostVoted(this.suggestions, this.tallies);
+    }
+
+    public Long getRoomId() {
+        return roomId;
+    }
+
+    public String getInviteCode() {
+        return inviteCode;
+    }
+
+    public List<String> getSuggestions() {
+        return suggestions;
+    }
+
+    public Map<String, Integer> getTallies() {
+        return tallies;
+    }
+
+    public List<String> getParticipants() {
+        return participants;
+    }
+
+    /**
+     * The restaurant with the most votes, if any restaurant has a tally yet.
+     */
+    public Optional<String> getLeader() {
+        return Optional.ofNullable(leader);
+    }
+
+    public String randomSuggestion(Random random) {
+        return suggestions.get(random.nextInt(suggestions.size()));
+    }
+
+    // Ties go to the earlier suggestion; tallies for restaurants no longer suggested still count
+    private static String mostVoted(List<String> suggestions, Map<String, Integer> tallies) {
+        String best = null;
+        int bestVotes = Integer.MIN_VALUE;
+        for (String restaurant : suggestions) {
+            Integer votes = tallies.get(restaurant);
+            if (votes != null && votes > bestVotes) {
+                best = restaurant;
+                bestVotes = votes;
+            }
+        }
+        for (Map.Entry<String, Integer> entry : tallies.entrySet()) {
+            if (entry.getValue() > bestVotes) {
+                best = entry.getKey();
+                bestVotes = entry.getValue();
+            }
+        }
+        return best;
+    }
+}
@@ -1,20 +1,32 @@
 package com.example.finalproject.demo.service;
 
+import com.example.finalproject.demo.cluster.RoomStateHandoff;
+import com.example.finalproject.demo.eventlog.RecoverableRoomState;
+import com.example.finalproject.demo.eventlog.RoomEvent;
+import com.example.finalproject.demo.eventlog.RoomEventLog;
 import com.example.finalproject.demo.model.Room;
 import com.example.finalproject.demo.model.User;
 import com.example.finalproject.demo.repository.RoomRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.fasterxml.jackson.databind.JsonNode;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import com.example.finalproject.demo.dto.ChatGptRequest;
@@ -23,11 +35,28 @@ import com.example.finalproject.demo.service.ChatGptService;
 
 @Service
 @RequiredArgsConstructor
-public class RoomService {
+public class RoomService implements RoomStateHandoff, RecoverableRoomState {
     private final RoomRepository roomRepository;
     private final ChatGptService chatGptService;
+    private final RoomEventLog eventLog;
+    private final SuggestionPromptBuilder promptBuilder;
+    private final AiSuggestionPrefetcher aiPrefetcher;
     // Map to store votes for each room: roomId -> (restaurant -> voteCount)
-    private final Map<Long, Map<String, Integer>> roomVotes = new HashMap<>();
+    // Each room's map is only written from that room's stripe (see RoomMutationRouter)
+    private final Map<Long, Map<String, Integer>> roomVotes = new ConcurrentHashMap<>();
+    // Alias tables for weighted picks, dropped whenever the room's tallies change and rebuilt on the next pick
+    private final Map<Long, WeightedSampler> weightedSamplers = new ConcurrentHashMap<>();
+    // Normalized suggestion names per room, dropped when a suggestion is added
+    private final Map<Long, RestaurantNameMatcher> nameMatchers = new ConcurrentHashMap<>();
+
+    // Normalized keys and MinHash buckets of each room's suggestions, for near-duplicate checks
+    private final Map<Long, SuggestionIndex> suggestionIndexes = new ConcurrentHashMap<>();
+
+    @Value("${room.suggestions.duplicate-threshold:0.7}")
+    private double duplicateThreshold = 0.7;
+
+    @Value("${chatgpt.match.min-confidence:0.75}")
+    private double minMatchConfidence = 0.75;
     
     private static final Logger logger = LoggerFactory.getLogger(RoomService.class);
     private static final String ALPHANUMERIC_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
@@ -74,7 +103,10 @@ public class RoomService {
         Room savedRoom = roomRepository.save(room);
         
         // Initialize votes map for this room
-        roomVotes.put(savedRoom.getId(), new HashMap<>());
+        roomVotes.put(savedRoom.getId(), new ConcurrentHashMap<>());
+
+        // Warm up the room's first AI suggestion request while people are still joining
+        aiPrefetcher.prefetch(savedRoom.getId(), creator);
 
         return inviteCode;
     }
@@ -86,31 +118,101 @@ public class RoomService {
             room.getUsers().add(user);
             // Save updated room to the database
             roomRepository.save(room);
+            eventLog.append(RoomEvent.join(inviteCode, user.getUsername()));
             return Optional.of(room);
         }
         return Optional.empty();
     }
     
+    /**
+     * Removes a user from a room's participants
+     * @param inviteCode The invite code of the room
+     * @param userId The ID of the user to remove
+     * @return true if the user was a participant and has been removed
+     */
+    @Transactional
+    public boolean removeUserFromRoom(String inviteCode, Long userId) {
+        Optional<Room> roomOptional = roomRepository.findByInviteCode(inviteCode);
+        if (roomOptional.isPresent()) {
+            Room room = roomOptional.get();
+            Optional<User> leaving = room.getUsers().stream().filter(u -> u.getId().equals(userId)).findFirst();
+            if (leaving.isPresent()) {
+                room.getUsers().remove(leaving.get());
+                roomRepository.save(room);
+                eventLog.append(RoomEvent.leave(inviteCode, leaving.get().getUsername()));
+                return true;
+            }
+        }
+        return false;
+    }
+    
     public boolean addRestaurantSuggestion(Long roomId, String restaurantName) {
         Optional<Room> roomOptional = roomRepository.findById(roomId);
         if (roomOptional.isPresent()) {
             Room room = roomOptional.get();
             List<String> suggestions = room.getRestaurantSuggestions();
             
-            // Check if suggestion already exists
-            if (!suggestions.contains(restaurantName)) {
+            // Near-duplicates ("McDonald's" / "mcdonalds") merge into the existing suggestion.
+            // The save happens under the index lock so a concurrent add of the same name
+            // sees it, and the name is only indexed once it is stored
+            SuggestionIndex index = suggestionIndex(roomId, suggestions);
+            synchronized (index) {
+                Optional<String> duplicate = index.findDuplicate(restaurantName);
+                if (duplicate.isPresent()) {
+                    logger.info("Suggestion '{}' in room {} duplicates '{}'", restaurantName, roomId, duplicate.get());
+                    return false;
+                }
                 suggestions.add(restaurantName);
                 roomRepository.save(room);
-                
-                // Initialize votes for this restaurant
-                roomVotes.computeIfAbsent(roomId, k -> new HashMap<>()).put(restaurantName, 0);
-                
-                return true;
+                index.add(restaurantName);
             }
+            dropIndexOnRollback(roomId, index);
+            
+            // Initialize votes for this restaurant
+            roomVotes.computeIfAbsent(roomId, k -> new ConcurrentHashMap<>()).put(restaurantName, 0);
+            weightedSamplers.remove(roomId);
+            nameMatchers.remove(roomId);
+            eventLog.append(RoomEvent.suggestion(room.getInviteCode(), restaurantName));
+            eventLog.append(RoomEvent.tally(room.getInviteCode(), roomId, restaurantName, 0));
+            
+            return true;
         }
         return false;
     }
+
+    // Inside the caller's transaction the name is indexed before it is committed, so
+    // that a concurrent add already sees it. If the save is rolled back the index holds
+    // a name the room does not, so it is dropped and rebuilt from what was stored
+    private void dropIndexOnRollback(Long roomId, SuggestionIndex index) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    suggestionIndexes.remove(roomId, index);
+                }
+            }
+        });
+    }
+
+    // Built from the stored suggestions the first time a room is touched. Like the room's
+    // suggestion list it only grows, so a shorter index has missed additions (made on
+    // another node) and is rebuilt
+    private SuggestionIndex suggestionIndex(Long roomId, List<String> suggestions) {
+        return suggestionIndexes.compute(roomId, (id, index) -> {
+            if (index != null && index.size() >= suggestions.size()) {
+                return index;
+            }
+            SuggestionIndex rebuilt = new SuggestionIndex(duplicateThreshold);
+            suggestions.forEach(rebuilt::add);
+            return rebuilt;
+        });
+    }
     
+    // Runs on the room's stripe, where no session is open: the transaction covers the lazy suggestion list
+    @Transactional(readOnly = true)
     public boolean voteForRestaurant(Long roomId, String restaurantName) {
         Optional<Room> roomOptional = roomRepository.findById(roomId);
         if (roomOptional.isPresent()) {
@@ -119,8 +221,11 @@ public class RoomService {
             // Check if restaurant exists in this room
             if (room.getRestaurantSuggestions().contains(restaurantName)) {
                 // Increment vote count
-                Map<String, Integer> votes = roomVotes.computeIfAbsent(roomId, k -> new HashMap<>());
-                votes.put(restaurantName, votes.getOrDefault(restaurantName, 0) + 1);
+                Map<String, Integer> votes = roomVotes.computeIfAbsent(roomId, k -> new ConcurrentHashMap<>());
+                int count = votes.getOrDefault(restaurantName, 0) + 1;
+                votes.put(restaurantName, count);
+                weightedSamplers.remove(roomId);
+                eventLog.append(RoomEvent.tally(room.getInviteCode(), roomId, restaurantName, count));
                 return true;
             }
         }
@@ -142,6 +247,69 @@ public class RoomService {
         return Optional.empty();
     }
 
+    /**
+     * Loads the room once and captures what the selection strategies need from it.
+     * The context holds plain copies, so callers on a stripe thread (which has no open
+     * session) can use it for any read of the room's suggestions or participants.
+     */
+    @Transactional(readOnly = true)
+    public Optional<RoomSelectionContext> loadSelectionContext(String inviteCode) {
+        return roomRepository.findByInviteCode(inviteCode).map(this::selectionContext);
+    }
+
+    private RoomSelectionContext selectionContext(Room room) {
+        List<String> participants = room.getUsers().stream()
+            .map(User::getUsername)
+            .collect(Collectors.toList());
+        return new RoomSelectionContext(room.getId(), room.getInviteCode(), room.getRestaurantSuggestions(),
+            roomVotes.getOrDefault(room.getId(), Map.of()), participants);
+    }
+
+    /**
+     * Picks one of the context's suggestions at random, each weighted by its tally in
+     * the context plus one so that restaurants nobody has voted for yet can still come
+     * up. The alias table behind it is only rebuilt after the tallies (or the
+     * suggestions) change.
+     */
+    public String pickWeightedRestaurant(RoomSelectionContext context, Random random) {
+        // A table cached from another snapshot of the room (taken before or after a vote
+        // or a new suggestion) is replaced
+        WeightedSampler sampler = weightedSamplers.compute(context.getRoomId(), (id, cached) ->
+            cached != null && cached.matches(context) ? cached : new WeightedSampler(context));
+        return sampler.aliases.next(random);
+    }
+
+    /**
+     * Matcher for free text that should name one of the room's suggestions, built once
+     * per set of suggestions.
+     */
+    public RestaurantNameMatcher nameMatcher(Long roomId, List<String> suggestions) {
+        return nameMatchers.compute(roomId, (id, cached) ->
+            cached != null && cached.size() == suggestions.size()
+                ? cached
+                : new RestaurantNameMatcher(suggestions, minMatchConfidence));
+    }
+
+    private static final class WeightedSampler {
+        private final List<String> suggestions;
+        private final Map<String, Integer> tallies;
+        private final AliasSampler<String> aliases;
+
+        private WeightedSampler(RoomSelectionContext context) {
+            this.suggestions = context.getSuggestions();
+            this.tallies = context.getTallies();
+            long[] weights = new long[suggestions.size()];
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = Math.max(0, tallies.getOrDefault(suggestions.get(i), 0)) + 1L;
+            }
+            this.aliases = new AliasSampler<>(suggestions, weights);
+        }
+
+        private boolean matches(RoomSelectionContext context) {
+            return suggestions.equals(context.getSuggestions()) && tallies.equals(context.getTallies());
+        }
+    }
+
     /**
      * Gets a room by its invite code
      * @param inviteCode The invite code of the room
@@ -178,22 +346,24 @@ public class RoomService {
      */
     public List<String> getAiRestaurantSuggestions(Long roomId, String prompt) {
         logger.info("Getting AI restaurant suggestions for room: {}", roomId);
+
+        Optional<List<String>> prefetched = aiPrefetcher.take(roomId, prompt);
+        if (prefetched.isPresent()) {
+            logger.info("Using {} prefetched AI suggestions for room: {}", prefetched.get().size(), roomId);
+            return prefetched.get();
+        }
         
         // Get existing suggestions for context if needed
         Optional<Room> roomOptional = roomRepository.findById(roomId);
         List<String> existingSuggestions = roomOptional.map(Room::getRestaurantSuggestions)
             .orElse(Collections.emptyList());
         
-        // Append existing suggestions to prompt if there are any
-        String enrichedPrompt = prompt;
-        if (!existingSuggestions.isEmpty()) {
-            enrichedPrompt += ". Current suggestions include: " + 
-                existingSuggestions.stream().collect(Collectors.joining(", "));
-        }
+        // Mention existing suggestions, as many as fit the prompt's token budget
+        String enrichedPrompt = promptBuilder.build(roomId, prompt, existingSuggestions);
         
         // Generate suggestions using ChatGPT service
         ChatGptResponse response = chatGptService.getRestaurantSuggestions(
-            new ChatGptRequest(enrichedPrompt, "restaurant_suggestion")
+            new ChatGptRequest(enrichedPrompt, "restaurant_suggestion", roomId)
         );
         
         // Handle the response
@@ -226,4 +396,85 @@ public class RoomService {
         logger.info("Added {} AI-generated restaurant suggestions to room {}", addedCount, roomId);
         return addedCount;
     }
-} 
\ No newline at end of file
+
+    @Override
+    public String handoffName() {
+        return "tally-votes";
+    }
+
+    @Override
+    public Set<String> roomsWithState() {
+        // One query for every room with tallies rather than one per room
+        Set<String> inviteCodes = new HashSet<>();
+        for (Room room : roomRepository.findAllById(new ArrayList<>(roomVotes.keySet()))) {
+            inviteCodes.add(room.getInviteCode());
+        }
+        return inviteCodes;
+    }
+
+    @Override
+    public Object exportState(String inviteCode) {
+        return getRoomByInviteCode(inviteCode)
+            .map(room -> {
+                Map<String, Integer> exported = roomVotes.remove(room.getId());
+                weightedSamplers.remove(room.getId());
+                // The room is leaving this node; its next owner builds its own matcher and index
+                nameMatchers.remove(room.getId());
+                suggestionIndexes.remove(room.getId());
+                if (exported != null) {
+                    eventLog.append(RoomEvent.clearTallies(inviteCode, room.getId()));
+                }
+                return exported;
+            })
+            .orElse(null);
+    }
+
+    @Override
+    public void importState(String inviteCode, JsonNode state) {
+        getRoomByInviteCode(inviteCode).ifPresent(room -> {
+            Map<String, Integer> votes = roomVotes.computeIfAbsent(room.getId(), k -> new ConcurrentHashMap<>());
+            state.fields().forEachRemaining(entry -> {
+                int count = votes.merge(entry.getKey(), entry.getValue().asInt(), Integer::sum);
+                weightedSamplers.remove(room.getId());
+                eventLog.append(RoomEvent.tally(inviteCode, room.getId(), entry.getKey(), count));
+            });
+        });
+    }
+
+    @Override
+    public String stateName() {
+        return handoffName();
+    }
+
+    @Override
+    public Object snapshot() {
+        // Keyed by room id, not invite code, so the tallies cannot be routed to their
+        // stripes; they are concurrent maps of absolute counts, so a copy is safe here
+        Map<Long, Map<String, Integer>> snapshot = new HashMap<>();
+        roomVotes.forEach((roomId, votes) -> snapshot.put(roomId, new HashMap<>(votes)));
+        return snapshot;
+    }
+
+    @Override
+    public void restore(JsonNode snapshot) {
+        snapshot.fields().forEachRemaining(room -> {
+            Map<String, Integer> votes = roomVotes.computeIfAbsent(Long.valueOf(room.getKey()), k -> new ConcurrentHashMap<>());
+            room.getValue().fields().forEachRemaining(entry -> votes.put(entry.getKey(), entry.getValue().asInt()));
+            weightedSamplers.remove(Long.valueOf(room.getKey()));
+        });
+    }
+
+    @Override
+    public void replay(RoomEvent event) {
+        if (event.getRoomId() == null) {
+            return;
+        }
+        if (event.getType() == RoomEvent.Type.TALLY) {
+            roomVotes.computeIfAbsent(event.getRoomId(), k -> new ConcurrentHashMap<>())
+                .put(event.getRestaurant(), event.getCount());
+        } else if (event.getType() == RoomEvent.Type.CLEAR_TALLIES) {
+            roomVotes.remove(event.getRoomId());
+        }
+        weightedSamplers.remove(event.getRoomId());
+    }
+}
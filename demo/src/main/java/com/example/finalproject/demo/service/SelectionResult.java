@@ -0,0 +1,22 @@
+package com.example.finalproject.demo.service;
+
+/**
+ * The outcome of a selection strategy: the chosen restaurant and a line explaining why.
+ */
+public final class SelectionResult {
+    private final String restaurant;
+    private final String explanation;
+
+    public SelectionResult(String restaurant, String explanation) {
+        this.restaurant = restaurant;
+        this.explanation = explanation;
+    }
+
+    public String getRestaurant() {
+        return restaurant;
+    }
+
+    public String getExplanation() {
+        return explanation;
+    }
+}
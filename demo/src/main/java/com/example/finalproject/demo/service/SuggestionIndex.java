@@ -0,0 +1,172 @@
+package com.example.finalproject.demo.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Catches near-duplicate suggestions in one room before they reach the wheel.
+ * <p>
+ * Every name is reduced to a key without case, accents, punctuation, spaces, "the"
+ * or a plural/possessive "s", so "McDonald's", "Mc Donalds" and "mcdonalds" share a
+ * key and collide in a plain hash lookup, as do "Sushi Bar" and "Sushi Bars".
+ * Longer names with a small typo ("Golden Dragon Restaurnt") are caught by MinHash
+ * over character trigrams of the key with LSH banding: a new name is only compared
+ * with the few names that share a band, so the cost of an insert does not depend on
+ * how many suggestions the room already has. A trigram estimate is too coarse for
+ * short names, so a typo in a one- or two-word name ("Shake Shak") or an extra word
+ * ("McDonald's Restaurant") is not treated as a duplicate.
+ * <p>
+ * Names whose numbers differ ("Sushi Bar" and "Sushi Bar 2") are never duplicates.
+ * <p>
+ * Not thread-safe; callers synchronize on the index.
+ */
+final class SuggestionIndex {
+
+    private static final int BANDS = 8;
+    private static final int ROWS = 4;
+    private static final int HASHES = BANDS * ROWS;
+    // Bucket sizes and comparisons per insert are capped, keeping inserts O(1)
+    private static final int MAX_BUCKET = 16;
+    private static final long[] SEEDS = new long[HASHES];
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < HASHES; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            SEEDS[i] = seed | 1L;
+        }
+    }
+
+    private final double threshold;
+    private final Map<String, String> byKey = new HashMap<>();
+    private final List<int[]> signatures = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<String> numbers = new ArrayList<>();
+    private final Map<Long, List<Integer>> buckets = new HashMap<>();
+
+    /**
+     * @param threshold estimated trigram Jaccard similarity at or above which two names
+     *                  are the same restaurant
+     */
+    SuggestionIndex(double threshold) {
+        this.threshold = threshold;
+    }
+
+    int size() {
+        return names.size();
+    }
+
+    /**
+     * The already indexed name that {@code name} duplicates, if any.
+     */
+    Optional<String> findDuplicate(String name) {
+        String key = key(name);
+        if (key.isEmpty()) {
+            return Optional.empty();
+        }
+        String exact = byKey.get(key);
+        if (exact != null) {
+            return Optional.of(exact);
+        }
+        int[] signature = signature(key);
+        String digits = digits(key);
+        for (int band = 0; band < BANDS; band++) {
+            List<Integer> candidates = buckets.get(bandKey(signature, band));
+            if (candidates == null) {
+                continue;
+            }
+            for (int candidate : candidates) {
+                if (digits.equals(numbers.get(candidate))
+                        && similarity(signature, signatures.get(candidate)) >= threshold) {
+                    return Optional.of(names.get(candidate));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    void add(String name) {
+        String key = key(name);
+        byKey.putIfAbsent(key, name);
+        int[] signature = signature(key);
+        int id = names.size();
+        names.add(name);
+        numbers.add(digits(key));
+        signatures.add(signature);
+        for (int band = 0; band < BANDS; band++) {
+            List<Integer> bucket = buckets.computeIfAbsent(bandKey(signature, band), k -> new ArrayList<>(2));
+            if (bucket.size() < MAX_BUCKET) {
+                bucket.add(id);
+            }
+        }
+    }
+
+    static String key(String name) {
+        StringBuilder key = new StringBuilder();
+        for (String word : RestaurantNameMatcher.normalize(name).split(" ")) {
+            if (word.equals("s")) {
+                // The "s" of a possessive split off by normalization
+                continue;
+            }
+            if (word.length() > 3 && word.endsWith("s") && !word.endsWith("ss")) {
+                word = word.substring(0, word.length() - 1);
+            }
+            key.append(word);
+        }
+        return key.toString();
+    }
+
+    private static String digits(String key) {
+        StringBuilder digits = new StringBuilder();
+        for (int i = 0; i < key.length(); i++) {
+            if (Character.isDigit(key.charAt(i))) {
+                digits.append(key.charAt(i));
+            }
+        }
+        return digits.toString();
+    }
+
+    private static int[] signature(String key) {
+        int[] signature = new int[HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        String padded = "^" + key + "$";
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            long gram = padded.charAt(i) * 31L * 31L + padded.charAt(i + 1) * 31L + padded.charAt(i + 2);
+            for (int h = 0; h < HASHES; h++) {
+                int value = (int) (mix(gram * SEEDS[h]) >>> 33);
+                if (value < signature[h]) {
+                    signature[h] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        long key = band;
+        for (int row = band * ROWS; row < (band + 1) * ROWS; row++) {
+            key = key * 0x100000001B3L + signature[row];
+        }
+        return key;
+    }
+
+    private static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (a[i] == b[i]) {
+                same++;
+            }
+        }
+        return (double) same / HASHES;
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xFF51AFD7ED558CCDL;
+        value = (value ^ (value >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return value ^ (value >>> 33);
+    }
+}
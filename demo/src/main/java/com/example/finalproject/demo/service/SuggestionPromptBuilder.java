@@ -0,0 +1,137 @@
+package com.example.finalproject.demo.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds the prompt for AI suggestions within a fixed token budget, however many
+ * suggestions the room already has.
+ * <p>
+ * Tokens are estimated (about four characters each) rather than counted exactly. The
+ * participant's own prompt is capped first; the existing suggestions then fill what
+ * is left of the budget, preferring ones that share a word with the prompt and then
+ * the most recent ones. The result is cached per room and reused while the prompt
+ * and the room's suggestion count (its version, since suggestions are only ever
+ * appended) stay the same.
+ */
+@Component
+public class SuggestionPromptBuilder {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final int promptTokens;
+    private final int contextTokens;
+    private final Map<Long, CachedPrompt> cache = new ConcurrentHashMap<>();
+    private final DistributionSummary promptSize;
+
+    public SuggestionPromptBuilder(MeterRegistry meterRegistry,
+                                   @Value("${chatgpt.prompt.max-prompt-tokens:150}") int promptTokens,
+                                   @Value("${chatgpt.prompt.max-context-tokens:200}") int contextTokens) {
+        this.promptTokens = promptTokens;
+        this.contextTokens = contextTokens;
+        this.promptSize = DistributionSummary.builder("chatgpt.prompt.tokens")
+            .description("Estimated tokens in enriched suggestion prompts")
+            .register(meterRegistry);
+    }
+
+    private static final class CachedPrompt {
+        private final int version;
+        private final String prompt;
+        private final String enriched;
+
+        private CachedPrompt(int version, String prompt, String enriched) {
+            this.version = version;
+            this.prompt = prompt;
+            this.enriched = enriched;
+        }
+    }
+
+    public String build(Long roomId, String prompt, List<String> existingSuggestions) {
+        String request = prompt != null ? prompt : "";
+        int version = existingSuggestions.size();
+        CachedPrompt cached = cache.get(roomId);
+        if (cached != null && cached.version == version && cached.prompt.equals(request)) {
+            return cached.enriched;
+        }
+
+        String enriched = enrich(request, existingSuggestions);
+        cache.put(roomId, new CachedPrompt(version, request, enriched));
+        promptSize.record(estimateTokens(enriched));
+        return enriched;
+    }
+
+    static int estimateTokens(String text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    private String enrich(String prompt, List<String> existingSuggestions) {
+        String capped = truncate(prompt.trim(), promptTokens * CHARS_PER_TOKEN);
+        if (existingSuggestions.isEmpty()) {
+            return capped;
+        }
+
+        List<String> chosen = choose(capped, existingSuggestions);
+        StringBuilder enriched = new StringBuilder(capped).append(". Current suggestions include: ");
+        enriched.append(String.join(", ", chosen));
+        int omitted = existingSuggestions.size() - chosen.size();
+        if (omitted > 0) {
+            enriched.append(" and ").append(omitted).append(" more");
+        }
+        return enriched.toString();
+    }
+
+    // Relevant first, then newest, all within the context budget; listed oldest first
+    private List<String> choose(String prompt, List<String> suggestions) {
+        Set<String> promptWords = words(prompt);
+        int budget = contextTokens * CHARS_PER_TOKEN;
+        Set<Integer> picked = new HashSet<>();
+        for (int pass = 0; pass < 2 && budget > 0; pass++) {
+            for (int i = suggestions.size() - 1; i >= 0 && budget > 0; i--) {
+                String suggestion = suggestions.get(i);
+                if (picked.contains(i) || (pass == 0 && Collections.disjoint(words(suggestion), promptWords))) {
+                    continue;
+                }
+                int cost = suggestion.length() + 2;
+                if (cost <= budget) {
+                    picked.add(i);
+                    budget -= cost;
+                }
+            }
+        }
+        List<String> chosen = new ArrayList<>(picked.size());
+        for (int i = 0; i < suggestions.size(); i++) {
+            if (picked.contains(i)) {
+                chosen.add(suggestions.get(i));
+            }
+        }
+        return chosen;
+    }
+
+    private static Set<String> words(String text) {
+        Set<String> words = new HashSet<>();
+        for (String word : RestaurantNameMatcher.normalize(text).split(" ")) {
+            if (word.length() > 2) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static String truncate(String text, int maxChars) {
+        if (text.length() <= maxChars) {
+            return text;
+        }
+        int cut = text.lastIndexOf(' ', maxChars);
+        return text.substring(0, cut > maxChars / 2 ? cut : maxChars);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.finalproject.demo.service;
+
+import com.example.finalproject.demo.service.RestaurantSelectionService.SelectionStrategy;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * HIGHEST_VOTES and CONSENSUS both take the tally leader; without any votes the
+ * room falls back to a random pick.
+ */
+@Component
+public class VoteCountRestaurantSelector implements RestaurantSelector {
+
+    @Override
+    public Set<SelectionStrategy> strategies() {
+        return EnumSet.of(SelectionStrategy.HIGHEST_VOTES, SelectionStrategy.CONSENSUS);
+    }
+
+    @Override
+    public Optional<SelectionResult> select(RoomSelectionContext context, SelectionStrategy strategy) {
+        String explanation = strategy == SelectionStrategy.CONSENSUS
+            ? "Selected based on group consensus"
+            : "Selected based on highest number of votes";
+        return context.getLeader().map(restaurant -> new SelectionResult(restaurant, explanation));
+    }
+}
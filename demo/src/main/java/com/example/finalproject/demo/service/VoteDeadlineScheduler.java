@@ -0,0 +1,119 @@
+package com.example.finalproject.demo.service;
+
+import com.example.finalproject.demo.scheduling.HashedWheelTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Per-round vote deadlines. A round's deadline starts with its first vote and is
+ * cancelled when the round resolves normally; if it fires first, the expiry handler
+ * resolves the round with the votes received so far.
+ * <p>
+ * All deadlines share one {@link HashedWheelTimer}, so an idle round costs a map
+ * entry and a small timeout object. {@code room.vote.deadline-ms=0} disables
+ * deadlines.
+ */
+@Service
+public class VoteDeadlineScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(VoteDeadlineScheduler.class);
+
+    private final long deadlineMs;
+    private final HashedWheelTimer timer;
+    private final ExecutorService expiryExecutor;
+    // "inviteCode\0restaurant" -> deadline of the open round
+    private final Map<String, HashedWheelTimer.Timeout> deadlines = new ConcurrentHashMap<>();
+    private volatile BiConsumer<String, String> expiryHandler;
+
+    public VoteDeadlineScheduler(MeterRegistry meterRegistry,
+                                 @Value("${room.vote.deadline-ms:120000}") long deadlineMs,
+                                 @Value("${room.vote.deadline-tick-ms:100}") long tickMs,
+                                 @Value("${room.vote.deadline-wheel-size:4096}") int wheelSize,
+                                 @Value("${room.vote.deadline-threads:4}") int expiryThreads) {
+        this.deadlineMs = deadlineMs;
+        // Fixed size: a pool with an unbounded queue never grows past its core threads,
+        // and expiry handlers block while they route to the room's owner
+        this.expiryExecutor = Executors.newFixedThreadPool(Math.max(1, expiryThreads), r -> {
+            Thread thread = new Thread(r, "vote-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer = new HashedWheelTimer("vote-deadline-wheel", tickMs, wheelSize, expiryExecutor);
+        Gauge.builder("room.vote.deadlines.pending", timer, HashedWheelTimer::pendingTimeouts)
+            .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        timer.stop();
+        expiryExecutor.shutdown();
+    }
+
+    public boolean isEnabled() {
+        return deadlineMs > 0;
+    }
+
+    public long getDeadlineMs() {
+        return deadlineMs;
+    }
+
+    /**
+     * Called with {@code (inviteCode, restaurant)} when a round's deadline passes.
+     */
+    public void onExpiry(BiConsumer<String, String> handler) {
+        this.expiryHandler = handler;
+    }
+
+    /**
+     * Starts the round's deadline unless it already has one.
+     */
+    public void open(String inviteCode, String restaurant) {
+        if (!isEnabled()) {
+            return;
+        }
+        deadlines.computeIfAbsent(key(inviteCode, restaurant), key -> timer.newTimeout(
+            () -> expire(key, inviteCode, restaurant), deadlineMs, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Cancels the round's deadline, e.g. because every participant has voted.
+     */
+    public void cancel(String inviteCode, String restaurant) {
+        HashedWheelTimer.Timeout timeout = deadlines.remove(key(inviteCode, restaurant));
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    private void expire(String key, String inviteCode, String restaurant) {
+        HashedWheelTimer.Timeout timeout = deadlines.get(key);
+        if (timeout == null || !timeout.isExpired() || !deadlines.remove(key, timeout)) {
+            return; // resolved, or a newer round for the same restaurant has started
+        }
+        BiConsumer<String, String> handler = expiryHandler;
+        if (handler == null) {
+            return;
+        }
+        logger.info("Vote deadline passed for {} in room {}", restaurant, inviteCode);
+        try {
+            handler.accept(inviteCode, restaurant);
+        } catch (Exception e) {
+            logger.error("Error resolving expired round for {} in room {}", restaurant, inviteCode, e);
+        }
+    }
+
+    private static String key(String inviteCode, String restaurant) {
+        return inviteCode + '\0' + restaurant;
+    }
+}
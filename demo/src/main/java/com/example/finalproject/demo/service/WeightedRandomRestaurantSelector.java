@@ -0,0 +1,32 @@
+package com.example.finalproject.demo.service;
+
+import com.example.finalproject.demo.service.RestaurantSelectionService.SelectionStrategy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Draws from the room's cached alias table (see {@link RoomService#pickWeightedRestaurant}),
+ * weighted by the tallies captured in the selection context.
+ */
+@Component
+@RequiredArgsConstructor
+public class WeightedRandomRestaurantSelector implements RestaurantSelector {
+
+    private final RoomService roomService;
+
+    @Override
+    public Set<SelectionStrategy> strategies() {
+        return EnumSet.of(SelectionStrategy.WEIGHTED_RANDOM);
+    }
+
+    @Override
+    public Optional<SelectionResult> select(RoomSelectionContext context, SelectionStrategy strategy) {
+        String restaurant = roomService.pickWeightedRestaurant(context, ThreadLocalRandom.current());
+        return Optional.of(new SelectionResult(restaurant, "Selected with weighted randomization based on votes"));
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.finalproject.demo.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call accounting for the AI paths, tagged by call type
+ * ({@code restaurant_suggestion}, {@code restaurant_selection}, or {@code batch} for
+ * an upstream request that carries several prompts):
+ * <ul>
+ *   <li>{@code chatgpt.call} - latency as the caller saw it, tagged with whether the
+ *       answer came from the AI or the local fallback</li>
+ *   <li>{@code chatgpt.call.fallback} - fallbacks by reason</li>
+ *   <li>{@code chatgpt.upstream} - latency of each chat completions request</li>
+ *   <li>{@code chatgpt.upstream.tokens} - prompt and completion tokens as reported by
+ *       the API</li>
+ *   <li>{@code chatgpt.upstream.response.size} - bytes of reply content</li>
+ * </ul>
+ * It also keeps the most recent calls so {@link AiMetricsEndpoint} can list the
+ * slowest prompts, and call counts per room for the most recently active rooms.
+ * Rooms are never a meter tag: there is no bound on how many there are.
+ */
+@Component
+public class AiCallMetrics {
+
+    static final String SUGGESTION = "restaurant_suggestion";
+    static final String SELECTION = "restaurant_selection";
+    static final String BATCH = "batch";
+    // Call types come from clients too, so anything unknown is folded into one tag
+    private static final Set<String> KNOWN_TYPES = Set.of(SUGGESTION, SELECTION, BATCH);
+    private static final String OTHER = "other";
+    private static final int RECENT_CALLS = 200;
+    private static final int PROMPT_PREVIEW = 120;
+    private static final int TRACKED_ROOMS = 1000;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer> callTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> upstreamTimers = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> tokenSummaries = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> responseSizes = new ConcurrentHashMap<>();
+    private final Map<String, Counter> fallbacks = new ConcurrentHashMap<>();
+    private final Deque<CallRecord> recent = new ArrayDeque<>();
+    // Least recently active rooms are forgotten first
+    private final Map<Long, RoomUsage> roomUsage = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, RoomUsage> eldest) {
+            return size() > TRACKED_ROOMS;
+        }
+    };
+
+    public AiCallMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Records one logical AI call.
+     *
+     * @param roomId         room the call was made for, or {@code null}
+     * @param fallbackReason why the local fallback answered, or {@code null} if the AI did
+     */
+    void recordCall(String type, Long roomId, String prompt, long nanos, String fallbackReason) {
+        String tag = normalizeType(type);
+        String source = fallbackReason == null ? "ai" : "fallback";
+        callTimers.computeIfAbsent(tag + '\0' + source, key -> Timer.builder("chatgpt.call")
+                .description("AI call latency as seen by the caller")
+                .tag("type", tag)
+                .tag("source", source)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry))
+            .record(nanos, TimeUnit.NANOSECONDS);
+        if (fallbackReason != null) {
+            fallbacks.computeIfAbsent(tag + '\0' + fallbackReason, key -> Counter.builder("chatgpt.call.fallback")
+                    .tag("type", tag)
+                    .tag("reason", fallbackReason)
+                    .register(meterRegistry))
+                .increment();
+        }
+        CallRecord record = new CallRecord(tag, preview(prompt), TimeUnit.NANOSECONDS.toMillis(nanos), fallbackReason);
+        synchronized (recent) {
+            recent.addLast(record);
+            if (recent.size() > RECENT_CALLS) {
+                recent.removeFirst();
+            }
+        }
+        if (roomId != null) {
+            synchronized (roomUsage) {
+                roomUsage.computeIfAbsent(roomId, id -> new RoomUsage()).add(nanos, fallbackReason != null);
+            }
+        }
+    }
+
+    /**
+     * Records one chat completions request; token counts below zero mean the reply
+     * carried no usage.
+     */
+    void recordUpstream(String type, long nanos, boolean failed, int promptTokens, int completionTokens, int responseBytes) {
+        String tag = normalizeType(type);
+        String outcome = failed ? "error" : "success";
+        upstreamTimers.computeIfAbsent(tag + '\0' + outcome, key -> Timer.builder("chatgpt.upstream")
+                .description("Chat completions request latency")
+                .tag("type", tag)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry))
+            .record(nanos, TimeUnit.NANOSECONDS);
+        if (failed) {
+            return;
+        }
+        if (promptTokens >= 0) {
+            tokens(tag, "prompt").record(promptTokens);
+        }
+        if (completionTokens >= 0) {
+            tokens(tag, "completion").record(completionTokens);
+        }
+        responseSizes.computeIfAbsent(tag, key -> DistributionSummary.builder("chatgpt.upstream.response.size")
+                .baseUnit("bytes")
+                .tag("type", tag)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry))
+            .record(responseBytes);
+    }
+
+    /**
+     * Totals and percentiles per call type, plus the slowest recent calls and the rooms
+     * with the most calls. Negative limits count as zero.
+     */
+    public Map<String, Object> snapshot(int slowest, int rooms) {
+        Map<String, Map<String, Object>> types = new LinkedHashMap<>();
+        callTimers.values().forEach(timer -> section(types, timer.getId().getTag("type"), "calls")
+            .put(timer.getId().getTag("source"), timerStats(timer)));
+        fallbacks.values().forEach(counter -> section(types, counter.getId().getTag("type"), "fallbacks")
+            .put(counter.getId().getTag("reason"), (long) counter.count()));
+        upstreamTimers.values().forEach(timer -> section(types, timer.getId().getTag("type"), "upstream")
+            .put(timer.getId().getTag("outcome"), timerStats(timer)));
+        tokenSummaries.values().forEach(summary -> section(types, summary.getId().getTag("type"), "tokens")
+            .put(summary.getId().getTag("kind"), summaryStats(summary)));
+        responseSizes.values().forEach(summary -> types.computeIfAbsent(summary.getId().getTag("type"),
+            key -> new LinkedHashMap<>()).put("responseBytes", summaryStats(summary)));
+
+        List<CallRecord> calls;
+        synchronized (recent) {
+            calls = new ArrayList<>(recent);
+        }
+        calls.sort(Comparator.comparingLong(CallRecord::latencyMs).reversed());
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("types", types);
+        snapshot.put("slowestRecent", calls.subList(0, Math.min(Math.max(0, slowest), calls.size())));
+        snapshot.put("busiestRooms", busiestRooms(Math.max(0, rooms)));
+        return snapshot;
+    }
+
+    private List<Map<String, Object>> busiestRooms(int limit) {
+        List<Map.Entry<Long, RoomUsage>> usage;
+        synchronized (roomUsage) {
+            usage = new ArrayList<>(roomUsage.size());
+            roomUsage.forEach((roomId, room) -> usage.add(Map.entry(roomId, room.copy())));
+        }
+        usage.sort(Comparator.comparingLong((Map.Entry<Long, RoomUsage> entry) -> entry.getValue().calls).reversed());
+        List<Map<String, Object>> busiest = new ArrayList<>();
+        for (Map.Entry<Long, RoomUsage> entry : usage.subList(0, Math.min(limit, usage.size()))) {
+            Map<String, Object> room = new LinkedHashMap<>();
+            room.put("roomId", entry.getKey());
+            room.put("calls", entry.getValue().calls);
+            room.put("fallbacks", entry.getValue().fallbacks);
+            room.put("totalMs", TimeUnit.NANOSECONDS.toMillis(entry.getValue().nanos));
+            busiest.add(room);
+        }
+        return busiest;
+    }
+
+    static String normalizeType(String type) {
+        return type != null && KNOWN_TYPES.contains(type) ? type : OTHER;
+    }
+
+    private DistributionSummary tokens(String tag, String kind) {
+        return tokenSummaries.computeIfAbsent(tag + '\0' + kind, key -> DistributionSummary.builder("chatgpt.upstream.tokens")
+            .baseUnit("tokens")
+            .tag("type", tag)
+            .tag("kind", kind)
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> section(Map<String, Map<String, Object>> types, String type, String name) {
+        return (Map<String, Object>) types.computeIfAbsent(type, key -> new LinkedHashMap<>())
+            .computeIfAbsent(name, key -> new LinkedHashMap<String, Object>());
+    }
+
+    private static Map<String, Object> timerStats(Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", snapshot.count());
+        stats.put("meanMs", Math.round(snapshot.mean(TimeUnit.MILLISECONDS)));
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            stats.put(percentileKey(percentile) + "Ms", Math.round(percentile.value(TimeUnit.MILLISECONDS)));
+        }
+        stats.put("maxMs", Math.round(snapshot.max(TimeUnit.MILLISECONDS)));
+        return stats;
+    }
+
+    private static Map<String, Object> summaryStats(DistributionSummary summary) {
+        HistogramSnapshot snapshot = summary.takeSnapshot();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", snapshot.count());
+        stats.put("total", Math.round(snapshot.total()));
+        stats.put("mean", Math.round(snapshot.mean()));
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            stats.put(percentileKey(percentile), Math.round(percentile.value()));
+        }
+        stats.put("max", Math.round(snapshot.max()));
+        return stats;
+    }
+
+    private static String percentileKey(ValueAtPercentile percentile) {
+        return "p" + Math.round(percentile.percentile() * 100);
+    }
+
+    private static String preview(String prompt) {
+        if (prompt == null) {
+            return "";
+        }
+        return prompt.length() <= PROMPT_PREVIEW ? prompt : prompt.substring(0, PROMPT_PREVIEW) + "...";
+    }
+
+    private static final class RoomUsage {
+        private long calls;
+        private long fallbacks;
+        private long nanos;
+
+        private void add(long callNanos, boolean fallback) {
+            calls++;
+            fallbacks += fallback ? 1 : 0;
+            nanos += callNanos;
+        }
+
+        private RoomUsage copy() {
+            RoomUsage copy = new RoomUsage();
+            copy.calls = calls;
+            copy.fallbacks = fallbacks;
+            copy.nanos = nanos;
+            return copy;
+        }
+    }
+
+    public record CallRecord(String type, String prompt, long latencyMs, String fallbackReason) {
+    }
+}
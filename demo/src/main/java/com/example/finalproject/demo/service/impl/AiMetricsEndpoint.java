@@ -0,0 +1,30 @@
+package com.example.finalproject.demo.service.impl;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * {@code /actuator/ai}: AI latency percentiles, token usage, response sizes and
+ * fallback reasons per call type, with the slowest recent prompts and the rooms that
+ * made the most AI calls. Like any actuator endpoint it has to be exposed, e.g.
+ * {@code management.endpoints.web.exposure.include=health,ai}.
+ */
+@Component
+@Endpoint(id = "ai")
+public class AiMetricsEndpoint {
+
+    private final AiCallMetrics metrics;
+
+    public AiMetricsEndpoint(AiCallMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @ReadOperation
+    public Map<String, Object> ai(@Nullable Integer slowest, @Nullable Integer rooms) {
+        return metrics.snapshot(slowest != null ? slowest : 10, rooms != null ? rooms : 10);
+    }
+}
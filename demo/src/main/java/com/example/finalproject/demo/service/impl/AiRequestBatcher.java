@@ -0,0 +1,187 @@
+package com.example.finalproject.demo.service.impl;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Collects suggestion prompts from all rooms for a few milliseconds and sends them
+ * upstream as one numbered multi-prompt request, so a burst of rooms shares one
+ * connection and one round of model overhead. The reply is split on its
+ * {@code ### n} headers back to the waiting callers; a prompt the reply skipped
+ * fails on its own and its caller falls back as for any other upstream error.
+ * <p>
+ * Off unless {@code chatgpt.batch.enabled=true}. The {@code fake-ai} profile runs
+ * a local endpoint that understands the batch format, for offline load tests.
+ */
+@Component
+@ConditionalOnProperty(name = "chatgpt.batch.enabled", havingValue = "true")
+class AiRequestBatcher {
+    private static final Logger logger = LoggerFactory.getLogger(AiRequestBatcher.class);
+
+    static final String BATCH_SYSTEM_PROMPT = "You are a helpful assistant that provides restaurant suggestions. " +
+            "You will receive several numbered requests, each starting with a line '### <number>'. " +
+            "For every request, write its '### <number>' line followed by exactly 5 restaurant names, one per line. " +
+            "Don't include numbering, explanations, or any other text.";
+    private static final Pattern SECTION_HEADER = Pattern.compile("^#{1,3}\\s*(\\d+)\\s*$");
+
+    private final OpenAiClient openAiClient;
+    private final long windowMs;
+    private final int maxBatch;
+    private final BlockingQueue<Pending> queue;
+    private final ThreadPoolExecutor senders;
+    private final DistributionSummary batchSize;
+    private final Thread collector;
+
+    private static final class Pending {
+        private final String prompt;
+        private final String type;
+        private final CompletableFuture<List<String>> result = new CompletableFuture<>();
+
+        private Pending(String prompt, String type) {
+            this.prompt = prompt;
+            this.type = type;
+        }
+    }
+
+    AiRequestBatcher(OpenAiClient openAiClient,
+                     MeterRegistry meterRegistry,
+                     @Value("${chatgpt.batch.window-ms:10}") long windowMs,
+                     @Value("${chatgpt.batch.max-size:16}") int maxBatch,
+                     @Value("${chatgpt.batch.queue-capacity:1024}") int queueCapacity,
+                     @Value("${chatgpt.batch.senders:4}") int senders) {
+        this.openAiClient = openAiClient;
+        this.windowMs = windowMs;
+        this.maxBatch = maxBatch;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        // A full sender pool makes the collector send the batch itself, which also slows intake
+        this.senders = new ThreadPoolExecutor(0, senders, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "ai-batch-send");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.batchSize = DistributionSummary.builder("chatgpt.batch.size")
+            .description("Prompts sent in one upstream request")
+            .register(meterRegistry);
+        this.collector = new Thread(this::collect, "ai-batcher");
+        this.collector.setDaemon(true);
+    }
+
+    @PostConstruct
+    void start() {
+        collector.start();
+        logger.info("AI request batching enabled: window {} ms, up to {} prompts per request", windowMs, maxBatch);
+    }
+
+    @PreDestroy
+    void stop() {
+        collector.interrupt();
+        senders.shutdown();
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result.completeExceptionally(new IllegalStateException("AI batcher stopped"));
+        }
+    }
+
+    CompletableFuture<List<String>> submit(String prompt, String type) {
+        Pending pending = new Pending(prompt, type);
+        if (!queue.offer(pending)) {
+            pending.result.completeExceptionally(new AiUnavailableException("queue_full", "AI batch queue is full"));
+        }
+        return pending.result;
+    }
+
+    private void collect() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                List<Pending> batch = new ArrayList<>(maxBatch);
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMs);
+                while (batch.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                senders.execute(() -> send(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void send(List<Pending> batch) {
+        batchSize.record(batch.size());
+        try {
+            if (batch.size() == 1) {
+                Pending only = batch.get(0);
+                only.result.complete(ChatGptServiceImpl.parseSuggestions(openAiClient.complete(only.type,
+                    ChatGptServiceImpl.SYSTEM_PROMPT, "Suggest restaurants for this request: " + only.prompt,
+                    ChatGptServiceImpl.MAX_TOKENS)));
+                return;
+            }
+
+            Map<Integer, List<String>> sections = parseSections(openAiClient.complete(AiCallMetrics.BATCH, BATCH_SYSTEM_PROMPT,
+                batchPrompt(batch), ChatGptServiceImpl.MAX_TOKENS * batch.size()));
+            for (int i = 0; i < batch.size(); i++) {
+                List<String> suggestions = sections.get(i + 1);
+                if (suggestions != null && !suggestions.isEmpty()) {
+                    batch.get(i).result.complete(suggestions);
+                } else {
+                    batch.get(i).result.completeExceptionally(
+                        new IllegalStateException("Batched reply has no section " + (i + 1)));
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Batched AI request of {} prompts failed: {}", batch.size(), e.getMessage());
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+        }
+    }
+
+    static String batchPrompt(List<Pending> batch) {
+        StringBuilder prompt = new StringBuilder();
+        for (int i = 0; i < batch.size(); i++) {
+            // A header inside a prompt would shift every later section
+            String single = batch.get(i).prompt == null ? "" : batch.get(i).prompt.replaceAll("[\\r\\n#]+", " ");
+            prompt.append("### ").append(i + 1).append('\n')
+                .append("Suggest restaurants for this request: ").append(single).append('\n');
+        }
+        return prompt.toString();
+    }
+
+    static Map<Integer, List<String>> parseSections(String content) {
+        Map<Integer, List<String>> sections = new HashMap<>();
+        List<String> current = null;
+        for (String line : content.split("\n")) {
+            String trimmed = line.trim();
+            Matcher header = SECTION_HEADER.matcher(trimmed);
+            if (header.matches()) {
+                current = sections.computeIfAbsent(Integer.parseInt(header.group(1)), k -> new ArrayList<>());
+            } else if (current != null && !trimmed.isEmpty()) {
+                current.add(trimmed);
+            }
+        }
+        return sections;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.finalproject.demo.service.impl;
+
+/**
+ * The AI upstream was not called because the circuit breaker is open, the
+ * concurrency limit is reached or the batch queue is full; callers take their
+ * local fallback.
+ */
+class AiUnavailableException extends RuntimeException {
+    private final String reason;
+
+    AiUnavailableException(String reason, String message) {
+        super(message);
+        this.reason = reason;
+    }
+
+    /**
+     * {@code breaker}, {@code limiter} or {@code queue_full}.
+     */
+    String reason() {
+        return reason;
+    }
+}
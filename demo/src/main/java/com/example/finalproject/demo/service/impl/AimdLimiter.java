@@ -0,0 +1,61 @@
+package com.example.finalproject.demo.service.impl;
+
+/**
+ * Adaptive cap on concurrent calls (additive increase, multiplicative decrease).
+ * A call that comes back within {@code targetLatencyMs} grows the limit by
+ * {@code 1 / limit}, so roughly one slot per limit's worth of good calls; a call
+ * that fails or is slower than the target shrinks it by {@code backoff}.
+ */
+final class AimdLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyMs;
+    private final double backoff;
+
+    private double limit;
+    private int inFlight;
+
+    AimdLimiter(int initialLimit, int minLimit, int maxLimit, long targetLatencyMs, double backoff) {
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyMs = targetLatencyMs;
+        this.backoff = backoff;
+    }
+
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Ends a call admitted by {@link #tryAcquire}.
+     *
+     * @param latencyMs how long the call took, or a negative value if it never ran
+     * @param dropped   whether it failed
+     */
+    synchronized void release(long latencyMs, boolean dropped) {
+        inFlight--;
+        if (latencyMs < 0) {
+            return;
+        }
+        if (dropped || latencyMs > targetLatencyMs) {
+            limit = Math.max(minLimit, limit * backoff);
+        } else if (inFlight + 1 >= (int) limit) {
+            // Only grow while the current limit is actually in use
+            limit = Math.min(maxLimit, limit + 1.0 / limit);
+        }
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+}
@@ -7,20 +7,19 @@ import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
 
-import java.util.ArrayList;
+import java.net.SocketTimeoutException;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 @Service
@@ -29,16 +28,18 @@ public class ChatGptServiceImpl implements ChatGptService {
     
     private static final Logger logger = LoggerFactory.getLogger(ChatGptServiceImpl.class);
     private final Random random = new Random();
-    private final RestTemplate restTemplate;
-    
-    @Value("${chatgpt.api.key}")
-    private String apiKey;
-    
-    @Value("${chatgpt.api.url}")
-    private String apiUrl;
-    
-    @Value("${chatgpt.api.model}")
-    private String model;
+    private final OpenAiClient openAiClient;
+    private final ObjectProvider<AiRequestBatcher> batcherProvider;
+    private final AiCallMetrics metrics;
+
+    static final String SYSTEM_PROMPT = "You are a helpful assistant that provides restaurant suggestions. " +
+            "Provide exactly 5 restaurant suggestions based on the prompt. " +
+            "Return only the restaurant names, separated by newlines. Don't include numbering, explanations, or any other text.";
+    static final int MAX_TOKENS = 100;
+
+    // Covers the batch window plus one upstream round trip
+    @Value("${chatgpt.batch.wait-ms:30000}")
+    private long batchWaitMs;
     
     // Fallback mock data for restaurant suggestions
     private static final List<String> FALLBACK_RESTAURANTS = Arrays.asList(
@@ -54,73 +55,68 @@ public class ChatGptServiceImpl implements ChatGptService {
     
     @Override
     public ChatGptResponse getRestaurantSuggestions(ChatGptRequest request) {
+        long started = System.nanoTime();
+        String fallbackReason = null;
         try {
             logger.info("Generating restaurant suggestions for prompt: {}", request.getPrompt());
-            
-            // Create OpenAI API request headers
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(apiKey);
-            
-            // Create the request body for OpenAI API
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", model);
-            
-            List<Map<String, String>> messages = new ArrayList<>();
-            
-            // System message to instruct the model
-            Map<String, String> systemMessage = new HashMap<>();
-            systemMessage.put("role", "system");
-            systemMessage.put("content", "You are a helpful assistant that provides restaurant suggestions. " +
-                    "Provide exactly 5 restaurant suggestions based on the prompt. " +
-                    "Return only the restaurant names, separated by newlines. Don't include numbering, explanations, or any other text.");
-            
-            // User message with the actual prompt
-            Map<String, String> userMessage = new HashMap<>();
-            userMessage.put("role", "user");
-            userMessage.put("content", "Suggest restaurants for this request: " + request.getPrompt());
-            
-            messages.add(systemMessage);
-            messages.add(userMessage);
-            requestBody.put("messages", messages);
-            
-            // Set parameters to control response
-            requestBody.put("temperature", 0.7);
-            requestBody.put("max_tokens", 100);
-            
-            // Make the API call to OpenAI
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            ResponseEntity<Map> response = restTemplate.postForEntity(apiUrl, entity, Map.class);
-            
-            // Parse the OpenAI response
-            Map responseBody = response.getBody();
-            if (responseBody != null && responseBody.containsKey("choices")) {
-                List<Map<String, Object>> choices = (List<Map<String, Object>>) responseBody.get("choices");
-                if (!choices.isEmpty()) {
-                    Map<String, Object> choice = choices.get(0);
-                    Map<String, String> message = (Map<String, String>) choice.get("message");
-                    String content = message.get("content");
-                    
-                    // Parse restaurant names from the response
-                    List<String> suggestions = Arrays.stream(content.split("\n"))
-                        .map(String::trim)
-                        .filter(s -> !s.isEmpty())
-                        .collect(Collectors.toList());
-                    
-                    logger.info("Generated {} suggestions using OpenAI API", suggestions.size());
-                    return new ChatGptResponse(suggestions, null);
-                }
+
+            List<String> suggestions;
+            AiRequestBatcher batcher = batcherProvider.getIfAvailable();
+            if (batcher != null) {
+                suggestions = batcher.submit(request.getPrompt(), request.getType()).get(batchWaitMs, TimeUnit.MILLISECONDS);
+            } else {
+                suggestions = parseSuggestions(openAiClient.complete(request.getType(), SYSTEM_PROMPT,
+                    "Suggest restaurants for this request: " + request.getPrompt(), MAX_TOKENS));
             }
-            
-            // If something went wrong with parsing the API response, use fallback
-            logger.warn("Could not parse OpenAI API response, using fallback");
+
+            logger.info("Generated {} suggestions using OpenAI API", suggestions.size());
+            return new ChatGptResponse(suggestions, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fallbackReason = "interrupted";
             return getFallbackSuggestions(request.getPrompt());
-            
         } catch (Exception e) {
-            logger.error("Error calling OpenAI API", e);
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            fallbackReason = fallbackReason(cause);
+            if (cause instanceof AiUnavailableException) {
+                logger.info("Skipping OpenAI API: {}", cause.getMessage());
+            } else {
+                logger.error("Error calling OpenAI API", cause);
+            }
             logger.info("Using fallback method for restaurant suggestions");
             return getFallbackSuggestions(request.getPrompt());
+        } finally {
+            metrics.recordCall(request.getType(), request.getRoomId(), request.getPrompt(), System.nanoTime() - started, fallbackReason);
+        }
+    }
+
+    // A small fixed set of reasons, so they can be used as a metric tag
+    static String fallbackReason(Throwable cause) {
+        if (cause instanceof AiUnavailableException unavailable) {
+            return unavailable.reason();
+        }
+        if (cause instanceof TimeoutException
+                || cause instanceof ResourceAccessException && cause.getCause() instanceof SocketTimeoutException) {
+            return "timeout";
+        }
+        if (cause instanceof HttpStatusCodeException http) {
+            int status = http.getStatusCode().value();
+            return status == 429 ? "rate_limited" : "http_" + status / 100 + "xx";
+        }
+        if (cause instanceof ResourceAccessException) {
+            return "connection";
         }
+        if (cause instanceof IllegalStateException) {
+            return "bad_response";
+        }
+        return "error";
+    }
+
+    static List<String> parseSuggestions(String content) {
+        return Arrays.stream(content.split("\n"))
+            .map(String::trim)
+            .filter(s -> !s.isEmpty())
+            .collect(Collectors.toList());
     }
     
     /**
@@ -0,0 +1,134 @@
+package com.example.finalproject.demo.service.impl;
+
+/**
+ * Count-based circuit breaker. The outcomes of the last {@code windowSize} calls
+ * are kept in a ring; once at least {@code minimumCalls} are recorded and either the
+ * failure rate or the slow-call rate reaches its threshold, the breaker opens and
+ * refuses calls for {@code openMs}. After that a few trial calls are let through
+ * (half-open): if they all succeed in time the breaker closes again, otherwise it
+ * reopens.
+ */
+final class CircuitBreaker {
+
+    enum State {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallMs;
+    private final long openMs;
+    private final int halfOpenCalls;
+
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int recorded;
+    private int next;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, double slowCallRateThreshold,
+                   long slowCallMs, long openMs, int halfOpenCalls) {
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.slowCallMs = slowCallMs;
+        this.openMs = openMs;
+        this.halfOpenCalls = halfOpenCalls;
+        this.failed = new boolean[windowSize];
+        this.slow = new boolean[windowSize];
+    }
+
+    /**
+     * Whether a call may go ahead now. Every permitted call must be followed by
+     * {@link #onSuccess} or {@link #onFailure}.
+     */
+    synchronized boolean tryAcquire(long nowMs) {
+        if (state == State.OPEN) {
+            if (nowMs - openedAt < openMs) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialsStarted = 0;
+            trialsSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted >= halfOpenCalls) {
+                return false;
+            }
+            trialsStarted++;
+        }
+        return true;
+    }
+
+    synchronized void onSuccess(long latencyMs, long nowMs) {
+        record(false, latencyMs, nowMs);
+    }
+
+    synchronized void onFailure(long latencyMs, long nowMs) {
+        record(true, latencyMs, nowMs);
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    synchronized double failureRate() {
+        return recorded == 0 ? 0 : (double) failures / recorded;
+    }
+
+    private void record(boolean failure, long latencyMs, long nowMs) {
+        boolean wasSlow = latencyMs >= slowCallMs;
+        if (state == State.HALF_OPEN) {
+            if (failure || wasSlow) {
+                open(nowMs);
+            } else if (++trialsSucceeded >= halfOpenCalls) {
+                close();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // A call that started before the breaker opened
+            return;
+        }
+
+        if (recorded == windowSize) {
+            failures -= failed[next] ? 1 : 0;
+            slowCalls -= slow[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failed[next] = failure;
+        slow[next] = wasSlow;
+        failures += failure ? 1 : 0;
+        slowCalls += wasSlow ? 1 : 0;
+        next = (next + 1) % windowSize;
+
+        if (recorded >= minimumCalls
+                && ((double) failures / recorded >= failureRateThreshold
+                    || (double) slowCalls / recorded >= slowCallRateThreshold)) {
+            open(nowMs);
+        }
+    }
+
+    private void open(long nowMs) {
+        state = State.OPEN;
+        openedAt = nowMs;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
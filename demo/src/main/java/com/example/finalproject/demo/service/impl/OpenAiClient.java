@@ -0,0 +1,185 @@
+package com.example.finalproject.demo.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The one place that talks to the chat completions API: sends a system and a user
+ * message and returns the first choice's content.
+ * <p>
+ * Every call passes an {@link AimdLimiter} on concurrent calls and a
+ * {@link CircuitBreaker} that opens on a high failure or slow-call rate. Only the
+ * upstream's own faults (5xx replies, timeouts and other I/O errors) count as
+ * failures there and shrink the limit; a 4xx or an unreadable reply says the request
+ * was wrong, not that the upstream is struggling. Either one
+ * refusing a call throws {@link AiUnavailableException} at once, so a struggling
+ * upstream costs callers their local fallback instead of a blocked thread.
+ * <p>
+ * Each request's latency, token usage and reply size go to {@link AiCallMetrics}
+ * under the caller's call type.
+ */
+@Component
+class OpenAiClient {
+    private static final Logger logger = LoggerFactory.getLogger(OpenAiClient.class);
+
+    private final RestTemplate restTemplate;
+    private final CircuitBreaker breaker;
+    private final AimdLimiter limiter;
+    private final AiCallMetrics metrics;
+    private final Counter breakerRejections;
+    private final Counter limiterRejections;
+
+    @Value("${chatgpt.api.key}")
+    private String apiKey;
+
+    @Value("${chatgpt.api.url}")
+    private String apiUrl;
+
+    @Value("${chatgpt.api.model}")
+    private String model;
+
+    OpenAiClient(RestTemplate restTemplate,
+                 MeterRegistry meterRegistry,
+                 AiCallMetrics metrics,
+                 @Value("${chatgpt.breaker.window-size:50}") int windowSize,
+                 @Value("${chatgpt.breaker.minimum-calls:10}") int minimumCalls,
+                 @Value("${chatgpt.breaker.failure-rate:0.5}") double failureRate,
+                 @Value("${chatgpt.breaker.slow-call-rate:0.8}") double slowCallRate,
+                 @Value("${chatgpt.breaker.slow-call-ms:5000}") long slowCallMs,
+                 @Value("${chatgpt.breaker.open-ms:15000}") long openMs,
+                 @Value("${chatgpt.breaker.half-open-calls:3}") int halfOpenCalls,
+                 @Value("${chatgpt.limiter.initial:8}") int initialLimit,
+                 @Value("${chatgpt.limiter.min:1}") int minLimit,
+                 @Value("${chatgpt.limiter.max:64}") int maxLimit,
+                 @Value("${chatgpt.limiter.target-latency-ms:3000}") long targetLatencyMs,
+                 @Value("${chatgpt.limiter.backoff:0.7}") double backoff) {
+        this.restTemplate = restTemplate;
+        this.metrics = metrics;
+        this.breaker = new CircuitBreaker(windowSize, minimumCalls, failureRate, slowCallRate, slowCallMs, openMs, halfOpenCalls);
+        this.limiter = new AimdLimiter(initialLimit, minLimit, maxLimit, targetLatencyMs, backoff);
+        this.breakerRejections = meterRegistry.counter("chatgpt.calls.rejected", "by", "breaker");
+        this.limiterRejections = meterRegistry.counter("chatgpt.calls.rejected", "by", "limiter");
+        Gauge.builder("chatgpt.breaker.state", breaker, b -> b.state().ordinal())
+            .description("0 closed, 1 half-open, 2 open")
+            .register(meterRegistry);
+        Gauge.builder("chatgpt.breaker.failure-rate", breaker, CircuitBreaker::failureRate)
+            .register(meterRegistry);
+        Gauge.builder("chatgpt.limiter.limit", limiter, AimdLimiter::limit)
+            .register(meterRegistry);
+        Gauge.builder("chatgpt.limiter.in-flight", limiter, AimdLimiter::inFlight)
+            .register(meterRegistry);
+    }
+
+    /**
+     * @param callType the call type the request is accounted under
+     * @return the reply's content
+     * @throws AiUnavailableException if the call was refused without reaching the upstream
+     * @throws RuntimeException       if the upstream call failed or its reply was unusable
+     */
+    String complete(String callType, String systemContent, String userContent, int maxTokens) {
+        if (!limiter.tryAcquire()) {
+            limiterRejections.increment();
+            throw new AiUnavailableException("limiter", "AI concurrency limit of " + limiter.limit() + " reached");
+        }
+        if (!breaker.tryAcquire(System.currentTimeMillis())) {
+            limiter.release(-1, false);
+            breakerRejections.increment();
+            throw new AiUnavailableException("breaker", "AI circuit breaker is open");
+        }
+
+        long started = System.nanoTime();
+        Completion completion = null;
+        boolean upstreamFault = false;
+        try {
+            completion = call(systemContent, userContent, maxTokens);
+            return completion.content;
+        } catch (HttpServerErrorException | ResourceAccessException e) {
+            upstreamFault = true;
+            throw e;
+        } finally {
+            long nanos = System.nanoTime() - started;
+            long latencyMs = TimeUnit.NANOSECONDS.toMillis(nanos);
+            if (upstreamFault) {
+                breaker.onFailure(latencyMs, System.currentTimeMillis());
+            } else {
+                breaker.onSuccess(latencyMs, System.currentTimeMillis());
+            }
+            if (completion == null) {
+                metrics.recordUpstream(callType, nanos, true, -1, -1, 0);
+            } else {
+                metrics.recordUpstream(callType, nanos, false, completion.promptTokens, completion.completionTokens,
+                    completion.content.getBytes(StandardCharsets.UTF_8).length);
+            }
+            limiter.release(latencyMs, upstreamFault);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Completion call(String systemContent, String userContent, int maxTokens) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(apiKey);
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", model);
+
+        List<Map<String, String>> messages = new ArrayList<>();
+        Map<String, String> systemMessage = new HashMap<>();
+        systemMessage.put("role", "system");
+        systemMessage.put("content", systemContent);
+        Map<String, String> userMessage = new HashMap<>();
+        userMessage.put("role", "user");
+        userMessage.put("content", userContent);
+        messages.add(systemMessage);
+        messages.add(userMessage);
+        requestBody.put("messages", messages);
+
+        // Set parameters to control response
+        requestBody.put("temperature", 0.7);
+        requestBody.put("max_tokens", maxTokens);
+
+        HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
+        ResponseEntity<Map> response = restTemplate.postForEntity(apiUrl, entity, Map.class);
+
+        Map responseBody = response.getBody();
+        if (responseBody != null && responseBody.containsKey("choices")) {
+            List<Map<String, Object>> choices = (List<Map<String, Object>>) responseBody.get("choices");
+            if (!choices.isEmpty()) {
+                Map<String, String> message = (Map<String, String>) choices.get(0).get("message");
+                if (message != null && message.get("content") != null) {
+                    Map<String, Object> usage = (Map<String, Object>) responseBody.get("usage");
+                    return new Completion(message.get("content"), tokens(usage, "prompt_tokens"),
+                        tokens(usage, "completion_tokens"));
+                }
+            }
+        }
+        logger.warn("Unexpected chat completions response: {}", responseBody);
+        throw new IllegalStateException("Could not parse OpenAI API response");
+    }
+
+    private static int tokens(Map<String, Object> usage, String key) {
+        return usage != null && usage.get(key) instanceof Number count ? count.intValue() : -1;
+    }
+
+    private record Completion(String content, int promptTokens, int completionTokens) {
+    }
+}
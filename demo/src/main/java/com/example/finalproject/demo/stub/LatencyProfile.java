@@ -0,0 +1,80 @@
+package com.example.finalproject.demo.stub;
+
+import java.util.Random;
+
+/**
+ * A scripted latency distribution for {@link OpenAiStubServer}, parsed from a short spec:
+ * <ul>
+ *   <li>{@code fixed:200} - always 200 ms</li>
+ *   <li>{@code uniform:100-400} - evenly between 100 and 400 ms</li>
+ *   <li>{@code lognormal:300,2000} - median 300 ms with a p99 of 2000 ms, the usual
+ *       long-tailed shape of a model API</li>
+ * </ul>
+ */
+public final class LatencyProfile {
+
+    // z-score of the 99th percentile of a standard normal
+    private static final double Z_99 = 2.3263;
+
+    private final String spec;
+    private final Kind kind;
+    private final double a;
+    private final double b;
+
+    private enum Kind {
+        FIXED, UNIFORM, LOGNORMAL
+    }
+
+    private LatencyProfile(String spec, Kind kind, double a, double b) {
+        this.spec = spec;
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+    }
+
+    public static LatencyProfile fixed(long millis) {
+        return new LatencyProfile("fixed:" + millis, Kind.FIXED, millis, 0);
+    }
+
+    public static LatencyProfile parse(String spec) {
+        String trimmed = spec.trim();
+        int colon = trimmed.indexOf(':');
+        if (colon < 0) {
+            return fixed(Long.parseLong(trimmed));
+        }
+        String kind = trimmed.substring(0, colon);
+        String[] args = trimmed.substring(colon + 1).split("[-,]");
+        switch (kind) {
+            case "fixed":
+                return new LatencyProfile(trimmed, Kind.FIXED, Double.parseDouble(args[0]), 0);
+            case "uniform":
+                return new LatencyProfile(trimmed, Kind.UNIFORM, Double.parseDouble(args[0]), Double.parseDouble(args[1]));
+            case "lognormal": {
+                double median = Double.parseDouble(args[0]);
+                double p99 = Double.parseDouble(args[1]);
+                if (median <= 0 || p99 < median) {
+                    throw new IllegalArgumentException("lognormal needs 0 < median <= p99: " + spec);
+                }
+                return new LatencyProfile(trimmed, Kind.LOGNORMAL, Math.log(median), Math.log(p99 / median) / Z_99);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown latency profile: " + spec);
+        }
+    }
+
+    public long sampleMillis(Random random) {
+        switch (kind) {
+            case UNIFORM:
+                return Math.round(a + random.nextDouble() * (b - a));
+            case LOGNORMAL:
+                return Math.round(Math.exp(a + b * random.nextGaussian()));
+            default:
+                return Math.round(a);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
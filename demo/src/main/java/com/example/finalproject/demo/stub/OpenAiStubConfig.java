@@ -0,0 +1,34 @@
+package com.example.finalproject.demo.stub;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.io.IOException;
+
+/**
+ * Runs {@link OpenAiStubServer} next to the application under the {@code fake-ai}
+ * profile. Point {@code chatgpt.api.url} at
+ * {@code http://127.0.0.1:<fake-ai.port>/v1/chat/completions} (any API key works).
+ */
+@Configuration
+@Profile("fake-ai")
+public class OpenAiStubConfig {
+
+    @Bean(destroyMethod = "stop")
+    public OpenAiStubServer openAiStubServer(@Value("${fake-ai.port:8089}") int port,
+                                             @Value("${fake-ai.seed:42}") long seed,
+                                             @Value("${fake-ai.latency:lognormal:300,2000}") String latency,
+                                             @Value("${fake-ai.per-prompt-latency:fixed:20}") String perPromptLatency,
+                                             @Value("${fake-ai.error-rate:0.0}") double errorRate,
+                                             @Value("${fake-ai.error-status:500}") int errorStatus,
+                                             @Value("${fake-ai.stream-chunk-delay-ms:10}") int streamChunkDelayMs) throws IOException {
+        return new OpenAiStubServer(port, seed)
+            .latency(LatencyProfile.parse(latency))
+            .perPromptLatency(LatencyProfile.parse(perPromptLatency))
+            .errorRate(errorRate, errorStatus)
+            .streamChunkDelayMs(streamChunkDelayMs)
+            .start();
+    }
+}
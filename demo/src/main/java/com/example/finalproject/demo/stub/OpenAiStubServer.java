@@ -0,0 +1,332 @@
+package com.example.finalproject.demo.stub;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An OpenAI-compatible {@code chat/completions} endpoint on the JDK's built-in HTTP
+ * server, for exercising the AI paths without network access or API credits. It runs
+ * as a test fixture ({@code new OpenAiStubServer(0).start()}, then point
+ * {@code chatgpt.api.url} at {@link #completionsUrl()}) or inside the application
+ * under the {@code fake-ai} profile.
+ * <p>
+ * Replies follow a scripted {@link LatencyProfile} and fail with
+ * {@code errorStatus} at {@code errorRate}; with a fixed seed a run is reproducible.
+ * Numbered batch prompts ({@code ### n}) are answered section by section, requests
+ * with {@code "stream": true} get server-sent chunks, and every request is logged and
+ * kept (the most recent ones) for assertions. {@code GET /stats} returns the counters.
+ */
+public class OpenAiStubServer {
+    private static final Logger logger = LoggerFactory.getLogger(OpenAiStubServer.class);
+
+    public static final String COMPLETIONS_PATH = "/v1/chat/completions";
+    private static final Pattern SECTION_HEADER = Pattern.compile("(?m)^###\\s*(\\d+)\\s*$");
+    private static final int RECENT_REQUESTS = 256;
+    private static final List<String> RESTAURANTS = List.of(
+        "Golden Dragon", "Luigi's Trattoria", "Taqueria El Sol", "Sakura Sushi", "The Burger Joint",
+        "Spice Route", "Le Petit Bistro", "Smokehouse BBQ", "Green Bowl", "Noodle Bar",
+        "Olive & Vine", "Seoul Kitchen", "Pho Saigon", "Casa Tapas", "Harbor Fish House");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int port;
+    private final Random random;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong prompts = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final Deque<JsonNode> received = new ArrayDeque<>();
+
+    private volatile LatencyProfile latency = LatencyProfile.fixed(0);
+    private volatile LatencyProfile perPromptLatency = LatencyProfile.fixed(0);
+    private volatile double errorRate;
+    private volatile int errorStatus = 500;
+    private volatile int streamChunkDelayMs = 10;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param port the port to listen on, or 0 for any free port
+     */
+    public OpenAiStubServer(int port) {
+        this(port, System.nanoTime());
+    }
+
+    public OpenAiStubServer(int port, long seed) {
+        this.port = port;
+        this.random = new Random(seed);
+    }
+
+    public OpenAiStubServer latency(LatencyProfile latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Extra latency for every prompt in a request, on top of {@link #latency}.
+     */
+    public OpenAiStubServer perPromptLatency(LatencyProfile perPromptLatency) {
+        this.perPromptLatency = perPromptLatency;
+        return this;
+    }
+
+    public OpenAiStubServer errorRate(double errorRate, int errorStatus) {
+        this.errorRate = errorRate;
+        this.errorStatus = errorStatus;
+        return this;
+    }
+
+    public OpenAiStubServer streamChunkDelayMs(int streamChunkDelayMs) {
+        this.streamChunkDelayMs = streamChunkDelayMs;
+        return this;
+    }
+
+    public synchronized OpenAiStubServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "openai-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(COMPLETIONS_PATH, this::handleCompletions);
+        server.createContext("/stats", this::handleStats);
+        server.start();
+        logger.info("OpenAI stub listening on {} (latency {}, error rate {})", completionsUrl(), latency, errorRate);
+        return this;
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public String completionsUrl() {
+        return "http://127.0.0.1:" + port() + COMPLETIONS_PATH;
+    }
+
+    public long requestCount() {
+        return requests.get();
+    }
+
+    public long promptCount() {
+        return prompts.get();
+    }
+
+    public long errorCount() {
+        return errors.get();
+    }
+
+    /**
+     * The most recent request bodies, oldest first.
+     */
+    public List<JsonNode> receivedRequests() {
+        synchronized (received) {
+            return new ArrayList<>(received);
+        }
+    }
+
+    private void handleCompletions(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "{\"error\":{\"message\":\"Use POST\"}}");
+                return;
+            }
+            JsonNode body = objectMapper.readTree(exchange.getRequestBody());
+            remember(body);
+            String user = lastUserMessage(body);
+            List<Integer> sections = sections(user);
+            int promptCount = Math.max(1, sections.size());
+            requests.incrementAndGet();
+            prompts.addAndGet(promptCount);
+            logger.info("OpenAI stub received {} prompt(s), model {}, max_tokens {}",
+                promptCount, body.path("model").asText(), body.path("max_tokens").asInt());
+
+            long delay;
+            boolean fail;
+            synchronized (random) {
+                delay = latency.sampleMillis(random);
+                for (int i = 0; i < promptCount; i++) {
+                    delay += perPromptLatency.sampleMillis(random);
+                }
+                fail = random.nextDouble() < errorRate;
+            }
+            sleep(delay);
+
+            if (fail) {
+                errors.incrementAndGet();
+                send(exchange, errorStatus, "{\"error\":{\"message\":\"Scripted stub failure\",\"type\":\"server_error\"}}");
+                return;
+            }
+
+            String content = reply(user, sections);
+            if (body.path("stream").asBoolean(false)) {
+                stream(exchange, body, content);
+            } else {
+                send(exchange, 200, objectMapper.writeValueAsString(completion(body, user, content)));
+            }
+        } catch (RuntimeException e) {
+            logger.warn("OpenAI stub could not handle a request", e);
+            send(exchange, 400, "{\"error\":{\"message\":\"Bad request\"}}");
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            ObjectNode stats = objectMapper.createObjectNode();
+            stats.put("requests", requests.get());
+            stats.put("prompts", prompts.get());
+            stats.put("errors", errors.get());
+            send(exchange, 200, objectMapper.writeValueAsString(stats));
+        }
+    }
+
+    private ObjectNode completion(JsonNode request, String user, String content) {
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("id", "chatcmpl-stub-" + requests.get());
+        response.put("object", "chat.completion");
+        response.put("created", System.currentTimeMillis() / 1000);
+        response.put("model", request.path("model").asText("stub"));
+        ArrayNode choices = response.putArray("choices");
+        ObjectNode choice = choices.addObject();
+        choice.put("index", 0);
+        ObjectNode message = choice.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", content);
+        choice.put("finish_reason", "stop");
+        ObjectNode usage = response.putObject("usage");
+        int promptTokens = estimateTokens(request.path("messages").toString());
+        int completionTokens = estimateTokens(content);
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", promptTokens + completionTokens);
+        return response;
+    }
+
+    // One chunk per line of the reply, as chat.completion.chunk server-sent events
+    private void stream(HttpExchange exchange, JsonNode request, String content) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        String[] lines = content.split("(?<=\n)");
+        for (int i = 0; i <= lines.length; i++) {
+            ObjectNode chunk = objectMapper.createObjectNode();
+            chunk.put("id", "chatcmpl-stub-" + requests.get());
+            chunk.put("object", "chat.completion.chunk");
+            chunk.put("model", request.path("model").asText("stub"));
+            ObjectNode choice = chunk.putArray("choices").addObject();
+            choice.put("index", 0);
+            ObjectNode delta = choice.putObject("delta");
+            if (i < lines.length) {
+                if (i == 0) {
+                    delta.put("role", "assistant");
+                }
+                delta.put("content", lines[i]);
+                choice.putNull("finish_reason");
+            } else {
+                choice.put("finish_reason", "stop");
+            }
+            out.write(("data: " + objectMapper.writeValueAsString(chunk) + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            sleep(streamChunkDelayMs);
+        }
+        out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private String reply(String user, List<Integer> sections) {
+        StringBuilder content = new StringBuilder();
+        if (sections.isEmpty()) {
+            appendNames(content, user.hashCode());
+        }
+        for (int section : sections) {
+            content.append("### ").append(section).append('\n');
+            appendNames(content, user.hashCode() + section);
+        }
+        return content.toString();
+    }
+
+    private static void appendNames(StringBuilder content, int seed) {
+        int start = Math.floorMod(seed, RESTAURANTS.size());
+        for (int i = 0; i < 5; i++) {
+            content.append(RESTAURANTS.get((start + i) % RESTAURANTS.size())).append('\n');
+        }
+    }
+
+    private static List<Integer> sections(String user) {
+        List<Integer> sections = new ArrayList<>();
+        Matcher header = SECTION_HEADER.matcher(user);
+        while (header.find()) {
+            sections.add(Integer.parseInt(header.group(1)));
+        }
+        return sections;
+    }
+
+    private static String lastUserMessage(JsonNode body) {
+        String user = "";
+        for (JsonNode message : body.path("messages")) {
+            if ("user".equals(message.path("role").asText())) {
+                user = message.path("content").asText();
+            }
+        }
+        return user;
+    }
+
+    private static int estimateTokens(String text) {
+        return (text.length() + 3) / 4;
+    }
+
+    private void remember(JsonNode body) {
+        synchronized (received) {
+            received.addLast(body);
+            if (received.size() > RECENT_REQUESTS) {
+                received.removeFirst();
+            }
+        }
+    }
+
+    private void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
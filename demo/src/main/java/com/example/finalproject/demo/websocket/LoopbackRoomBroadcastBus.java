@@ -0,0 +1,29 @@
+package com.example.finalproject.demo.websocket;
+
+import com.example.finalproject.demo.dto.RoomMessage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Single-node bus: frames go straight to this node's subscribers. Used by default and
+ * in tests.
+ */
+@Component
+@ConditionalOnProperty(name = "room.bus.mode", havingValue = "loopback", matchIfMissing = true)
+public class LoopbackRoomBroadcastBus implements RoomBroadcastBus {
+
+    private volatile FrameDelivery delivery;
+
+    @Override
+    public void publish(String inviteCode, long sequence, RoomMessage message) {
+        FrameDelivery target = delivery;
+        if (target != null) {
+            target.deliver(inviteCode, sequence, message, false);
+        }
+    }
+
+    @Override
+    public void setDelivery(FrameDelivery delivery) {
+        this.delivery = delivery;
+    }
+}
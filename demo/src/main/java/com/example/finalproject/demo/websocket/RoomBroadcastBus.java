@@ -0,0 +1,28 @@
+package com.example.finalproject.demo.websocket;
+
+import com.example.finalproject.demo.dto.RoomMessage;
+
+/**
+ * Carries sequenced room frames to every backend node that has subscribers for the
+ * room, including this one. {@link RoomBroadcaster} publishes here and registers the
+ * local delivery callback; implementations decide how frames reach other nodes.
+ */
+public interface RoomBroadcastBus {
+
+    /**
+     * Delivers the frame locally and to each other node interested in the room, at
+     * most once per node regardless of how many subscribers it has there.
+     */
+    void publish(String inviteCode, long sequence, RoomMessage message);
+
+    void setDelivery(FrameDelivery delivery);
+
+    @FunctionalInterface
+    interface FrameDelivery {
+        /**
+         * @param remote true when the frame was sequenced on another node and has not
+         *               been recorded in this node's replay buffer yet
+         */
+        void deliver(String inviteCode, long sequence, RoomMessage message, boolean remote);
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.finalproject.demo.websocket;
+
+import com.example.finalproject.demo.dto.RoomMessage;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * A room frame requested inside a transaction, held until the transaction completes.
+ */
+public class RoomBroadcastEvent extends ApplicationEvent {
+    private final String inviteCode;
+    private final RoomMessage message;
+
+    public RoomBroadcastEvent(Object source, String inviteCode, RoomMessage message) {
+        super(source);
+        this.inviteCode = inviteCode;
+        this.message = message;
+    }
+
+    public String getInviteCode() {
+        return inviteCode;
+    }
+
+    public RoomMessage getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.finalproject.demo.websocket;
+
+import com.example.finalproject.demo.cluster.RoomCluster;
+import com.example.finalproject.demo.cluster.RoomMutationRouter;
+import com.example.finalproject.demo.dto.RoomMessage;
+import com.example.finalproject.demo.dto.RoomMessageType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single outbound path for {@code /topic/room/{inviteCode}}. Every frame is stamped
+ * with a per-room sequence number and kept in the {@link RoomReplayBuffer}.
+ * <p>
+ * UPDATE frames are coalesced: the first one opens a short window per room and any
+ * further UPDATEs arriving inside it are merged into a single outbound frame. Any
+ * other frame type flushes the pending UPDATE and goes out immediately, so
+ * SELECTION and VOTE results are never delayed or reordered.
+ * <p>
+ * Frames leave through the {@link RoomBroadcastBus}, which hands them back to
+ * {@link #deliver} on this node and on every other node with subscribers in the room.
+ * Only the room's owner node numbers its frames: with clustering on, a frame raised
+ * on any other node is forwarded to the owner through the {@link RoomMutationRouter}
+ * and sequenced there, so two nodes never hand out the same sequence number. Each
+ * owner node has its own forwarding lane, a single thread working through a queue, so
+ * a room's frames reach the owner in order and a slow or dead owner only holds up the
+ * rooms it owns.
+ * <p>
+ * Broadcasts are not sent on the caller's thread. They go into an outbox drained by a
+ * single publisher thread, in call order. A broadcast requested inside a transaction
+ * enters the outbox only once that transaction commits and is discarded on rollback,
+ * so clients never see state that was not persisted, and the transaction does not
+ * stay open while frames are serialized and sent.
+ */
+@Component
+public class RoomBroadcaster {
+    public static final String ROOM_TOPIC_PREFIX = "/topic/room/";
+    static final String OP_BROADCAST = "broadcast";
+
+    private static final Logger logger = LoggerFactory.getLogger(RoomBroadcaster.class);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final RoomReplayBuffer replayBuffer;
+    private final RoomBroadcastBus bus;
+    private final RoomCluster cluster;
+    private final RoomMutationRouter mutationRouter;
+    private final long coalesceWindowMs;
+    private final int forwardQueueCapacity;
+    private final Counter framesSent;
+    private final Counter updatesCoalesced;
+    private final Counter discardedOnRollback;
+    private final Counter forwardFailures;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final BlockingQueue<RoomBroadcastEvent> outbox = new LinkedBlockingQueue<>();
+    private final Thread publisher;
+    private volatile boolean running = true;
+
+    // inviteCode -> UPDATE waiting for its window to close; guarded by the room's ring
+    private final Map<String, RoomMessage> pendingUpdates = new ConcurrentHashMap<>();
+    // owner node id -> its forwarding lane
+    private final Map<String, ThreadPoolExecutor> forwardLanes = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "room-broadcast");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RoomBroadcaster(SimpMessagingTemplate messagingTemplate,
+                           RoomReplayBuffer replayBuffer,
+                           RoomBroadcastBus bus,
+                           RoomCluster cluster,
+                           RoomMutationRouter mutationRouter,
+                           ApplicationEventPublisher eventPublisher,
+                           MeterRegistry meterRegistry,
+                           @Value("${room.broadcast.coalesce-window-ms:50}") long coalesceWindowMs,
+                           @Value("${room.broadcast.forward-queue-capacity:10000}") int forwardQueueCapacity) {
+        this.messagingTemplate = messagingTemplate;
+        this.replayBuffer = replayBuffer;
+        this.bus = bus;
+        this.cluster = cluster;
+        this.mutationRouter = mutationRouter;
+        this.eventPublisher = eventPublisher;
+        this.coalesceWindowMs = coalesceWindowMs;
+        this.forwardQueueCapacity = forwardQueueCapacity;
+        this.framesSent = meterRegistry.counter("room.broadcast.frames");
+        this.updatesCoalesced = meterRegistry.counter("room.broadcast.coalesced");
+        this.discardedOnRollback = meterRegistry.counter("room.broadcast.rolled-back");
+        this.forwardFailures = meterRegistry.counter("room.broadcast.forward-failures");
+        meterRegistry.gauge("room.broadcast.outbox", outbox, BlockingQueue::size);
+        bus.setDelivery(this::deliver);
+
+        this.publisher = new Thread(this::drainOutbox, "room-outbox");
+        this.publisher.setDaemon(true);
+        this.publisher.start();
+    }
+
+    @PostConstruct
+    void registerRoomOperations() {
+        mutationRouter.register(OP_BROADCAST, RoomMessage.class, (inviteCode, message) -> {
+            sequenceAndSend(inviteCode, message);
+            return Boolean.TRUE;
+        });
+        if (!(bus instanceof LoopbackRoomBroadcastBus) && !cluster.isEnabled()) {
+            logger.warn("Room frames are shared between nodes but room.cluster.enabled=false: "
+                + "every node numbers frames on its own, so replay across nodes is unreliable");
+        }
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        running = false;
+        publisher.interrupt();
+        publisher.join(1000);
+        scheduler.shutdown();
+        forwardLanes.values().forEach(ThreadPoolExecutor::shutdown);
+    }
+
+    /**
+     * Queues a frame for the room. Inside a transaction it is held back until commit.
+     */
+    public void broadcast(String inviteCode, RoomMessage message) {
+        RoomBroadcastEvent event = new RoomBroadcastEvent(this, inviteCode, message);
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            eventPublisher.publishEvent(event);
+        } else {
+            outbox.add(event);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCommitted(RoomBroadcastEvent event) {
+        outbox.add(event);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void onRolledBack(RoomBroadcastEvent event) {
+        discardedOnRollback.increment();
+        logger.debug("Dropped {} broadcast for room {} after rollback", event.getMessage().getType(), event.getInviteCode());
+    }
+
+    private void drainOutbox() {
+        while (running || !outbox.isEmpty()) {
+            RoomBroadcastEvent event;
+            try {
+                event = outbox.take();
+            } catch (InterruptedException e) {
+                if (outbox.isEmpty()) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                publish(event.getInviteCode(), event.getMessage());
+            } catch (Exception e) {
+                logger.error("Error broadcasting to room {}", event.getInviteCode(), e);
+            }
+        }
+    }
+
+    private void publish(String inviteCode, RoomMessage message) {
+        if (cluster.isEnabled() && !cluster.isLocal(inviteCode)) {
+            forward(inviteCode, message);
+        } else {
+            sequenceAndSend(inviteCode, message);
+        }
+    }
+
+    // Queued on the owner's lane; the lane waits for each call (bounded by the RPC
+    // timeout) so the room's frames keep their order
+    private void forward(String inviteCode, RoomMessage message) {
+        String owner = cluster.ownerOf(inviteCode);
+        try {
+            forwardLanes.computeIfAbsent(owner, this::newForwardLane).execute(() -> {
+                try {
+                    mutationRouter.execute(inviteCode, OP_BROADCAST, message, Boolean.class);
+                } catch (IllegalStateException e) {
+                    forwardFailures.increment();
+                    logger.warn("Could not hand {} frame for room {} to its owner: {}",
+                        message.getType(), inviteCode, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            forwardFailures.increment();
+            logger.warn("Forwarding queue for node {} is full, dropped {} frame for room {}",
+                owner, message.getType(), inviteCode);
+        }
+    }
+
+    private ThreadPoolExecutor newForwardLane(String owner) {
+        ThreadPoolExecutor lane = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(forwardQueueCapacity), r -> {
+                Thread thread = new Thread(r, "room-forward-" + owner);
+                thread.setDaemon(true);
+                return thread;
+            });
+        // Lanes of nodes that left the cluster do not keep a thread
+        lane.allowCoreThreadTimeOut(true);
+        return lane;
+    }
+
+    private void sequenceAndSend(String inviteCode, RoomMessage message) {
+        RoomReplayBuffer.Ring ring = replayBuffer.ring(inviteCode);
+        synchronized (ring) {
+            if (message.getType() == RoomMessageType.UPDATE && coalesceWindowMs > 0) {
+                RoomMessage pending = pendingUpdates.get(inviteCode);
+                if (pending != null) {
+                    merge(pending, message);
+                    updatesCoalesced.increment();
+                } else {
+                    pendingUpdates.put(inviteCode, message);
+                    scheduler.schedule(() -> flush(inviteCode), coalesceWindowMs, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+
+            RoomMessage pending = pendingUpdates.remove(inviteCode);
+            if (pending != null) {
+                send(ring, inviteCode, pending);
+            }
+            send(ring, inviteCode, message);
+        }
+    }
+
+    private void flush(String inviteCode) {
+        RoomReplayBuffer.Ring ring = replayBuffer.ring(inviteCode);
+        synchronized (ring) {
+            RoomMessage pending = pendingUpdates.remove(inviteCode);
+            if (pending != null) {
+                try {
+                    send(ring, inviteCode, pending);
+                } catch (Exception e) {
+                    logger.error("Error flushing coalesced update for room {}", inviteCode, e);
+                }
+            }
+        }
+    }
+
+    private void send(RoomReplayBuffer.Ring ring, String inviteCode, RoomMessage message) {
+        long sequence = ring.append(message);
+        bus.publish(inviteCode, sequence, message);
+    }
+
+    /**
+     * Writes a sequenced frame to this node's subscribers. Frames sequenced on another
+     * node are recorded in the local replay buffer first so resync works here too.
+     */
+    private void deliver(String inviteCode, long sequence, RoomMessage message, boolean remote) {
+        if (remote) {
+            RoomReplayBuffer.Ring ring = replayBuffer.ring(inviteCode);
+            synchronized (ring) {
+                ring.record(message, sequence);
+                convertAndSend(inviteCode, sequence, message);
+            }
+        } else {
+            convertAndSend(inviteCode, sequence, message);
+        }
+    }
+
+    private void convertAndSend(String inviteCode, long sequence, RoomMessage message) {
+        messagingTemplate.convertAndSend(ROOM_TOPIC_PREFIX + inviteCode, message, frameHeaders(message, sequence));
+        framesSent.increment();
+    }
+
+    /**
+     * Native headers describing the frame, so outbound backpressure can tell stale
+     * room updates apart without deserializing the payload.
+     */
+    private static Map<String, Object> frameHeaders(RoomMessage message, long sequence) {
+        Map<String, Object> headers = new HashMap<>(8);
+        headers.put(SlowConsumerGuard.FRAME_TYPE_HEADER, message.getType().name());
+        headers.put(SlowConsumerGuard.SEQUENCE_HEADER, Long.toString(sequence));
+        headers.put(SlowConsumerGuard.SNAPSHOT_HEADER,
+            Boolean.toString(RoomReplayBuffer.Ring.isSnapshot(message)));
+        headers.put(SlowConsumerGuard.SENT_AT_HEADER, Long.toString(System.currentTimeMillis()));
+        return headers;
+    }
+
+    /**
+     * Folds a later UPDATE into the pending one. Fields the later frame leaves null
+     * (e.g. suggestions on a presence-only update) keep their pending value.
+     */
+    private static void merge(RoomMessage pending, RoomMessage update) {
+        if (update.getParticipants() != null) {
+            pending.setParticipants(update.getParticipants());
+        }
+        if (update.getParticipantCount() != null) {
+            pending.setParticipantCount(update.getParticipantCount());
+        }
+        if (update.getIsReady() != null) {
+            pending.setIsReady(update.getIsReady());
+        }
+        if (update.getRestaurantSuggestions() != null) {
+            pending.setRestaurantSuggestions(update.getRestaurantSuggestions());
+        }
+        if (update.getRoomCode() != null) {
+            pending.setRoomCode(update.getRoomCode());
+        }
+        if (update.getMessage() != null) {
+            pending.setMessage(update.getMessage());
+        }
+    }
+}
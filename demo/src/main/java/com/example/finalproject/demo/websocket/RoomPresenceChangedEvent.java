@@ -0,0 +1,26 @@
+package com.example.finalproject.demo.websocket;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when a participant is removed from a room because their sessions went
+ * away, so anything waiting on the participant count can re-evaluate.
+ */
+public class RoomPresenceChangedEvent extends ApplicationEvent {
+    private final String inviteCode;
+    private final int liveParticipantCount;
+
+    public RoomPresenceChangedEvent(Object source, String inviteCode, int liveParticipantCount) {
+        super(source);
+        this.inviteCode = inviteCode;
+        this.liveParticipantCount = liveParticipantCount;
+    }
+
+    public String getInviteCode() {
+        return inviteCode;
+    }
+
+    public int getLiveParticipantCount() {
+        return liveParticipantCount;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.finalproject.demo.websocket;
+
+import com.example.finalproject.demo.dto.RoomMessage;
+import com.example.finalproject.demo.service.RoomService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks which users are live in which rooms, driven by STOMP session events.
+ * <p>
+ * A user is present in a room while at least one of their sessions is subscribed to
+ * {@code /topic/room/{inviteCode}}. When the last one goes away the user gets a grace
+ * period to reconnect before being removed from the room. Presence changes are
+ * broadcast in batches rather than once per event.
+ */
+@Component
+@RequiredArgsConstructor
+public class RoomPresenceRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(RoomPresenceRegistry.class);
+    private static final String ROOM_TOPIC_PREFIX = RoomBroadcaster.ROOM_TOPIC_PREFIX;
+
+    private final RoomService roomService;
+    private final RoomBroadcaster roomBroadcaster;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${room.presence.grace-period-ms:15000}")
+    private long gracePeriodMs;
+
+    @Value("${room.presence.broadcast-interval-ms:250}")
+    private long broadcastIntervalMs;
+
+    // sessionId -> session state
+    private final Map<String, SessionPresence> sessions = new ConcurrentHashMap<>();
+    // inviteCode -> (userId -> live participant)
+    private final Map<String, Map<Long, Participant>> rooms = new ConcurrentHashMap<>();
+    // "inviteCode:userId" -> pending auto-leave
+    private final Map<String, ScheduledFuture<?>> pendingLeaves = new ConcurrentHashMap<>();
+    private final Set<String> dirtyRooms = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "room-presence");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void start() {
+        scheduler.scheduleWithFixedDelay(this::flushPresence, broadcastIntervalMs, broadcastIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        RoomPrincipal user = asRoomPrincipal(event.getUser());
+        if (sessionId != null && user != null) {
+            sessions.put(sessionId, new SessionPresence(user));
+        }
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String inviteCode = roomCodeOf(accessor.getDestination());
+        SessionPresence session = accessor.getSessionId() != null ? sessions.get(accessor.getSessionId()) : null;
+        if (inviteCode == null || session == null) {
+            return;
+        }
+
+        if (session.subscriptions.put(accessor.getSubscriptionId(), inviteCode) == null) {
+            enter(inviteCode, session.user);
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        SessionPresence session = accessor.getSessionId() != null ? sessions.get(accessor.getSessionId()) : null;
+        if (session == null) {
+            return;
+        }
+
+        String inviteCode = session.subscriptions.remove(accessor.getSubscriptionId());
+        if (inviteCode != null) {
+            exit(inviteCode, session.user);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        SessionPresence session = sessions.remove(event.getSessionId());
+        if (session == null) {
+            return;
+        }
+
+        for (String inviteCode : session.subscriptions.values()) {
+            exit(inviteCode, session.user);
+        }
+    }
+
+    /**
+     * Explicit leave: forgets the user's presence immediately, without a grace period.
+     * The caller is responsible for removing the user from the persisted room.
+     */
+    public void leave(String inviteCode, Long userId) {
+        cancelPendingLeave(inviteCode, userId);
+        Map<Long, Participant> participants = rooms.get(inviteCode);
+        if (participants != null && participants.remove(userId) != null) {
+            dirtyRooms.add(inviteCode);
+        }
+    }
+
+    /**
+     * Number of distinct users currently connected to the room, or empty when no
+     * session has ever subscribed to it on this node (e.g. REST-only usage).
+     */
+    public OptionalInt liveParticipantCount(String inviteCode) {
+        Map<Long, Participant> participants = rooms.get(inviteCode);
+        return participants == null ? OptionalInt.empty() : OptionalInt.of(participants.size());
+    }
+
+    public List<String> liveParticipants(String inviteCode) {
+        Map<Long, Participant> participants = rooms.get(inviteCode);
+        if (participants == null) {
+            return List.of();
+        }
+        List<String> names = new ArrayList<>(participants.size());
+        for (Participant participant : participants.values()) {
+            names.add(participant.username);
+        }
+        return names;
+    }
+
+    // Session counts are only read and written inside compute on the participant's
+    // entry, so an enter and an exit of the same user cannot interleave
+    private void enter(String inviteCode, RoomPrincipal user) {
+        Map<Long, Participant> participants = rooms.computeIfAbsent(inviteCode, k -> new ConcurrentHashMap<>());
+        participants.compute(user.getUserId(), (id, existing) -> {
+            Participant p = existing != null ? existing : new Participant(user.getName());
+            if (++p.sessions == 1) {
+                cancelPendingLeave(inviteCode, id);
+                dirtyRooms.add(inviteCode);
+            }
+            return p;
+        });
+    }
+
+    private void exit(String inviteCode, RoomPrincipal user) {
+        Map<Long, Participant> participants = rooms.get(inviteCode);
+        if (participants == null) {
+            return;
+        }
+
+        participants.computeIfPresent(user.getUserId(), (id, p) -> {
+            if (--p.sessions <= 0) {
+                pendingLeaves.compute(leaveKey(inviteCode, id), (key, previous) -> {
+                    if (previous != null) {
+                        previous.cancel(false);
+                    }
+                    return scheduler.schedule(() -> expire(inviteCode, id), gracePeriodMs, TimeUnit.MILLISECONDS);
+                });
+            }
+            return p;
+        });
+    }
+
+    private void expire(String inviteCode, Long userId) {
+        pendingLeaves.remove(leaveKey(inviteCode, userId));
+        Map<Long, Participant> participants = rooms.get(inviteCode);
+        if (participants == null) {
+            return;
+        }
+
+        Participant removed = participants.computeIfPresent(userId, (id, p) -> p.sessions > 0 ? p : null);
+        if (removed != null) {
+            return; // reconnected during the grace period
+        }
+
+        logger.info("User {} did not return to room {} within {} ms, removing", userId, inviteCode, gracePeriodMs);
+        try {
+            roomService.removeUserFromRoom(inviteCode, userId);
+        } catch (Exception e) {
+            logger.error("Error removing user {} from room {}", userId, inviteCode, e);
+        }
+        dirtyRooms.add(inviteCode);
+        eventPublisher.publishEvent(new RoomPresenceChangedEvent(this, inviteCode, participants.size()));
+    }
+
+    private void flushPresence() {
+        if (dirtyRooms.isEmpty()) {
+            return;
+        }
+
+        for (String inviteCode : new ArrayList<>(dirtyRooms)) {
+            dirtyRooms.remove(inviteCode);
+            try {
+                List<String> participants = liveParticipants(inviteCode);
+                roomBroadcaster.broadcast(inviteCode, RoomMessage.createPresenceMessage(inviteCode, participants));
+            } catch (Exception e) {
+                logger.error("Error broadcasting presence for room {}", inviteCode, e);
+            }
+        }
+    }
+
+    private void cancelPendingLeave(String inviteCode, Long userId) {
+        ScheduledFuture<?> pending = pendingLeaves.remove(leaveKey(inviteCode, userId));
+        if (pending != null) {
+            pending.cancel(false);
+        }
+    }
+
+    private static String leaveKey(String inviteCode, Long userId) {
+        return inviteCode + ":" + userId;
+    }
+
+    private static String roomCodeOf(String destination) {
+        if (destination == null || !destination.startsWith(ROOM_TOPIC_PREFIX)) {
+            return null;
+        }
+        String code = destination.substring(ROOM_TOPIC_PREFIX.length());
+        return code.isEmpty() || code.indexOf('/') >= 0 ? null : code;
+    }
+
+    private static RoomPrincipal asRoomPrincipal(Principal principal) {
+        return principal instanceof RoomPrincipal ? (RoomPrincipal) principal : null;
+    }
+
+    private static final class SessionPresence {
+        private final RoomPrincipal user;
+        // subscriptionId -> inviteCode
+        private final Map<String, String> subscriptions = new ConcurrentHashMap<>();
+
+        private SessionPresence(RoomPrincipal user) {
+            this.user = user;
+        }
+    }
+
+    private static final class Participant {
+        private final String username;
+        private int sessions;
+
+        private Participant(String username) {
+            this.username = username;
+        }
+    }
+}
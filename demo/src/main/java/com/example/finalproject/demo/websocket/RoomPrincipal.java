@@ -0,0 +1,35 @@
+package com.example.finalproject.demo.websocket;
+
+import com.example.finalproject.demo.model.User;
+
+import java.security.Principal;
+
+/**
+ * Identity bound to a STOMP session at CONNECT time. Message handlers receive it
+ * as the session user, so join/leave frames no longer need to carry a user payload.
+ */
+public class RoomPrincipal implements Principal {
+    private final User user;
+
+    public RoomPrincipal(User user) {
+        this.user = user;
+    }
+
+    public Long getUserId() {
+        return user.getId();
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    @Override
+    public String getName() {
+        return user.getUsername();
+    }
+
+    @Override
+    public String toString() {
+        return "RoomPrincipal{" + user.getId() + ", " + user.getUsername() + "}";
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.finalproject.demo.websocket;
+
+import com.example.finalproject.demo.dto.RoomMessage;
+import com.example.finalproject.demo.dto.RoomMessageType;
+import com.example.finalproject.demo.dto.RoomReplayResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Keeps the most recent broadcast frames of each room in a fixed-size ring indexed by
+ * sequence number, so a reconnecting client can catch up from memory instead of
+ * rejoining the room.
+ * <p>
+ * Every ring has a random epoch. Numbering starts again at 1 whenever a ring is
+ * created (after a restart, or when the room was evicted), so a sequence number only
+ * means something together with its epoch; a client from another epoch is always
+ * sent a snapshot.
+ */
+@Component
+public class RoomReplayBuffer {
+
+    private final int capacity;
+    private final int maxRooms;
+    private final Map<String, Ring> rings;
+
+    public RoomReplayBuffer(@Value("${room.replay.capacity:64}") int capacity,
+                            @Value("${room.replay.max-rooms:10000}") int maxRooms) {
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.maxRooms = maxRooms;
+        this.rings = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Ring> eldest) {
+                return size() > RoomReplayBuffer.this.maxRooms;
+            }
+        };
+    }
+
+    /**
+     * Returns the room's ring, creating it on first use. Callers append under the
+     * ring's monitor so that sequence order matches send order.
+     */
+    public Ring ring(String inviteCode) {
+        synchronized (rings) {
+            return rings.computeIfAbsent(inviteCode, k -> new Ring(capacity));
+        }
+    }
+
+    /**
+     * The room's ring if anything has been broadcast to it, without creating one.
+     */
+    public Ring existingRing(String inviteCode) {
+        synchronized (rings) {
+            return rings.get(inviteCode);
+        }
+    }
+
+    /**
+     * Frames broadcast to the room after {@code lastSequence} of {@code epoch}. When the
+     * client has fallen further behind than the ring reaches, or its sequence belongs
+     * to another epoch, the result starts from the last full room snapshot instead.
+     */
+    public RoomReplayResponse replaySince(String inviteCode, long lastSequence, Long epoch) {
+        Ring ring;
+        synchronized (rings) {
+            ring = rings.get(inviteCode);
+        }
+        if (ring == null) {
+            return new RoomReplayResponse(inviteCode, 0, 0, null, Collections.emptyList(), false);
+        }
+        return ring.replaySince(inviteCode, lastSequence, epoch);
+    }
+
+    public static final class Ring {
+        private final RoomMessage[] frames;
+        private final int mask;
+        private long epoch = newEpoch();
+        private long nextSequence = 1;
+        private RoomMessage snapshot;
+        // Published for lock-free readers such as the outbound backpressure guard
+        private volatile long latestUpdateSequence;
+        private volatile long latestSnapshotSequence;
+
+        private Ring(int capacity) {
+            this.frames = new RoomMessage[capacity];
+            this.mask = capacity - 1;
+        }
+
+        /**
+         * Stamps the message with the room's next sequence number and stores it.
+         * Must be called while holding this ring's monitor.
+         */
+        public long append(RoomMessage message) {
+            long sequence = nextSequence;
+            store(message, sequence);
+            return sequence;
+        }
+
+        /**
+         * Stores a frame that was already sequenced by the node that broadcast it. A
+         * frame from another epoch means the owner's numbering restarted: the ring
+         * drops what it holds and continues in that epoch.
+         * Must be called while holding this ring's monitor.
+         */
+        public void record(RoomMessage message, long sequence) {
+            if (message.getEpoch() != null && message.getEpoch() != epoch) {
+                Arrays.fill(frames, null);
+                snapshot = null;
+                nextSequence = 1;
+                latestUpdateSequence = 0;
+                latestSnapshotSequence = 0;
+                epoch = message.getEpoch();
+            }
+            store(message, sequence);
+        }
+
+        private void store(RoomMessage message, long sequence) {
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            message.setSequence(sequence);
+            message.setEpoch(epoch);
+            frames[(int) (sequence & mask)] = message;
+            if (message.getType() == RoomMessageType.UPDATE) {
+                latestUpdateSequence = sequence;
+            }
+            if (isSnapshot(message)) {
+                snapshot = message;
+                latestSnapshotSequence = sequence;
+            }
+        }
+
+        /**
+         * True when a newer frame has already been broadcast that makes this UPDATE
+         * redundant: a newer full snapshot for a snapshot, any newer UPDATE for a
+         * partial one.
+         */
+        public boolean isSuperseded(long sequence, boolean snapshot) {
+            return (snapshot ? latestSnapshotSequence : latestUpdateSequence) > sequence;
+        }
+
+        public long latestUpdateSequence() {
+            return latestUpdateSequence;
+        }
+
+        private synchronized RoomReplayResponse replaySince(String inviteCode, long lastSequence, Long clientEpoch) {
+            long latest = nextSequence - 1;
+            long oldest = Math.max(1, latest - frames.length + 1);
+            if (clientEpoch != null && clientEpoch == epoch) {
+                if (lastSequence >= latest) {
+                    return new RoomReplayResponse(inviteCode, latest, epoch, null, Collections.emptyList(), true);
+                }
+                if (lastSequence + 1 >= oldest) {
+                    List<RoomMessage> missed = copyFrames(lastSequence + 1, latest);
+                    if (missed != null) {
+                        return new RoomReplayResponse(inviteCode, latest, epoch, null, missed, true);
+                    }
+                }
+            }
+
+            // Another epoch, too far behind, or a gap in the ring: resend the latest full
+            // snapshot and whatever followed it
+            List<RoomMessage> sinceSnapshot = snapshot == null || snapshot.getSequence() < oldest
+                ? null : copyFrames(snapshot.getSequence() + 1, latest);
+            if (sinceSnapshot == null) {
+                return new RoomReplayResponse(inviteCode, latest, epoch, null, Collections.emptyList(), false);
+            }
+            return new RoomReplayResponse(inviteCode, latest, epoch, snapshot, sinceSnapshot, true);
+        }
+
+        /**
+         * The frames {@code from..to}, or null if any slot is empty or holds another
+         * sequence, as happens when frames recorded from other nodes left gaps.
+         */
+        private List<RoomMessage> copyFrames(long from, long to) {
+            List<RoomMessage> missed = new ArrayList<>((int) Math.max(0, to - from + 1));
+            for (long sequence = from; sequence <= to; sequence++) {
+                RoomMessage frame = frames[(int) (sequence & mask)];
+                if (frame == null || frame.getSequence() == null || frame.getSequence() != sequence) {
+                    return null;
+                }
+                missed.add(frame);
+            }
+            return missed;
+        }
+
+        private static long newEpoch() {
+            return ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE);
+        }
+
+        static boolean isSnapshot(RoomMessage message) {
+            return message.getType() == RoomMessageType.UPDATE && message.getRestaurantSuggestions() != null;
+        }
+    }
+
+}
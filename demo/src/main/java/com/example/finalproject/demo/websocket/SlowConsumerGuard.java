@@ -0,0 +1,261 @@
+package com.example.finalproject.demo.websocket;
+
+import com.example.finalproject.demo.dto.RoomMessageType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Outbound backpressure for STOMP sessions, installed on the client outbound channel.
+ * <p>
+ * Frames for one session are written in order, so a slow session builds a queue of
+ * room frames. Just before a room UPDATE is written, it is dropped if a newer UPDATE
+ * for the same room has already been broadcast (and is therefore queued behind it);
+ * SELECTION and VOTE frames are always written. A session whose frames keep arriving
+ * more than {@code websocket.slow-consumer.max-lag-ms} after broadcast for longer than
+ * {@code websocket.slow-consumer.stuck-ms} is disconnected.
+ * <p>
+ * The outbound channel hands frames to Spring's per-session send buffer, which keeps
+ * accepting them while the socket is stalled, so the time since broadcast alone never
+ * grows for a stuck client. Each session is therefore wrapped to time the socket write
+ * in progress, and a session's lag is whichever is larger: how late the frame is, or
+ * how long the current write has been blocked.
+ */
+@Component
+public class SlowConsumerGuard implements ExecutorChannelInterceptor {
+    public static final String FRAME_TYPE_HEADER = "room-frame";
+    public static final String SEQUENCE_HEADER = "room-seq";
+    public static final String SNAPSHOT_HEADER = "room-snapshot";
+    public static final String SENT_AT_HEADER = "room-sent-at";
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowConsumerGuard.class);
+
+    private final RoomReplayBuffer replayBuffer;
+    private final Map<String, SessionLag> sessions = new ConcurrentHashMap<>();
+    private final Map<String, TimedSession> webSocketSessions = new ConcurrentHashMap<>();
+
+    private final boolean dropStaleUpdates;
+    private final long maxLagMs;
+    private final long stuckMs;
+    private final DistributionSummary framesBehind;
+    private final DistributionSummary msBehind;
+    private final Counter droppedUpdates;
+    private final Counter disconnected;
+
+    public SlowConsumerGuard(RoomReplayBuffer replayBuffer,
+                             MeterRegistry meterRegistry,
+                             @Value("${websocket.slow-consumer.drop-stale-updates:true}") boolean dropStaleUpdates,
+                             @Value("${websocket.slow-consumer.max-lag-ms:5000}") long maxLagMs,
+                             @Value("${websocket.slow-consumer.stuck-ms:30000}") long stuckMs) {
+        this.replayBuffer = replayBuffer;
+        this.dropStaleUpdates = dropStaleUpdates;
+        this.maxLagMs = maxLagMs;
+        this.stuckMs = stuckMs;
+        this.framesBehind = DistributionSummary.builder("websocket.session.lag.frames")
+            .description("Room frames broadcast after the one being written to a session")
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+        this.msBehind = DistributionSummary.builder("websocket.session.lag.ms")
+            .description("Time between broadcasting a room frame and writing it to a session")
+            .baseUnit("milliseconds")
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+        this.droppedUpdates = meterRegistry.counter("websocket.slow-consumer.dropped");
+        this.disconnected = meterRegistry.counter("websocket.slow-consumer.disconnected");
+        Gauge.builder("websocket.session.lag.max", this, SlowConsumerGuard::maxSessionLagMs)
+            .baseUnit("milliseconds").register(meterRegistry);
+    }
+
+    /**
+     * Wraps the STOMP handler so the guard can time socket writes below Spring's send
+     * buffer and reach the session when it has to disconnect a stuck client.
+     */
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                TimedSession timed = new TimedSession(session);
+                webSocketSessions.put(session.getId(), timed);
+                super.afterConnectionEstablished(timed);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                webSocketSessions.remove(session.getId());
+                sessions.remove(session.getId());
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Lag in milliseconds of the most recent room frame written to each session.
+     */
+    public Map<String, Long> sessionLag() {
+        Map<String, Long> lag = new HashMap<>();
+        sessions.forEach((id, state) -> lag.put(id, state.lastLagMs));
+        return Collections.unmodifiableMap(lag);
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        RoomFrame frame = sessionId != null ? RoomFrame.of(message) : null;
+        if (frame == null) {
+            return message;
+        }
+
+        RoomReplayBuffer.Ring ring = replayBuffer.existingRing(frame.inviteCode);
+        long now = System.currentTimeMillis();
+        long lagMs = frame.sentAt > 0 ? Math.max(0, now - frame.sentAt) : 0;
+        TimedSession timed = webSocketSessions.get(sessionId);
+        if (timed != null) {
+            lagMs = Math.max(lagMs, timed.blockedMs(now));
+        }
+        msBehind.record(lagMs);
+        if (ring != null) {
+            framesBehind.record(Math.max(0, ring.latestUpdateSequence() - frame.sequence));
+        }
+
+        SessionLag state = sessions.computeIfAbsent(sessionId, id -> new SessionLag());
+        state.lastLagMs = lagMs;
+        if (checkStuck(sessionId, state, lagMs, now)) {
+            return null;
+        }
+
+        if (dropStaleUpdates && frame.type == RoomMessageType.UPDATE && ring != null
+                && ring.isSuperseded(frame.sequence, frame.snapshot)) {
+            droppedUpdates.increment();
+            logger.debug("Dropped stale update {} for session {} in room {}", frame.sequence, sessionId, frame.inviteCode);
+            return null;
+        }
+        return message;
+    }
+
+    private boolean checkStuck(String sessionId, SessionLag state, long lagMs, long now) {
+        if (lagMs <= maxLagMs) {
+            state.laggingSince = 0;
+            return false;
+        }
+        if (state.laggingSince == 0) {
+            state.laggingSince = now;
+            return false;
+        }
+        if (now - state.laggingSince <= stuckMs) {
+            return false;
+        }
+
+        WebSocketSession session = webSocketSessions.remove(sessionId);
+        if (session != null) {
+            logger.warn("Disconnecting session {}: {} ms behind for over {} ms", sessionId, lagMs, stuckMs);
+            disconnected.increment();
+            try {
+                session.close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (IOException e) {
+                logger.debug("Error closing slow session {}", sessionId, e);
+            }
+        }
+        return true;
+    }
+
+    private double maxSessionLagMs() {
+        long max = 0;
+        for (SessionLag state : sessions.values()) {
+            max = Math.max(max, state.lastLagMs);
+        }
+        return max;
+    }
+
+    /**
+     * The raw session, below Spring's send buffer, noting when the write in progress started.
+     */
+    private static final class TimedSession extends WebSocketSessionDecorator {
+        // 0 while no write is in progress
+        private volatile long sendStartedAt;
+
+        private TimedSession(WebSocketSession delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            sendStartedAt = System.currentTimeMillis();
+            try {
+                super.sendMessage(message);
+            } finally {
+                sendStartedAt = 0;
+            }
+        }
+
+        private long blockedMs(long now) {
+            long started = sendStartedAt;
+            return started > 0 ? Math.max(0, now - started) : 0;
+        }
+    }
+
+    private static final class SessionLag {
+        private volatile long lastLagMs;
+        private volatile long laggingSince;
+    }
+
+    private static final class RoomFrame {
+        private final String inviteCode;
+        private final RoomMessageType type;
+        private final long sequence;
+        private final boolean snapshot;
+        private final long sentAt;
+
+        private RoomFrame(String inviteCode, RoomMessageType type, long sequence, boolean snapshot, long sentAt) {
+            this.inviteCode = inviteCode;
+            this.type = type;
+            this.sequence = sequence;
+            this.snapshot = snapshot;
+            this.sentAt = sentAt;
+        }
+
+        private static RoomFrame of(Message<?> message) {
+            Map<String, Object> headers = message.getHeaders();
+            String type = NativeMessageHeaderAccessor.getFirstNativeHeader(FRAME_TYPE_HEADER, headers);
+            String sequence = NativeMessageHeaderAccessor.getFirstNativeHeader(SEQUENCE_HEADER, headers);
+            String destination = SimpMessageHeaderAccessor.getDestination(headers);
+            if (type == null || sequence == null || destination == null
+                    || !destination.startsWith(RoomBroadcaster.ROOM_TOPIC_PREFIX)) {
+                return null;
+            }
+            try {
+                String sentAt = NativeMessageHeaderAccessor.getFirstNativeHeader(SENT_AT_HEADER, headers);
+                return new RoomFrame(
+                    destination.substring(RoomBroadcaster.ROOM_TOPIC_PREFIX.length()),
+                    RoomMessageType.valueOf(type),
+                    Long.parseLong(sequence),
+                    Boolean.parseBoolean(NativeMessageHeaderAccessor.getFirstNativeHeader(SNAPSHOT_HEADER, headers)),
+                    sentAt != null ? Long.parseLong(sentAt) : 0);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.finalproject.demo.websocket;
+
+import com.example.finalproject.demo.model.User;
+import com.example.finalproject.demo.service.UserService;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Resolves the connecting user once, from the {@code user-id} or {@code user-email}
+ * CONNECT header, and binds it to the session as a {@link RoomPrincipal}.
+ */
+@Component
+@RequiredArgsConstructor
+public class StompIdentityInterceptor implements ChannelInterceptor {
+    public static final String USER_ID_HEADER = "user-id";
+    public static final String USER_EMAIL_HEADER = "user-email";
+
+    private static final Logger logger = LoggerFactory.getLogger(StompIdentityInterceptor.class);
+
+    private final UserService userService;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.CONNECT.equals(accessor.getCommand())) {
+            return message;
+        }
+
+        Optional<User> user = resolveUser(accessor);
+        if (user.isPresent()) {
+            accessor.setUser(new RoomPrincipal(user.get()));
+            logger.info("Bound user {} to STOMP session {}", user.get().getUsername(), accessor.getSessionId());
+        } else {
+            logger.info("STOMP session {} connected without a known user", accessor.getSessionId());
+        }
+        return message;
+    }
+
+    private Optional<User> resolveUser(StompHeaderAccessor accessor) {
+        String userId = accessor.getFirstNativeHeader(USER_ID_HEADER);
+        if (userId != null && !userId.isBlank()) {
+            try {
+                Optional<User> user = userService.findById(Long.parseLong(userId.trim()));
+                if (user.isPresent()) {
+                    return user;
+                }
+            } catch (NumberFormatException e) {
+                logger.debug("Ignoring non-numeric {} header: {}", USER_ID_HEADER, userId);
+            }
+        }
+
+        String email = accessor.getFirstNativeHeader(USER_EMAIL_HEADER);
+        if (email != null && !email.isBlank()) {
+            return userService.findByEmail(email.trim());
+        }
+        return Optional.empty();
+    }
+}
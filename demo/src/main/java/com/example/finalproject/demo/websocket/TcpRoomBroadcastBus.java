@@ -0,0 +1,434 @@
+package com.example.finalproject.demo.websocket;
+
+import com.example.finalproject.demo.dto.RoomMessage;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bus for several backend JVMs on one host (or a small LAN), over plain TCP with one
+ * JSON object per line.
+ * <p>
+ * Every node listens on {@code room.bus.tcp.port} and dials each address in
+ * {@code room.bus.tcp.peers}. The two directions of a pair have fixed roles: the
+ * dialling side sends room frames, the accepting side tells it which rooms it has
+ * local subscribers for. A frame is therefore serialized once and written once per
+ * interested node, however many sessions on that node subscribe to the room.
+ * <p>
+ * Frames that cannot be queued for a slow or disconnected peer are dropped; its
+ * clients recover them through the replay/resync path.
+ */
+@Component
+@ConditionalOnProperty(name = "room.bus.mode", havingValue = "tcp")
+public class TcpRoomBroadcastBus implements RoomBroadcastBus {
+    private static final Logger logger = LoggerFactory.getLogger(TcpRoomBroadcastBus.class);
+
+    private static final String TYPE_FRAME = "frame";
+    private static final String TYPE_INTEREST = "interest";
+
+    private final ObjectMapper objectMapper;
+    private final String bindAddress;
+    private final int port;
+    private final List<String> peerAddresses;
+    private final long reconnectMs;
+    private final int queueCapacity;
+    private final Counter framesSent;
+    private final Counter framesReceived;
+    private final Counter framesDropped;
+
+    private volatile FrameDelivery delivery;
+    private volatile boolean running;
+    private ServerSocket serverSocket;
+
+    private final List<Peer> peers = new CopyOnWriteArrayList<>();
+    private final List<Writer> interestSubscribers = new CopyOnWriteArrayList<>();
+    // inviteCode -> local STOMP subscriptions to its topic
+    private final Map<String, AtomicInteger> localInterest = new ConcurrentHashMap<>();
+    // sessionId -> (subscriptionId -> inviteCode)
+    private final Map<String, Map<String, String>> sessionSubscriptions = new ConcurrentHashMap<>();
+
+    private final ExecutorService threads = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "room-bus");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public TcpRoomBroadcastBus(ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${room.bus.tcp.bind-address:127.0.0.1}") String bindAddress,
+                               @Value("${room.bus.tcp.port:7410}") int port,
+                               @Value("${room.bus.tcp.peers:}") List<String> peerAddresses,
+                               @Value("${room.bus.tcp.reconnect-ms:1000}") long reconnectMs,
+                               @Value("${room.bus.tcp.queue-capacity:10000}") int queueCapacity) {
+        this.objectMapper = objectMapper;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.peerAddresses = peerAddresses;
+        this.reconnectMs = reconnectMs;
+        this.queueCapacity = queueCapacity;
+        this.framesSent = meterRegistry.counter("room.bus.frames", "direction", "sent");
+        this.framesReceived = meterRegistry.counter("room.bus.frames", "direction", "received");
+        this.framesDropped = meterRegistry.counter("room.bus.frames", "direction", "dropped");
+    }
+
+    @PostConstruct
+    void start() throws IOException {
+        running = true;
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(bindAddress, port));
+        threads.execute(this::acceptLoop);
+
+        for (String address : peerAddresses) {
+            if (address.isBlank()) {
+                continue;
+            }
+            Peer peer = new Peer(address.trim());
+            peers.add(peer);
+            threads.execute(peer::connectLoop);
+            threads.execute(peer::writeLoop);
+        }
+        logger.info("Room bus listening on {}:{} with peers {}", bindAddress, port, peerAddresses);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            logger.debug("Error closing room bus listener", e);
+        }
+        for (Peer peer : peers) {
+            peer.close();
+        }
+        threads.shutdownNow();
+    }
+
+    @Override
+    public void setDelivery(FrameDelivery delivery) {
+        this.delivery = delivery;
+    }
+
+    @Override
+    public void publish(String inviteCode, long sequence, RoomMessage message) {
+        FrameDelivery target = delivery;
+        if (target != null) {
+            target.deliver(inviteCode, sequence, message, false);
+        }
+
+        String line = null;
+        for (Peer peer : peers) {
+            if (!peer.rooms.contains(inviteCode)) {
+                continue;
+            }
+            if (line == null) {
+                line = frameLine(inviteCode, sequence, message);
+                if (line == null) {
+                    return;
+                }
+            }
+            if (peer.outbox.offer(line)) {
+                framesSent.increment();
+            } else {
+                framesDropped.increment();
+            }
+        }
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        String inviteCode = roomCodeOf(accessor.getDestination());
+        if (inviteCode == null || accessor.getSessionId() == null) {
+            return;
+        }
+        Map<String, String> subscriptions =
+            sessionSubscriptions.computeIfAbsent(accessor.getSessionId(), k -> new ConcurrentHashMap<>());
+        if (subscriptions.put(accessor.getSubscriptionId(), inviteCode) == null
+                && localInterest.computeIfAbsent(inviteCode, k -> new AtomicInteger()).incrementAndGet() == 1) {
+            announceInterest(inviteCode, true);
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Map<String, String> subscriptions =
+            accessor.getSessionId() != null ? sessionSubscriptions.get(accessor.getSessionId()) : null;
+        if (subscriptions != null) {
+            String inviteCode = subscriptions.remove(accessor.getSubscriptionId());
+            if (inviteCode != null) {
+                releaseInterest(inviteCode);
+            }
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        Map<String, String> subscriptions = sessionSubscriptions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::releaseInterest);
+        }
+    }
+
+    private void releaseInterest(String inviteCode) {
+        AtomicInteger count = localInterest.get(inviteCode);
+        if (count != null && count.decrementAndGet() <= 0) {
+            localInterest.remove(inviteCode, count);
+            announceInterest(inviteCode, false);
+        }
+    }
+
+    private void announceInterest(String inviteCode, boolean interested) {
+        String line = interestLine(inviteCode, interested);
+        for (Writer writer : interestSubscribers) {
+            writeLine(writer, line);
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                threads.execute(() -> serveInbound(socket));
+            } catch (IOException e) {
+                if (running) {
+                    logger.warn("Room bus accept failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Accepting side of a pair: reports local interest to the dialling node and
+     * delivers the frames it sends.
+     */
+    private void serveInbound(Socket socket) {
+        Writer writer = null;
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            // Register before the snapshot so no change can fall between the two
+            interestSubscribers.add(writer);
+            for (String inviteCode : localInterest.keySet()) {
+                writeLine(writer, interestLine(inviteCode, true));
+            }
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while (running && (line = reader.readLine()) != null) {
+                receiveFrame(line);
+            }
+        } catch (IOException e) {
+            logger.debug("Room bus connection from {} closed", socket.getRemoteSocketAddress(), e);
+        } finally {
+            if (writer != null) {
+                interestSubscribers.remove(writer);
+            }
+        }
+    }
+
+    private void receiveFrame(String line) {
+        try {
+            JsonNode node = objectMapper.readTree(line);
+            if (!TYPE_FRAME.equals(node.path("type").asText())) {
+                return;
+            }
+            RoomMessage message = objectMapper.treeToValue(node.get("message"), RoomMessage.class);
+            FrameDelivery target = delivery;
+            if (target != null) {
+                framesReceived.increment();
+                target.deliver(node.get("room").asText(), node.get("seq").asLong(), message, true);
+            }
+        } catch (Exception e) {
+            logger.warn("Dropping malformed room bus frame", e);
+        }
+    }
+
+    private String frameLine(String inviteCode, long sequence, RoomMessage message) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("type", TYPE_FRAME);
+        node.put("room", inviteCode);
+        node.put("seq", sequence);
+        node.set("message", objectMapper.valueToTree(message));
+        try {
+            return objectMapper.writeValueAsString(node);
+        } catch (IOException e) {
+            logger.error("Could not serialize frame {} for room {}", sequence, inviteCode, e);
+            return null;
+        }
+    }
+
+    private String interestLine(String inviteCode, boolean interested) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("type", TYPE_INTEREST);
+        node.put("room", inviteCode);
+        node.put("on", interested);
+        return node.toString();
+    }
+
+    private static void writeLine(Writer writer, String line) {
+        synchronized (writer) {
+            try {
+                writer.write(line);
+                writer.write('\n');
+                writer.flush();
+            } catch (IOException e) {
+                logger.debug("Could not write to room bus peer", e);
+            }
+        }
+    }
+
+    private static String roomCodeOf(String destination) {
+        if (destination == null || !destination.startsWith(RoomBroadcaster.ROOM_TOPIC_PREFIX)) {
+            return null;
+        }
+        String code = destination.substring(RoomBroadcaster.ROOM_TOPIC_PREFIX.length());
+        return code.isEmpty() || code.indexOf('/') >= 0 ? null : code;
+    }
+
+    /**
+     * Dialling side of a pair: sends frames for the rooms the remote node reported
+     * interest in.
+     */
+    private final class Peer {
+        private final String address;
+        private final Set<String> rooms = ConcurrentHashMap.newKeySet();
+        private final BlockingQueue<String> outbox = new ArrayBlockingQueue<>(queueCapacity);
+        private volatile Writer writer;
+        private volatile Socket socket;
+
+        private Peer(String address) {
+            this.address = address;
+        }
+
+        private void connectLoop() {
+            while (running) {
+                try (Socket connected = connect()) {
+                    socket = connected;
+                    writer = new BufferedWriter(new OutputStreamWriter(connected.getOutputStream(), StandardCharsets.UTF_8));
+                    logger.info("Room bus connected to {}", address);
+                    readInterest(new BufferedReader(new InputStreamReader(connected.getInputStream(), StandardCharsets.UTF_8)));
+                } catch (IOException e) {
+                    logger.debug("Room bus peer {} unavailable", address, e);
+                } finally {
+                    writer = null;
+                    socket = null;
+                    rooms.clear();
+                }
+                sleep(reconnectMs);
+            }
+        }
+
+        private Socket connect() throws IOException {
+            int colon = address.lastIndexOf(':');
+            Socket connected = new Socket();
+            connected.setTcpNoDelay(true);
+            connected.connect(new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1))),
+                (int) Math.max(reconnectMs, 1000));
+            return connected;
+        }
+
+        private void readInterest(BufferedReader reader) throws IOException {
+            String line;
+            while (running && (line = reader.readLine()) != null) {
+                JsonNode node = objectMapper.readTree(line);
+                if (!TYPE_INTEREST.equals(node.path("type").asText())) {
+                    continue;
+                }
+                String inviteCode = node.get("room").asText();
+                if (node.path("on").asBoolean()) {
+                    rooms.add(inviteCode);
+                } else {
+                    rooms.remove(inviteCode);
+                }
+            }
+        }
+
+        private void writeLoop() {
+            List<String> batch = new ArrayList<>();
+            while (running) {
+                try {
+                    batch.add(outbox.take());
+                    outbox.drainTo(batch);
+                    Writer current = writer;
+                    if (current == null) {
+                        framesDropped.increment(batch.size());
+                    } else {
+                        for (String line : batch) {
+                            current.write(line);
+                            current.write('\n');
+                        }
+                        current.flush();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (IOException e) {
+                    logger.debug("Room bus write to {} failed", address, e);
+                    framesDropped.increment(batch.size());
+                    close();
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        private void close() {
+            Socket current = socket;
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (IOException e) {
+                    logger.debug("Error closing room bus peer {}", address, e);
+                }
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.finalproject.demo.controller;
+
+import com.example.finalproject.demo.cluster.RoomCluster;
+import com.example.finalproject.demo.cluster.RoomMutationRouter;
+import com.example.finalproject.demo.dto.RoomMessage;
+import com.example.finalproject.demo.eventlog.RoomEventLog;
+import com.example.finalproject.demo.model.Room;
+import com.example.finalproject.demo.model.User;
+import com.example.finalproject.demo.service.GroupDecisionService;
+import com.example.finalproject.demo.service.RestaurantSelectionService;
+import com.example.finalproject.demo.service.RestaurantVotingService;
+import com.example.finalproject.demo.service.RoomService;
+import com.example.finalproject.demo.service.VoteDeadlineScheduler;
+import com.example.finalproject.demo.websocket.LoopbackRoomBroadcastBus;
+import com.example.finalproject.demo.websocket.RoomBroadcaster;
+import com.example.finalproject.demo.websocket.RoomPresenceRegistry;
+import com.example.finalproject.demo.websocket.RoomPrincipal;
+import com.example.finalproject.demo.websocket.RoomReplayBuffer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.LazyInitializationException;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RoomWebSocketControllerTests {
+
+	private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+	private final RoomService roomService = mock(RoomService.class);
+	private final RoomCluster cluster = mock(RoomCluster.class);
+	private final RoomMutationRouter router = mock(RoomMutationRouter.class);
+	private final RoomReplayBuffer replayBuffer = new RoomReplayBuffer(64, 100);
+	private final RoomBroadcaster broadcaster = new RoomBroadcaster(messagingTemplate, replayBuffer,
+		new LoopbackRoomBroadcastBus(), cluster, router, mock(ApplicationEventPublisher.class),
+		new SimpleMeterRegistry(), 0, 100);
+	private final RoomWebSocketController controller = new RoomWebSocketController(roomService, broadcaster,
+		replayBuffer, mock(RestaurantSelectionService.class), mock(RestaurantVotingService.class),
+		mock(RoomPresenceRegistry.class), new SimpleMeterRegistry(), router, cluster, mock(RoomEventLog.class),
+		mock(VoteDeadlineScheduler.class), mock(GroupDecisionService.class));
+
+	@Test
+	void joinUpdateCarriesSuggestionsReadBeforeTheSessionCloses() {
+		User user = new User();
+		user.setId(1L);
+		user.setUsername("ana");
+		DetachableBag suggestions = new DetachableBag(List.of("Sushi Bar", "Taco Hut"));
+		Room room = new Room();
+		room.setId(5L);
+		room.setInviteCode("ROOM01");
+		room.setUsers(new ArrayList<>(List.of(user)));
+		room.setRestaurantSuggestions(suggestions);
+		when(roomService.getRoomByInviteCode("ROOM01")).thenReturn(Optional.of(room));
+
+		controller.handleJoinRoom("ROOM01", new RoomPrincipal(user));
+		// The handler's transaction is over; the outbox sends the frame after this point
+		suggestions.detach();
+
+		ArgumentCaptor<RoomMessage> frame = ArgumentCaptor.forClass(RoomMessage.class);
+		verify(messagingTemplate, timeout(2000)).convertAndSend(eq("/topic/room/ROOM01"), frame.capture(),
+			ArgumentMatchers.<String, Object>anyMap());
+		assertEquals(List.of("Sushi Bar", "Taco Hut"), frame.getValue().getRestaurantSuggestions());
+		assertEquals(List.of("ana"), frame.getValue().getParticipants());
+	}
+
+	/**
+	 * Stands in for a lazy {@code @ElementCollection} bag, unreadable once its session is gone.
+	 */
+	private static final class DetachableBag extends ArrayList<String> {
+		private volatile boolean detached;
+
+		private DetachableBag(List<String> contents) {
+			super(contents);
+		}
+
+		private void detach() {
+			detached = true;
+		}
+
+		private void check() {
+			if (detached) {
+				throw new LazyInitializationException("could not initialize proxy - no Session");
+			}
+		}
+
+		@Override
+		public int size() {
+			check();
+			return super.size();
+		}
+
+		@Override
+		public String get(int index) {
+			check();
+			return super.get(index);
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			check();
+			return super.iterator();
+		}
+
+		@Override
+		public Object[] toArray() {
+			check();
+			return super.toArray();
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			check();
+			return super.equals(other);
+		}
+	}
+}
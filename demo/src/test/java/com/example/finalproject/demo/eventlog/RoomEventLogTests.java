@@ -0,0 +1,169 @@
+package com.example.finalproject.demo.eventlog;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RoomEventLogTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final List<RoomEventLog> opened = new ArrayList<>();
+
+	@TempDir
+	Path directory;
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		for (RoomEventLog log : opened) {
+			log.close();
+		}
+	}
+
+	@Test
+	void staysOffWithoutADataDirectory() throws IOException {
+		RoomEventLog log = new RoomEventLog(objectMapper, new SimpleMeterRegistry(), "", 4096, 16, false, 1000);
+		log.open();
+
+		assertFalse(log.isEnabled());
+		log.append(RoomEvent.join("ROOM01", "ana")).join();
+		assertEquals(0, log.committedPosition());
+	}
+
+	@Test
+	void tornRecordAtTheTailIsDropped() throws IOException, InterruptedException {
+		RoomEventLog log = open(4096);
+		log.append(RoomEvent.join("ROOM01", "ana")).join();
+		log.append(RoomEvent.join("ROOM01", "ben")).join();
+		long intact = log.committedPosition();
+		log.close();
+
+		// A crash in the middle of a write: the header made it, the payload did not
+		Path segment = segments().get(0);
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			ByteBuffer header = ByteBuffer.allocate(8).putInt(40).putInt(12345);
+			header.flip();
+			channel.write(header, intact);
+			channel.write(ByteBuffer.wrap("{\"type\":\"JO".getBytes()), intact + 8);
+		}
+
+		RoomEventLog reopened = open(4096);
+		assertEquals(intact, reopened.committedPosition());
+		assertEquals(List.of("ana", "ben"), users(reopened, 0));
+
+		reopened.append(RoomEvent.join("ROOM01", "cy")).join();
+		assertEquals(List.of("ana", "ben", "cy"), users(reopened, 0));
+	}
+
+	@Test
+	void rollsOverIntoNewSegmentsAndDropsCoveredOnes() throws IOException {
+		RoomEventLog log = open(256);
+		List<String> written = new ArrayList<>();
+		long middle = 0;
+		for (int i = 0; i < 20; i++) {
+			written.add("user" + i);
+			log.append(RoomEvent.join("ROOM01", "user" + i)).join();
+			if (i == 9) {
+				middle = log.committedPosition();
+			}
+		}
+
+		assertTrue(segments().size() > 2);
+		assertEquals(written, users(log, 0));
+		assertEquals(written.subList(10, 20), users(log, middle));
+
+		log.deleteSegmentsBefore(log.committedPosition());
+		assertEquals(1, segments().size());
+		log.append(RoomEvent.join("ROOM01", "late")).join();
+		assertEquals("late", users(log, 0).get(users(log, 0).size() - 1));
+	}
+
+	@Test
+	void recoversFromSnapshotPlusLogTail() throws IOException, InterruptedException {
+		RoomEventLog log = open(256);
+		JoinedUsers state = new JoinedUsers();
+		RoomStateRecovery recovery = new RoomStateRecovery(log, List.of(state), objectMapper, 60_000);
+		recovery.recover();
+		for (String user : List.of("ana", "ben", "cy", "dee", "eli")) {
+			state.users.add(user);
+			log.append(RoomEvent.join("ROOM01", user)).join();
+		}
+		recovery.snapshot();
+		state.users.add("fay");
+		log.append(RoomEvent.join("ROOM01", "fay")).join();
+		log.close();
+
+		RoomEventLog reopened = open(256);
+		JoinedUsers recovered = new JoinedUsers();
+		RoomStateRecovery restarted = new RoomStateRecovery(reopened, List.of(recovered), objectMapper, 60_000);
+		restarted.recover();
+		restarted.stop();
+
+		assertEquals(List.of("ana", "ben", "cy", "dee", "eli"), recovered.restored);
+		assertEquals(List.of("ana", "ben", "cy", "dee", "eli", "fay"), recovered.users);
+	}
+
+	private RoomEventLog open(int segmentSize) throws IOException {
+		RoomEventLog log = new RoomEventLog(objectMapper, new SimpleMeterRegistry(), directory.toString(),
+			segmentSize, 16, false, 1000);
+		log.open();
+		opened.add(log);
+		return log;
+	}
+
+	private List<Path> segments() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(f -> f.getFileName().toString().startsWith("segment-")).sorted().toList();
+		}
+	}
+
+	private static List<String> users(RoomEventLog log, long position) throws IOException {
+		List<String> users = new ArrayList<>();
+		log.readFrom(position, event -> users.add(event.getUser()));
+		return users;
+	}
+
+	private static final class JoinedUsers implements RecoverableRoomState {
+		private final List<String> users = new ArrayList<>();
+		private final List<String> restored = new ArrayList<>();
+
+		@Override
+		public String stateName() {
+			return "joined";
+		}
+
+		@Override
+		public Object snapshot() {
+			return new ArrayList<>(users);
+		}
+
+		@Override
+		public void restore(JsonNode snapshot) {
+			snapshot.forEach(user -> restored.add(user.asText()));
+			users.addAll(restored);
+		}
+
+		@Override
+		public void replay(RoomEvent event) {
+			if (event.getType() == RoomEvent.Type.JOIN && !users.contains(event.getUser())) {
+				users.add(event.getUser());
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package com.example.finalproject.demo.scheduling;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedWheelTimerTests {
+
+	private final ExecutorService tasks = Executors.newSingleThreadExecutor(r -> new Thread(r, "expired-tasks"));
+	// 8 slots of 10 ms: one turn of the wheel is 80 ms
+	private final HashedWheelTimer timer = new HashedWheelTimer("test-wheel", 10, 8, tasks);
+
+	@AfterEach
+	void tearDown() {
+		timer.stop();
+		tasks.shutdownNow();
+	}
+
+	@Test
+	void timeoutSpanningSeveralTurnsWaitsForItsDeadline() throws Exception {
+		CompletableFuture<Long> fired = new CompletableFuture<>();
+		long started = System.nanoTime();
+		timer.newTimeout(() -> fired.complete(System.nanoTime()), 250, TimeUnit.MILLISECONDS);
+
+		long elapsedMs = TimeUnit.NANOSECONDS.toMillis(fired.get(2, TimeUnit.SECONDS) - started);
+		assertTrue(elapsedMs >= 250, "fired after " + elapsedMs + " ms");
+		assertEquals(0, timer.pendingTimeouts());
+	}
+
+	@Test
+	void cancelledTimeoutNeverRuns() throws InterruptedException {
+		AtomicBoolean ran = new AtomicBoolean();
+		HashedWheelTimer.Timeout timeout = timer.newTimeout(() -> ran.set(true), 50, TimeUnit.MILLISECONDS);
+
+		assertTrue(timeout.cancel());
+		assertFalse(timeout.cancel());
+		assertEquals(0, timer.pendingTimeouts());
+		Thread.sleep(200);
+
+		assertFalse(ran.get());
+		assertTrue(timeout.isCancelled());
+		assertFalse(timeout.isExpired());
+	}
+
+	@Test
+	void expiredTaskRunsOnTheExecutorNotTheWheel() throws Exception {
+		CompletableFuture<String> thread = new CompletableFuture<>();
+		HashedWheelTimer.Timeout timeout = timer.newTimeout(
+			() -> thread.complete(Thread.currentThread().getName()), 20, TimeUnit.MILLISECONDS);
+
+		assertEquals("expired-tasks", thread.get(2, TimeUnit.SECONDS));
+		assertTrue(timeout.isExpired());
+		assertFalse(timeout.cancel());
+	}
+}
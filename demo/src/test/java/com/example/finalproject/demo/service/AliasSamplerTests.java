@@ -0,0 +1,73 @@
+package com.example.finalproject.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AliasSamplerTests {
+
+	private static final int DRAWS = 500_000;
+
+	// Chi-square critical values at p = 0.001, indexed by degrees of freedom
+	private static final double[] CRITICAL = {0, 10.83, 13.82, 16.27, 18.47, 20.52, 22.46, 24.32};
+
+	@Test
+	void drawsFollowTheWeights() {
+		assertDistribution(List.of("a", "b", "c", "d", "e"), new long[] {1, 2, 3, 4, 10}, 1L);
+		assertDistribution(List.of("a", "b", "c"), new long[] {1, 1, 1}, 2L);
+		assertDistribution(List.of("a", "b", "c", "d", "e", "f", "g", "h"), new long[] {1, 1_000, 1, 7, 250, 3, 3, 40}, 3L);
+	}
+
+	@Test
+	void zeroWeightIsNeverDrawn() {
+		AliasSampler<String> sampler = new AliasSampler<>(List.of("never", "always"), new long[] {0, 5});
+		Random random = new Random(4L);
+		for (int i = 0; i < DRAWS; i++) {
+			assertEquals("always", sampler.next(random));
+		}
+	}
+
+	@Test
+	void allZeroWeightsAreUniform() {
+		assertDistribution(List.of("a", "b", "c", "d"), new long[] {0, 0, 0, 0}, 5L);
+	}
+
+	@Test
+	void rejectsMismatchedOrNegativeWeights() {
+		assertThrows(IllegalArgumentException.class, () -> new AliasSampler<>(List.of("a", "b"), new long[] {1}));
+		assertThrows(IllegalArgumentException.class, () -> new AliasSampler<>(List.of(), new long[0]));
+		assertThrows(IllegalArgumentException.class, () -> new AliasSampler<>(List.of("a"), new long[] {-1}));
+	}
+
+	private static void assertDistribution(List<String> items, long[] weights, long seed) {
+		AliasSampler<String> sampler = new AliasSampler<>(items, weights);
+		Random random = new Random(seed);
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < DRAWS; i++) {
+			counts.merge(sampler.next(random), 1, Integer::sum);
+		}
+
+		long total = 0;
+		for (long weight : weights) {
+			total += weight;
+		}
+		double chiSquare = 0;
+		for (int i = 0; i < items.size(); i++) {
+			double expected = total > 0 ? (double) DRAWS * weights[i] / total : (double) DRAWS / items.size();
+			int observed = counts.getOrDefault(items.get(i), 0);
+			chiSquare += (observed - expected) * (observed - expected) / expected;
+		}
+		int degreesOfFreedom = items.size() - 1;
+		assertFalse(Double.isNaN(chiSquare));
+		assertTrue(chiSquare < CRITICAL[degreesOfFreedom],
+			"chi-square " + chiSquare + " exceeds " + CRITICAL[degreesOfFreedom] + " for weights " + java.util.Arrays.toString(weights));
+	}
+}
@@ -0,0 +1,134 @@
+package com.example.finalproject.demo.service;
+
+import com.example.finalproject.demo.cluster.RoomStripes;
+import com.example.finalproject.demo.dto.BallotRequest;
+import com.example.finalproject.demo.eventlog.RoomEventLog;
+import com.example.finalproject.demo.service.RestaurantSelectionService.SelectionStrategy;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GroupDecisionServiceTests {
+
+	private static final String ROOM = "ROOM01";
+	private static final List<String> CANDIDATES = List.of("A", "B", "C", "D", "E");
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	// No data directory, so the log is off and appends are dropped
+	private final GroupDecisionService service = new GroupDecisionService(
+		new RoomEventLog(objectMapper, new SimpleMeterRegistry(), "", 4096, 16, false, 10), objectMapper,
+		new RoomStripes(2));
+
+	@Test
+	void runoffEliminatesTheLastPlaceAndTransfersItsBallots() {
+		rank(4, "c", "C", "A");
+		rank(3, "a", "A", "B");
+		rank(2, "b", "B", "A");
+
+		// C leads on first choices, but B's ballots move to A once B is eliminated
+		SelectionResult result = decide(SelectionStrategy.RANKED_CHOICE);
+		assertEquals("A", result.getRestaurant());
+		assertTrue(result.getExplanation().contains("5 of 9 ballots after 2 round(s)"), result.getExplanation());
+	}
+
+	@Test
+	void runoffSkipsEliminatedChoicesOverSeveralRounds() {
+		rank(4, "a", "A");
+		rank(3, "b", "B", "C", "A");
+		rank(2, "c", "C", "D", "B");
+		rank(1, "d", "D", "C", "B");
+
+		// D goes first and its ballot moves to C; then C goes, and its ballots skip
+		// the eliminated D on their way to B
+		SelectionResult result = decide(SelectionStrategy.RANKED_CHOICE);
+		assertEquals("B", result.getRestaurant());
+		assertTrue(result.getExplanation().contains("6 of 10 ballots after 3 round(s)"), result.getExplanation());
+	}
+
+	@Test
+	void candidatesWithNoFirstChoicesAreEliminatedFirst() {
+		rank(3, "a", "A");
+		rank(3, "b", "B");
+		rank(2, "d", "D", "C");
+		rank(2, "e", "E", "C");
+
+		// C has no first choices, so it goes in the first round and cannot collect D's and E's ballots later
+		SelectionResult result = decide(SelectionStrategy.RANKED_CHOICE);
+		assertEquals("A", result.getRestaurant());
+		assertTrue(result.getExplanation().contains("3 of 3 ballots after 5 round(s)"), result.getExplanation());
+	}
+
+	@Test
+	void exhaustedBallotsLowerTheMajority() {
+		rank(3, "c", "C");
+		rank(2, "a", "A", "C");
+		rank(1, "b", "B");
+
+		// B's only choice is eliminated: the ballot drops out, and 3 of the remaining 5 is a majority
+		SelectionResult result = decide(SelectionStrategy.RANKED_CHOICE);
+		assertEquals("C", result.getRestaurant());
+		assertTrue(result.getExplanation().contains("3 of 5 ballots after 2 round(s)"), result.getExplanation());
+	}
+
+	@Test
+	void replacedBallotsAreWithdrawnFromEveryTally() {
+		service.submit(ROOM, "u1", new BallotRequest("u1", List.of("A"), List.of("A"), Map.of("A", 5), null), CANDIDATES);
+		service.submit(ROOM, "u2", new BallotRequest("u2", List.of("B"), List.of("B"), Map.of("B", 3), null), CANDIDATES);
+		service.submit(ROOM, "u3", new BallotRequest("u3", List.of("A"), List.of("A"), Map.of("A", 1), null), CANDIDATES);
+		int count = service.submit(ROOM, "u3",
+			new BallotRequest("u3", List.of("B"), List.of("B"), Map.of("B", 4), null), CANDIDATES);
+
+		assertEquals(3, count);
+		assertEquals("B", decide(SelectionStrategy.APPROVAL).getRestaurant());
+		assertEquals("B", decide(SelectionStrategy.SCORE).getRestaurant());
+		SelectionResult runoff = decide(SelectionStrategy.RANKED_CHOICE);
+		assertEquals("B", runoff.getRestaurant());
+		assertTrue(runoff.getExplanation().contains("2 of 3 ballots after 1 round(s)"), runoff.getExplanation());
+	}
+
+	@Test
+	void ignoresRestaurantsThatAreNotSuggestedAndClampsScores() {
+		service.submit(ROOM, "u1", new BallotRequest("u1", null, List.of("Z", "B", "B"), Map.of("Z", 5, "C", 99), null),
+			CANDIDATES);
+
+		assertEquals("B", decide(SelectionStrategy.RANKED_CHOICE).getRestaurant());
+		SelectionResult score = decide(SelectionStrategy.SCORE);
+		assertEquals("C", score.getRestaurant());
+		assertTrue(score.getExplanation().contains("5 points"), score.getExplanation());
+		assertEquals(Optional.empty(), service.decide(ROOM, SelectionStrategy.APPROVAL));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void snapshotCopiesEveryRoomsBallots() {
+		rank(2, "a", "A", "B");
+		service.submit("ROOM02", "x", new BallotRequest("x", List.of("C"), null, null, null), CANDIDATES);
+
+		Map<String, Map<String, GroupDecisionService.Ballot>> snapshot =
+			(Map<String, Map<String, GroupDecisionService.Ballot>>) service.snapshot();
+		assertEquals(2, snapshot.get(ROOM).size());
+		assertEquals(List.of("C"), snapshot.get("ROOM02").get("x").approvals);
+
+		// A copy: later ballots do not show up in it
+		rank(1, "b", "B");
+		assertEquals(2, snapshot.get(ROOM).size());
+	}
+
+	private void rank(int voters, String prefix, String... ranking) {
+		for (int i = 0; i < voters; i++) {
+			String voter = prefix + i;
+			service.submit(ROOM, voter, new BallotRequest(voter, null, List.of(ranking), null, null), CANDIDATES);
+		}
+	}
+
+	private SelectionResult decide(SelectionStrategy strategy) {
+		return service.decide(ROOM, strategy).orElseThrow();
+	}
+}
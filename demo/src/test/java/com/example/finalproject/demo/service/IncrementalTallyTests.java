@@ -0,0 +1,74 @@
+package com.example.finalproject.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalTallyTests {
+
+	@Test
+	void keepsCandidatesRankedByTotal() {
+		IncrementalTally tally = new IncrementalTally();
+		tally.add("a", 2);
+		tally.add("b", 5);
+		tally.add("c", 3);
+
+		assertEquals("b", tally.leader());
+		assertEquals("a", tally.last());
+
+		tally.add("a", 4);
+		tally.add("b", -3);
+
+		assertEquals("a", tally.leader());
+		assertEquals(6, tally.total("a"));
+		assertEquals("b", tally.last());
+		assertEquals(3, tally.size());
+	}
+
+	@Test
+	void breaksTiesByName() {
+		IncrementalTally tally = new IncrementalTally();
+		tally.add("pizza", 1);
+		tally.add("curry", 1);
+		tally.add("tacos", 1);
+
+		assertEquals("curry", tally.leader());
+		assertEquals("tacos", tally.last());
+	}
+
+	@Test
+	void removedCandidatesLeaveTheRunning() {
+		IncrementalTally tally = new IncrementalTally();
+		tally.add("a", 1);
+		tally.add("b", 2);
+		tally.remove("b");
+		tally.remove("missing");
+
+		assertEquals("a", tally.leader());
+		assertEquals(0, tally.total("b"));
+		assertEquals(1, tally.size());
+
+		tally.remove("a");
+		assertTrue(tally.isEmpty());
+		assertNull(tally.leader());
+		assertNull(tally.last());
+	}
+
+	@Test
+	void copiesAreIndependent() {
+		IncrementalTally original = new IncrementalTally();
+		original.add("a", 3);
+		original.add("b", 1);
+
+		IncrementalTally copy = new IncrementalTally(original);
+		copy.remove("a");
+		copy.add("b", 10);
+
+		assertEquals("a", original.leader());
+		assertEquals(1, original.total("b"));
+		assertEquals("b", copy.leader());
+		assertEquals(1, copy.size());
+	}
+}
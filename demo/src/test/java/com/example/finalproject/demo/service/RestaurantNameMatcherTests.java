@@ -0,0 +1,97 @@
+package com.example.finalproject.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RestaurantNameMatcherTests {
+
+	private final RestaurantNameMatcher matcher = new RestaurantNameMatcher(
+		List.of("The Pizza Place", "Café Olé", "Sushi Bar", "Sushi Bar Deluxe", "Taco Hut", "Bar"), 0.75);
+
+	@Test
+	void findsExactMentionsRegardlessOfCaseAccentsAndPunctuation() {
+		assertMatch("Café Olé", 1.0, "I'd go with CAFE OLE!");
+		assertMatch("The Pizza Place", 1.0, "Try pizza-place, the crust is great");
+		assertMatch("Taco Hut", 1.0, "taco hut");
+	}
+
+	@Test
+	void prefersTheMostSpecificMention() {
+		assertMatch("Sushi Bar Deluxe", 1.0, "Sushi Bar Deluxe has the freshest fish");
+		assertMatch("Sushi Bar", 1.0, "The sushi bar, not the fancy one.");
+	}
+
+	@Test
+	void mentionsMustFallOnWordBoundaries() {
+		// "bar" inside "barbecue" is not a mention of Bar
+		assertTrue(matcher.match("Anywhere with barbecue").isEmpty());
+	}
+
+	@Test
+	void toleratesSmallTypos() {
+		Optional<RestaurantNameMatcher.Match> match = matcher.match("I recommend Suhsi Bar for tonight");
+		assertTrue(match.isPresent());
+		assertEquals("Sushi Bar", match.get().getRestaurant());
+		assertTrue(match.get().getConfidence() < 1.0 && match.get().getConfidence() >= 0.75);
+
+		assertEquals("Taco Hut", matcher.match("tacohut").map(RestaurantNameMatcher.Match::getRestaurant).orElse(null));
+	}
+
+	@Test
+	void reportsNothingInsteadOfGuessing() {
+		assertTrue(matcher.match("Let's get burgers").isEmpty());
+		assertTrue(matcher.match("").isEmpty());
+		assertTrue(matcher.match(null).isEmpty());
+	}
+
+	@Test
+	void scalesToLargeRooms() {
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < 5_000; i++) {
+			names.add("Restaurant Number " + i);
+		}
+		RestaurantNameMatcher large = new RestaurantNameMatcher(names, 0.75);
+		assertMatch(large, "Restaurant Number 4321", 1.0, "Definitely restaurant number 4321, it has a view");
+	}
+
+	@Test
+	void findsTyposAmongManySimilarNames() {
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < 5_000; i++) {
+			names.add("Restaurant Number " + i);
+		}
+		names.add("Golden Dragon Palace");
+		RestaurantNameMatcher large = new RestaurantNameMatcher(names, 0.75);
+		Optional<RestaurantNameMatcher.Match> match = large.match("Go to Golden Dargon Palace");
+		assertTrue(match.isPresent());
+		assertEquals("Golden Dragon Palace", match.get().getRestaurant());
+		assertEquals("Restaurant Number 4321",
+			large.match("restaurant numbr 4321").map(RestaurantNameMatcher.Match::getRestaurant).orElse(null));
+	}
+
+	@Test
+	void boundedDistanceStopsAtTheBound() {
+		assertEquals(2, RestaurantNameMatcher.boundedDistance("sushi", "suhsi", 3));
+		assertEquals(0, RestaurantNameMatcher.boundedDistance("taco", "taco", 1));
+		assertEquals(3, RestaurantNameMatcher.boundedDistance("kitten", "sitting", 3));
+		assertEquals(3, RestaurantNameMatcher.boundedDistance("kitten", "sitting", 2));
+		assertEquals(3, RestaurantNameMatcher.boundedDistance("a", "abcd", 2));
+	}
+
+	private void assertMatch(String expected, double confidence, String text) {
+		assertMatch(matcher, expected, confidence, text);
+	}
+
+	private static void assertMatch(RestaurantNameMatcher matcher, String expected, double confidence, String text) {
+		Optional<RestaurantNameMatcher.Match> match = matcher.match(text);
+		assertTrue(match.isPresent(), "no match for " + text);
+		assertEquals(expected, match.get().getRestaurant());
+		assertEquals(confidence, match.get().getConfidence(), 1e-9);
+	}
+}
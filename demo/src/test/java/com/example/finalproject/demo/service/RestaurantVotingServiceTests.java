@@ -0,0 +1,82 @@
+package com.example.finalproject.demo.service;
+
+import com.example.finalproject.demo.cluster.RoomStripes;
+import com.example.finalproject.demo.eventlog.RoomEventLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RestaurantVotingServiceTests {
+
+	private static final String ROOM = "ROOM01";
+
+	// No data directory, so the log is off and appends are dropped
+	private final RestaurantVotingService service = new RestaurantVotingService(
+		new RoomEventLog(new ObjectMapper(), new SimpleMeterRegistry(), "", 4096, 16, false, 10), new RoomStripes(2));
+
+	@Test
+	void reVotingReplacesTheEarlierVote() {
+		assertEquals(1, service.recordVote(ROOM, "Sushi Bar", "ana", true));
+		assertEquals(2, service.recordVote(ROOM, "Sushi Bar", "ben", true));
+		assertTrue(service.allVotesApproved(ROOM, "Sushi Bar"));
+
+		assertEquals(2, service.recordVote(ROOM, "Sushi Bar", "ana", false));
+		assertFalse(service.allVotesApproved(ROOM, "Sushi Bar"));
+		assertEquals(2, service.recordVote(ROOM, "Sushi Bar", "ana", false));
+		assertEquals(2, service.recordVote(ROOM, "Sushi Bar", "ana", true));
+		assertEquals(2, service.recordVote(ROOM, "Sushi Bar", "ana", true));
+
+		assertTrue(service.allVotesApproved(ROOM, "Sushi Bar"));
+		assertTrue(service.allParticipantsVoted(ROOM, "Sushi Bar", 2));
+		assertEquals(Map.of("ana", true, "ben", true), service.getVotes(ROOM, "Sushi Bar"));
+	}
+
+	@Test
+	void switchingBetweenRestaurantsKeepsRoundsApart() {
+		service.recordVote(ROOM, "Sushi Bar", "ana", true);
+		service.recordVote(ROOM, "Sushi Bar", "ben", true);
+		service.recordVote(ROOM, "Sushi Bar", "ana", false);
+		service.recordVote(ROOM, "Taco Hut", "ana", true);
+
+		assertEquals(Map.of("ana", false, "ben", true), service.getVotes(ROOM, "Sushi Bar"));
+		assertEquals(Map.of("ana", true), service.getVotes(ROOM, "Taco Hut"));
+		assertFalse(service.allVotesApproved(ROOM, "Sushi Bar"));
+		assertTrue(service.allVotesApproved(ROOM, "Taco Hut"));
+		assertFalse(service.allParticipantsVoted(ROOM, "Taco Hut", 2));
+
+		service.clearVotes(ROOM, "Sushi Bar");
+		assertEquals(Map.of(), service.getVotes(ROOM, "Sushi Bar"));
+		assertEquals(Map.of("ana", true), service.getVotes(ROOM, "Taco Hut"));
+	}
+
+	@Test
+	void votersPastTheFirstWordOfBits() {
+		for (int i = 0; i < 130; i++) {
+			assertEquals(i + 1, service.recordVote(ROOM, "Sushi Bar", "voter" + i, true));
+		}
+		assertTrue(service.allParticipantsVoted(ROOM, "Sushi Bar", 130));
+		assertTrue(service.allVotesApproved(ROOM, "Sushi Bar"));
+
+		// Slots 64 and 129 sit in the second and third words
+		service.recordVote(ROOM, "Sushi Bar", "voter64", false);
+		service.recordVote(ROOM, "Sushi Bar", "voter129", false);
+		assertFalse(service.allVotesApproved(ROOM, "Sushi Bar"));
+
+		Map<String, Boolean> votes = service.getVotes(ROOM, "Sushi Bar");
+		assertEquals(130, votes.size());
+		assertFalse(votes.get("voter64"));
+		assertFalse(votes.get("voter129"));
+		assertTrue(votes.get("voter63"));
+		assertTrue(votes.get("voter128"));
+
+		service.recordVote(ROOM, "Sushi Bar", "voter64", true);
+		service.recordVote(ROOM, "Sushi Bar", "voter129", true);
+		assertTrue(service.allVotesApproved(ROOM, "Sushi Bar"));
+	}
+}
@@ -0,0 +1,91 @@
+package com.example.finalproject.demo.service;
+
+import com.example.finalproject.demo.eventlog.RoomEvent;
+import com.example.finalproject.demo.eventlog.RoomEventLog;
+import com.example.finalproject.demo.model.Room;
+import com.example.finalproject.demo.repository.RoomRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RoomServiceTests {
+
+	private final RoomRepository roomRepository = mock(RoomRepository.class);
+	private final RoomService roomService = new RoomService(roomRepository, mock(ChatGptService.class),
+		mock(RoomEventLog.class), mock(SuggestionPromptBuilder.class), mock(AiSuggestionPrefetcher.class));
+	private final List<String> stored = new ArrayList<>(List.of("Sushi Bar"));
+
+	@AfterEach
+	void tearDown() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	void rolledBackSuggestionIsNotKeptAsADuplicate() {
+		// Every load sees only what was committed
+		when(roomRepository.findById(5L)).thenAnswer(invocation -> Optional.of(room()));
+
+		TransactionSynchronizationManager.initSynchronization();
+		assertTrue(roomService.addRestaurantSuggestion(5L, "Taco Hut"));
+		complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+		assertTrue(roomService.addRestaurantSuggestion(5L, "Taco Hut"));
+	}
+
+	@Test
+	void committedSuggestionStaysIndexed() {
+		when(roomRepository.findById(5L)).thenAnswer(invocation -> Optional.of(room()));
+
+		TransactionSynchronizationManager.initSynchronization();
+		assertTrue(roomService.addRestaurantSuggestion(5L, "Taco Hut"));
+		stored.add("Taco Hut");
+		complete(TransactionSynchronization.STATUS_COMMITTED);
+
+		assertFalse(roomService.addRestaurantSuggestion(5L, "taco hut"));
+	}
+
+	@Test
+	void roomsWithStateLoadsEveryRoomInOneQuery() {
+		roomService.replay(RoomEvent.tally("ROOM01", 5L, "Sushi Bar", 2));
+		roomService.replay(RoomEvent.tally("ROOM02", 6L, "Taco Hut", 1));
+		Room other = room();
+		other.setId(6L);
+		other.setInviteCode("ROOM02");
+		when(roomRepository.findAllById(anyIterable())).thenReturn(List.of(room(), other));
+
+		assertEquals(Set.of("ROOM01", "ROOM02"), roomService.roomsWithState());
+		verify(roomRepository, never()).findById(any());
+	}
+
+	private Room room() {
+		Room room = new Room();
+		room.setId(5L);
+		room.setInviteCode("ROOM01");
+		room.setRestaurantSuggestions(new ArrayList<>(stored));
+		return room;
+	}
+
+	private static void complete(int status) {
+		List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+		TransactionSynchronizationManager.clearSynchronization();
+		synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+	}
+}
@@ -0,0 +1,64 @@
+package com.example.finalproject.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SuggestionIndexTests {
+
+	@Test
+	void spellingsOfTheSameNameShareAKey() {
+		assertEquals(SuggestionIndex.key("McDonald's"), SuggestionIndex.key("mcdonalds"));
+		assertEquals(SuggestionIndex.key("McDonald's"), SuggestionIndex.key("Mc Donalds "));
+		assertEquals(SuggestionIndex.key("Sushi Bar"), SuggestionIndex.key("Sushi Bars"));
+		assertEquals(SuggestionIndex.key("The Café"), SuggestionIndex.key("cafe"));
+		assertNotEquals(SuggestionIndex.key("Boss Burger"), SuggestionIndex.key("Bo Burger"));
+	}
+
+	@Test
+	void keyCollisionIsADuplicate() {
+		SuggestionIndex index = new SuggestionIndex(0.7);
+		index.add("McDonald's");
+
+		assertEquals(Optional.of("McDonald's"), index.findDuplicate("MCDONALDS"));
+		assertEquals(Optional.of("McDonald's"), index.findDuplicate("Mc Donalds"));
+	}
+
+	@Test
+	void catchesTyposInLongerNames() {
+		SuggestionIndex index = new SuggestionIndex(0.7);
+		index.add("Golden Dragon Restaurant");
+		index.add("Olive Garden Italian Kitchen");
+
+		assertEquals(Optional.of("Golden Dragon Restaurant"), index.findDuplicate("Golden Dragon Restaurnt"));
+		assertEquals(Optional.of("Olive Garden Italian Kitchen"), index.findDuplicate("Olive Garden Italian Kitchn"));
+	}
+
+	@Test
+	void keepsDistinctNames() {
+		SuggestionIndex index = new SuggestionIndex(0.7);
+		index.add("Sushi Bar");
+		index.add("Pizza Hut");
+		index.add("McDonald's");
+
+		assertTrue(index.findDuplicate("Sushi Bar 2").isEmpty());
+		assertTrue(index.findDuplicate("Pizza Hut Express").isEmpty());
+		assertTrue(index.findDuplicate("Noodle Bar").isEmpty());
+		assertTrue(index.findDuplicate("McDonald's Restaurant").isEmpty());
+		assertEquals(3, index.size());
+	}
+
+	@Test
+	void numbersMustMatch() {
+		SuggestionIndex index = new SuggestionIndex(0.7);
+		index.add("California Pizza Kitchen 2");
+
+		assertTrue(index.findDuplicate("California Pizza Kitchen").isEmpty());
+		assertTrue(index.findDuplicate("California Pizza Kitchen 3").isEmpty());
+		assertEquals(Optional.of("California Pizza Kitchen 2"), index.findDuplicate("California Pizza Kitchn 2"));
+	}
+}
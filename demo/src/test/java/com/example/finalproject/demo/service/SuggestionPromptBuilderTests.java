@@ -0,0 +1,77 @@
+package com.example.finalproject.demo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SuggestionPromptBuilderTests {
+
+	private static final String LIST_PREFIX = ". Current suggestions include: ";
+
+	// 10 tokens (40 characters) each for the prompt and for the listed suggestions
+	private final SuggestionPromptBuilder builder = new SuggestionPromptBuilder(new SimpleMeterRegistry(), 10, 10);
+
+	@Test
+	void dropsTheOldestSuggestionsFirst() {
+		String prompt = builder.build(1L, "dinner", places(20));
+
+		// Each entry costs its name plus a separator: 10 characters, so four fit
+		assertEquals("dinner" + LIST_PREFIX + "Place 17, Place 18, Place 19, Place 20 and 16 more", prompt);
+	}
+
+	@Test
+	void keepsSuggestionsThatMatchThePromptBeforeNewerOnes() {
+		List<String> suggestions = new ArrayList<>(List.of("Thai Garden"));
+		suggestions.addAll(places(20));
+
+		String prompt = builder.build(1L, "spicy thai", suggestions);
+
+		// The oldest entry, but it shares a word with the prompt; what is left fits two more
+		assertEquals("spicy thai" + LIST_PREFIX + "Thai Garden, Place 19, Place 20 and 18 more", prompt);
+	}
+
+	@Test
+	void staysWithinTheBudget() {
+		String longPrompt = "somewhere quiet with vegetarian options and outdoor seating near the station";
+		List<String> suggestions = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			suggestions.add("A Rather Long Restaurant Name Number " + i);
+		}
+
+		String prompt = builder.build(1L, longPrompt, suggestions);
+
+		String request = prompt.substring(0, prompt.indexOf(LIST_PREFIX));
+		String listed = prompt.substring(prompt.indexOf(LIST_PREFIX) + LIST_PREFIX.length(), prompt.lastIndexOf(" and "));
+		assertTrue(longPrompt.startsWith(request));
+		assertTrue(SuggestionPromptBuilder.estimateTokens(request) <= 10, request);
+		assertTrue(SuggestionPromptBuilder.estimateTokens(listed) <= 10, listed);
+		assertTrue(prompt.endsWith(" and 199 more"), prompt);
+	}
+
+	@Test
+	void reusesThePromptUntilTheRoomChanges() {
+		List<String> suggestions = new ArrayList<>(places(3));
+		String first = builder.build(1L, "dinner", suggestions);
+
+		assertSame(first, builder.build(1L, "dinner", suggestions));
+		suggestions.add("Taco Hut");
+		String second = builder.build(1L, "dinner", suggestions);
+		assertTrue(second.contains("Taco Hut"), second);
+		assertFalse(second.contains("Place 1,"), second);
+	}
+
+	private static List<String> places(int count) {
+		List<String> places = new ArrayList<>();
+		for (int i = 1; i <= count; i++) {
+			places.add(String.format("Place %02d", i));
+		}
+		return places;
+	}
+}
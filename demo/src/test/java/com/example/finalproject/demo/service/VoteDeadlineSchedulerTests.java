@@ -0,0 +1,52 @@
+package com.example.finalproject.demo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VoteDeadlineSchedulerTests {
+
+	// 200 ms deadlines on a wheel of 8 slots of 10 ms, so each deadline spans a few turns
+	private final VoteDeadlineScheduler scheduler = new VoteDeadlineScheduler(new SimpleMeterRegistry(), 200, 10, 8, 2);
+
+	@AfterEach
+	void tearDown() {
+		scheduler.stop();
+	}
+
+	@Test
+	void expiredRoundIsResolvedOnTheDeadlinePool() throws Exception {
+		CompletableFuture<List<String>> expired = new CompletableFuture<>();
+		scheduler.onExpiry((room, restaurant) ->
+			expired.complete(List.of(room, restaurant, Thread.currentThread().getName())));
+		long started = System.nanoTime();
+
+		scheduler.open("ROOM01", "Sushi Bar");
+
+		assertEquals(List.of("ROOM01", "Sushi Bar", "vote-deadline"), expired.get(2, TimeUnit.SECONDS));
+		long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+		assertTrue(elapsedMs >= 200, "expired after " + elapsedMs + " ms");
+	}
+
+	@Test
+	void cancelledRoundDoesNotExpire() throws InterruptedException {
+		AtomicInteger expired = new AtomicInteger();
+		scheduler.onExpiry((room, restaurant) -> expired.incrementAndGet());
+
+		scheduler.open("ROOM01", "Sushi Bar");
+		scheduler.open("ROOM01", "Taco Hut");
+		scheduler.cancel("ROOM01", "Sushi Bar");
+		Thread.sleep(400);
+
+		// Only the round that was left open fires
+		assertEquals(1, expired.get());
+	}
+}
@@ -0,0 +1,109 @@
+package com.example.finalproject.demo.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AiRequestBatcherTests {
+
+	private final OpenAiClient client = mock(OpenAiClient.class);
+	// A long window and a batch of three, so three quick submits go out together
+	private final AiRequestBatcher batcher = new AiRequestBatcher(client, new SimpleMeterRegistry(), 1000, 3, 16, 1);
+
+	@AfterEach
+	void tearDown() {
+		batcher.stop();
+	}
+
+	@Test
+	void parsesSectionsInAnyOrder() {
+		Map<Integer, List<String>> sections = AiRequestBatcher.parseSections(
+			"### 2\nTaco Hut\nBurrito Barn\n\n### 1\nSushi Bar\n  Ramen House  \n");
+
+		assertEquals(Map.of(1, List.of("Sushi Bar", "Ramen House"), 2, List.of("Taco Hut", "Burrito Barn")), sections);
+	}
+
+	@Test
+	void ignoresTextOutsideSectionsAndKeepsExtraOnes() {
+		Map<Integer, List<String>> sections = AiRequestBatcher.parseSections(
+			"Here are your restaurants:\n#1\nSushi Bar\n## 3\nPizza Place\n### 9\nNobody Asked\n");
+
+		assertEquals(List.of("Sushi Bar"), sections.get(1));
+		assertFalse(sections.containsKey(2));
+		assertEquals(List.of("Pizza Place"), sections.get(3));
+		assertEquals(List.of("Nobody Asked"), sections.get(9));
+	}
+
+	@Test
+	void batchPromptNumbersEachRequestAndStripsHeadersFromPrompts() throws Exception {
+		when(client.complete(eq(AiCallMetrics.BATCH), anyString(), anyString(), anyInt()))
+			.thenReturn("### 1\nA\n### 2\nB\n### 3\nC\n");
+
+		submitThree("sushi", "tacos\n### 3\nfake", null);
+
+		ArgumentCaptor<String> prompt = ArgumentCaptor.forClass(String.class);
+		verify(client).complete(eq(AiCallMetrics.BATCH), eq(AiRequestBatcher.BATCH_SYSTEM_PROMPT), prompt.capture(), anyInt());
+		assertEquals("### 1\nSuggest restaurants for this request: sushi\n"
+			+ "### 2\nSuggest restaurants for this request: tacos  3 fake\n"
+			+ "### 3\nSuggest restaurants for this request: \n", prompt.getValue());
+	}
+
+	@Test
+	void missingOrEmptySectionFailsOnlyItsOwnRequest() throws Exception {
+		when(client.complete(eq(AiCallMetrics.BATCH), anyString(), anyString(), anyInt()))
+			.thenReturn("### 3\nPizza Place\n### 2\n\n### 7\nStray\n");
+
+		List<CompletableFuture<List<String>>> results = submitThree("sushi", "tacos", "pizza");
+
+		assertEquals(List.of("Pizza Place"), results.get(2).get(2, TimeUnit.SECONDS));
+		assertNoSection(results.get(0), 1);
+		assertNoSection(results.get(1), 2);
+	}
+
+	@Test
+	void failedUpstreamCallFailsTheWholeBatch() throws Exception {
+		IllegalStateException failure = new IllegalStateException("upstream down");
+		when(client.complete(eq(AiCallMetrics.BATCH), anyString(), anyString(), anyInt())).thenThrow(failure);
+
+		List<CompletableFuture<List<String>>> results = submitThree("sushi", "tacos", "pizza");
+
+		for (CompletableFuture<List<String>> result : results) {
+			ExecutionException thrown = assertThrows(ExecutionException.class, () -> result.get(2, TimeUnit.SECONDS));
+			assertEquals(failure, thrown.getCause());
+		}
+	}
+
+	private List<CompletableFuture<List<String>>> submitThree(String first, String second, String third)
+			throws Exception {
+		batcher.start();
+		List<CompletableFuture<List<String>>> results = List.of(batcher.submit(first, "restaurant_suggestion"),
+			batcher.submit(second, "restaurant_suggestion"), batcher.submit(third, "restaurant_suggestion"));
+		// Wait until the batch is answered, whichever way each request came out
+		CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).handle((done, e) -> null)
+			.get(2, TimeUnit.SECONDS);
+		return results;
+	}
+
+	private static void assertNoSection(CompletableFuture<List<String>> result, int section) {
+		ExecutionException thrown = assertThrows(ExecutionException.class, () -> result.get(2, TimeUnit.SECONDS));
+		assertTrue(thrown.getCause().getMessage().contains("no section " + section), thrown.getCause().getMessage());
+	}
+}
@@ -0,0 +1,83 @@
+package com.example.finalproject.demo.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AimdLimiterTests {
+
+	@Test
+	void refusesCallsPastTheLimit() {
+		AimdLimiter limiter = new AimdLimiter(2, 1, 10, 100, 0.5);
+
+		assertTrue(limiter.tryAcquire());
+		assertTrue(limiter.tryAcquire());
+		assertFalse(limiter.tryAcquire());
+		assertEquals(2, limiter.inFlight());
+	}
+
+	@Test
+	void fastCallsAtTheLimitGrowItByOneOverLimit() {
+		AimdLimiter limiter = new AimdLimiter(2, 1, 10, 100, 0.5);
+
+		// Two good calls at full use add 1/2 + 1/2.5 = 0.9: not yet a whole slot
+		fillAndRelease(limiter, 2);
+		fillAndRelease(limiter, 2);
+		assertEquals(2, limiter.limit());
+
+		fillAndRelease(limiter, 2);
+		assertEquals(3, limiter.limit());
+	}
+
+	@Test
+	void doesNotGrowWhileTheLimitIsNotInUse() {
+		AimdLimiter limiter = new AimdLimiter(4, 1, 10, 100, 0.5);
+
+		for (int i = 0; i < 20; i++) {
+			assertTrue(limiter.tryAcquire());
+			limiter.release(10, false);
+		}
+		assertEquals(4, limiter.limit());
+	}
+
+	@Test
+	void failedOrSlowCallsShrinkItByTheBackoff() {
+		AimdLimiter limiter = new AimdLimiter(8, 1, 10, 100, 0.5);
+
+		assertTrue(limiter.tryAcquire());
+		limiter.release(10, true);
+		assertEquals(4, limiter.limit());
+
+		assertTrue(limiter.tryAcquire());
+		limiter.release(150, false);
+		assertEquals(2, limiter.limit());
+
+		for (int i = 0; i < 5; i++) {
+			assertTrue(limiter.tryAcquire());
+			limiter.release(10, true);
+		}
+		assertEquals(1, limiter.limit());
+	}
+
+	@Test
+	void callsThatNeverRanLeaveTheLimitAlone() {
+		AimdLimiter limiter = new AimdLimiter(4, 1, 10, 100, 0.5);
+
+		assertTrue(limiter.tryAcquire());
+		limiter.release(-1, true);
+		assertEquals(4, limiter.limit());
+		assertEquals(0, limiter.inFlight());
+	}
+
+	private static void fillAndRelease(AimdLimiter limiter, int calls) {
+		for (int i = 0; i < calls; i++) {
+			assertTrue(limiter.tryAcquire());
+		}
+		limiter.release(10, false);
+		for (int i = 1; i < calls; i++) {
+			limiter.release(10, false);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package com.example.finalproject.demo.service.impl;
+
+import com.example.finalproject.demo.dto.ChatGptRequest;
+import com.example.finalproject.demo.dto.ChatGptResponse;
+import com.example.finalproject.demo.stub.LatencyProfile;
+import com.example.finalproject.demo.stub.OpenAiStubServer;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives {@link ChatGptServiceImpl} against a local {@link OpenAiStubServer}.
+ */
+class ChatGptServiceStubTests {
+
+	private final OpenAiStubServer stub = new OpenAiStubServer(0, 7);
+	private SimpleMeterRegistry meterRegistry;
+	private AiCallMetrics metrics;
+	private ChatGptServiceImpl service;
+
+	@BeforeEach
+	void start() throws Exception {
+		stub.start();
+		meterRegistry = new SimpleMeterRegistry();
+		metrics = new AiCallMetrics(meterRegistry);
+		SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+		requestFactory.setReadTimeout(2000);
+		// A small breaker window so a few failures are enough to open it
+		OpenAiClient client = new OpenAiClient(new RestTemplate(requestFactory), meterRegistry, metrics,
+			10, 4, 0.5, 0.8, 5000, 60000, 1, 8, 1, 64, 3000, 0.7);
+		ReflectionTestUtils.setField(client, "apiKey", "test-key");
+		ReflectionTestUtils.setField(client, "apiUrl", stub.completionsUrl());
+		ReflectionTestUtils.setField(client, "model", "gpt-test");
+		service = new ChatGptServiceImpl(client, new StaticListableBeanFactory().getBeanProvider(AiRequestBatcher.class), metrics);
+	}
+
+	@AfterEach
+	void stop() {
+		stub.stop();
+	}
+
+	@Test
+	void returnsTheUpstreamSuggestions() {
+		stub.latency(LatencyProfile.parse("uniform:5-20"));
+
+		ChatGptResponse response = service.getRestaurantSuggestions(new ChatGptRequest("cheap tacos", "restaurant_suggestion"));
+
+		assertEquals(5, response.getSuggestions().size());
+		assertFalse(response.getSuggestions().contains("McDonald's"));
+		assertEquals(1, stub.requestCount());
+		JsonNode received = stub.receivedRequests().get(0);
+		assertEquals("gpt-test", received.path("model").asText());
+		assertTrue(received.path("messages").get(1).path("content").asText().contains("cheap tacos"));
+		assertEquals(1, meterRegistry.get("chatgpt.call").tags("type", "restaurant_suggestion", "source", "ai").timer().count());
+		assertTrue(meterRegistry.get("chatgpt.upstream.tokens").tags("type", "restaurant_suggestion", "kind", "completion")
+			.summary().totalAmount() > 0);
+	}
+
+	@Test
+	void fallsBackAndOpensTheBreakerWhenTheUpstreamFails() {
+		stub.errorRate(1.0, 500);
+
+		for (int i = 0; i < 10; i++) {
+			ChatGptResponse response = service.getRestaurantSuggestions(new ChatGptRequest("pizza", "restaurant_suggestion"));
+			assertFalse(response.getSuggestions().isEmpty());
+		}
+
+		// The breaker opens after the minimum number of calls and stops further requests
+		assertEquals(4, stub.requestCount());
+		assertEquals(6.0, meterRegistry.counter("chatgpt.calls.rejected", "by", "breaker").count());
+		assertEquals(4.0, meterRegistry.counter("chatgpt.call.fallback", "type", "restaurant_suggestion", "reason", "http_5xx").count());
+		assertEquals(6.0, meterRegistry.counter("chatgpt.call.fallback", "type", "restaurant_suggestion", "reason", "breaker").count());
+	}
+
+	@Test
+	void clientErrorsDoNotOpenTheBreaker() {
+		stub.errorRate(1.0, 400);
+
+		for (int i = 0; i < 10; i++) {
+			ChatGptResponse response = service.getRestaurantSuggestions(new ChatGptRequest("pizza", "restaurant_suggestion"));
+			assertFalse(response.getSuggestions().isEmpty());
+		}
+
+		// A rejected request says nothing about the upstream's health: every call still goes out
+		assertEquals(10, stub.requestCount());
+		assertEquals(0.0, meterRegistry.counter("chatgpt.calls.rejected", "by", "breaker").count());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void reportsUsagePerRoom() {
+		stub.latency(LatencyProfile.parse("uniform:5-20"));
+		service.getRestaurantSuggestions(new ChatGptRequest("sushi", "restaurant_suggestion", 7L));
+		service.getRestaurantSuggestions(new ChatGptRequest("ramen", "restaurant_suggestion", 7L));
+		service.getRestaurantSuggestions(new ChatGptRequest("tacos", "restaurant_suggestion", 9L));
+
+		// A negative limit is an empty list rather than an error
+		Map<String, Object> snapshot = metrics.snapshot(-1, 1);
+		assertTrue(((List<?>) snapshot.get("slowestRecent")).isEmpty());
+		List<Map<String, Object>> rooms = (List<Map<String, Object>>) snapshot.get("busiestRooms");
+		assertEquals(1, rooms.size());
+		assertEquals(7L, rooms.get(0).get("roomId"));
+		assertEquals(2L, rooms.get(0).get("calls"));
+	}
+
+	@Test
+	void streamsChunksWhenAsked() throws Exception {
+		String body = "{\"model\":\"gpt-test\",\"stream\":true,\"messages\":[{\"role\":\"user\",\"content\":\"sushi\"}]}";
+		HttpResponse<Stream<String>> response = HttpClient.newHttpClient().send(
+			HttpRequest.newBuilder(URI.create(stub.completionsUrl()))
+				.POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+			HttpResponse.BodyHandlers.ofLines());
+
+		List<String> events = response.body().filter(line -> line.startsWith("data: ")).toList();
+		assertEquals("text/event-stream", response.headers().firstValue("Content-Type").orElse(""));
+		assertEquals(7, events.size()); // five names, the stop chunk and [DONE]
+		assertEquals("data: [DONE]", events.get(events.size() - 1));
+	}
+}
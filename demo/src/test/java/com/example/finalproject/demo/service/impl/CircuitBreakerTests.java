@@ -0,0 +1,95 @@
+package com.example.finalproject.demo.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTests {
+
+	// Window of 10, opens at 50% failures or 80% slow calls once 4 calls are in,
+	// stays open for 1000 ms and then lets 2 trial calls through
+	private final CircuitBreaker breaker = new CircuitBreaker(10, 4, 0.5, 0.8, 500, 1000, 2);
+
+	@Test
+	void staysClosedUntilTheMinimumNumberOfCalls() {
+		fail(0);
+		fail(0);
+		fail(0);
+
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+		fail(0);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+	}
+
+	@Test
+	void opensOnFailureRateAndRefusesCalls() {
+		succeed(0);
+		succeed(0);
+		fail(0);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+		fail(0);
+
+		assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+		assertFalse(breaker.tryAcquire(500));
+	}
+
+	@Test
+	void opensOnSlowCallRate() {
+		for (int i = 0; i < 4; i++) {
+			assertTrue(breaker.tryAcquire(0));
+			breaker.onSuccess(600, 0);
+		}
+
+		assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+	}
+
+	@Test
+	void halfOpenTrialsCloseTheBreaker() {
+		open();
+
+		assertTrue(breaker.tryAcquire(1000));
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+		assertTrue(breaker.tryAcquire(1000));
+		// Only the configured number of trials go through
+		assertFalse(breaker.tryAcquire(1000));
+
+		breaker.onSuccess(10, 1010);
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+		breaker.onSuccess(10, 1010);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+		assertEquals(0.0, breaker.failureRate());
+		assertTrue(breaker.tryAcquire(1020));
+	}
+
+	@Test
+	void failedOrSlowTrialReopensTheBreaker() {
+		open();
+		assertTrue(breaker.tryAcquire(1000));
+		breaker.onFailure(10, 1010);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+		assertFalse(breaker.tryAcquire(1500));
+
+		assertTrue(breaker.tryAcquire(2010));
+		breaker.onSuccess(600, 2100);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+	}
+
+	private void open() {
+		for (int i = 0; i < 4; i++) {
+			fail(0);
+		}
+		assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+	}
+
+	private void succeed(long nowMs) {
+		assertTrue(breaker.tryAcquire(nowMs));
+		breaker.onSuccess(10, nowMs);
+	}
+
+	private void fail(long nowMs) {
+		assertTrue(breaker.tryAcquire(nowMs));
+		breaker.onFailure(10, nowMs);
+	}
+}
@@ -0,0 +1,83 @@
+package com.example.finalproject.demo.websocket;
+
+import com.example.finalproject.demo.cluster.RoomCluster;
+import com.example.finalproject.demo.cluster.RoomMutationRouter;
+import com.example.finalproject.demo.dto.RoomMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RoomBroadcasterTests {
+
+	private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+	private final RoomCluster cluster = mock(RoomCluster.class);
+	private final RoomMutationRouter router = mock(RoomMutationRouter.class);
+	private final RoomBroadcaster broadcaster = new RoomBroadcaster(messagingTemplate, new RoomReplayBuffer(64, 100),
+		new LoopbackRoomBroadcastBus(), cluster, router, mock(ApplicationEventPublisher.class),
+		new SimpleMeterRegistry(), 0, 100);
+	private final CountDownLatch ownerStuck = new CountDownLatch(1);
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		ownerStuck.countDown();
+		broadcaster.stop();
+	}
+
+	@Test
+	void slowOwnerDoesNotHoldUpLocalRooms() {
+		when(cluster.isEnabled()).thenReturn(true);
+		when(cluster.isLocal("LOCAL1")).thenReturn(true);
+		when(cluster.isLocal("AWAY01")).thenReturn(false);
+		when(cluster.ownerOf("AWAY01")).thenReturn("node-b");
+		when(router.execute(eq("AWAY01"), any(), any(), eq(Boolean.class))).thenAnswer(invocation -> {
+			ownerStuck.await(5, TimeUnit.SECONDS);
+			return true;
+		});
+
+		broadcaster.broadcast("AWAY01", RoomMessage.createErrorMessage("first"));
+		broadcaster.broadcast("LOCAL1", RoomMessage.createErrorMessage("second"));
+
+		verify(messagingTemplate, timeout(2000)).convertAndSend(eq("/topic/room/LOCAL1"), any(RoomMessage.class),
+			ArgumentMatchers.<String, Object>anyMap());
+	}
+
+	@Test
+	void framesForwardedToOneOwnerKeepTheirOrder() throws InterruptedException {
+		List<String> forwarded = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch done = new CountDownLatch(20);
+		when(cluster.isEnabled()).thenReturn(true);
+		when(cluster.isLocal("AWAY01")).thenReturn(false);
+		when(cluster.ownerOf("AWAY01")).thenReturn("node-b");
+		when(router.execute(eq("AWAY01"), any(), any(), eq(Boolean.class))).thenAnswer(invocation -> {
+			forwarded.add(invocation.<RoomMessage>getArgument(2).getMessage());
+			done.countDown();
+			return true;
+		});
+
+		List<String> sent = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			sent.add("frame-" + i);
+			broadcaster.broadcast("AWAY01", RoomMessage.createErrorMessage("frame-" + i));
+		}
+
+		done.await(2, TimeUnit.SECONDS);
+		assertEquals(sent, forwarded);
+	}
+}
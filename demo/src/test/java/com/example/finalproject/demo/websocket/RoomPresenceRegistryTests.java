@@ -0,0 +1,93 @@
+package com.example.finalproject.demo.websocket;
+
+import com.example.finalproject.demo.model.User;
+import com.example.finalproject.demo.service.RoomService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.List;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class RoomPresenceRegistryTests {
+
+	private final RoomService roomService = mock(RoomService.class);
+	private final RoomPresenceRegistry registry = new RoomPresenceRegistry(roomService, mock(RoomBroadcaster.class),
+		mock(ApplicationEventPublisher.class));
+	private RoomPrincipal ana;
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(registry, "gracePeriodMs", 200L);
+		ReflectionTestUtils.setField(registry, "broadcastIntervalMs", 1000L);
+		registry.start();
+		User user = new User();
+		user.setId(1L);
+		user.setUsername("ana");
+		ana = new RoomPrincipal(user);
+	}
+
+	@AfterEach
+	void tearDown() {
+		registry.stop();
+	}
+
+	@Test
+	void reconnectingWithinTheGracePeriodKeepsTheUser() {
+		join("s1");
+		registry.onDisconnect(disconnect("s1"));
+		join("s2");
+
+		verify(roomService, after(400).never()).removeUserFromRoom("ROOM01", 1L);
+		assertEquals(List.of("ana"), registry.liveParticipants("ROOM01"));
+	}
+
+	@Test
+	void repeatedDisconnectsRemoveTheUserOnce() {
+		join("s1");
+		registry.onDisconnect(disconnect("s1"));
+		join("s2");
+		registry.onDisconnect(disconnect("s2"));
+
+		verify(roomService, timeout(1000)).removeUserFromRoom("ROOM01", 1L);
+		verify(roomService, after(400).times(1)).removeUserFromRoom("ROOM01", 1L);
+		assertEquals(OptionalInt.of(0), registry.liveParticipantCount("ROOM01"));
+	}
+
+	private void join(String sessionId) {
+		registry.onConnected(new SessionConnectedEvent(this, message(StompCommand.CONNECTED, sessionId), ana));
+		StompHeaderAccessor subscribe = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+		subscribe.setSessionId(sessionId);
+		subscribe.setSubscriptionId("sub-0");
+		subscribe.setDestination(RoomBroadcaster.ROOM_TOPIC_PREFIX + "ROOM01");
+		registry.onSubscribe(new SessionSubscribeEvent(this,
+			MessageBuilder.createMessage(new byte[0], subscribe.getMessageHeaders()), ana));
+	}
+
+	private SessionDisconnectEvent disconnect(String sessionId) {
+		return new SessionDisconnectEvent(this, message(StompCommand.DISCONNECT, sessionId), sessionId,
+			CloseStatus.NORMAL, ana);
+	}
+
+	private static Message<byte[]> message(StompCommand command, String sessionId) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+		accessor.setSessionId(sessionId);
+		return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+	}
+}